@@ -0,0 +1,88 @@
+package jamasam;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Square matrix products and decompositions at sizes to match the block
+ * counts in the sim benchmarks.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+public class DecompositionBenchmark {
+
+	private Matrix a;
+
+	/**
+	 * Reused output for timesInto.
+	 */
+	private Matrix product;
+
+	@Param({"1", "10", "50", "200"})
+	public int size;
+
+	/**
+	 * Symmetric positive definite, for Cholesky and symmetric eigen.
+	 */
+	private Matrix spd;
+
+	@Benchmark
+	public CholeskyDecomposition chol() {
+		return spd.chol();
+	}
+
+	@Benchmark
+	public EigenvalueDecomposition eig() {
+		return a.eig();
+	}
+
+	@Benchmark
+	public EigenvalueDecomposition eigSymmetric() {
+		return spd.eig();
+	}
+
+	@Benchmark
+	public LUDecomposition lu() {
+		return a.lu();
+	}
+
+	@Benchmark
+	public QRDecomposition qr() {
+		return a.qr();
+	}
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(size);
+		a = new Matrix(size, size);
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) {
+				a.set(i, j, random.nextGaussian());
+			}
+		}
+		product = new Matrix(size, size);
+		spd = a.times(a.transpose()).plus(Matrix.identity(size, size));
+	}
+
+	@Benchmark
+	public SingularValueDecomposition svd() {
+		return a.svd();
+	}
+
+	@Benchmark
+	public Matrix times() {
+		return a.times(a);
+	}
+
+	@Benchmark
+	public Matrix timesInto() {
+		return a.timesInto(a, product);
+	}
+
+}
@@ -0,0 +1,56 @@
+package stackiter.agents;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+import stackiter.agents.OptionAgent.Option;
+import stackiter.sim.*;
+
+/**
+ * Option selection by the builder agent over a fixed state, cycling through
+ * choosing cargo, carrying, and dropping, along with gathering that state
+ * from the world in the first place.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+public class OptionsBenchmark {
+
+	private OptionAgent agent;
+
+	@Param({"1", "10", "50", "200"})
+	public int blocks;
+
+	private OptionAgent.State state;
+
+	private Tool tool;
+
+	private World world;
+
+	@Benchmark
+	public OptionAgent.State fillState() {
+		OptionAgent.State result = new OptionAgent.State();
+		result.fillFrom(world, tool);
+		return result;
+	}
+
+	@Benchmark
+	public Option selectOption() {
+		return agent.act(state);
+	}
+
+	@Setup
+	public void setUp() {
+		world = BenchWorlds.newWorld(blocks, new NullLogger());
+		tool = world.addTool();
+		BenchWorlds.recordFrames(world, 100, 1);
+		state = fillState();
+		agent = new BuilderOptionAgent(new Random(blocks));
+	}
+
+}
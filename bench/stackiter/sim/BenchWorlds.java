@@ -0,0 +1,95 @@
+package stackiter.sim;
+
+import java.awt.*;
+import java.io.*;
+import java.util.*;
+import java.util.List;
+
+/**
+ * Shared setup for benchmarks: worlds with a given number of blocks, recorded
+ * frames of block state, and outputs that throw everything away.
+ */
+public class BenchWorlds {
+
+	/**
+	 * Like /dev/null for formatters.
+	 */
+	public static Formatter nullFormatter() {
+		return new Formatter(new Writer() {
+			@Override
+			public void close() {
+				// Nothing to do.
+			}
+			@Override
+			public void flush() {
+				// Nothing to do.
+			}
+			@Override
+			public void write(char[] chars, int offset, int length) {
+				// Nothing to do.
+			}
+		});
+	}
+
+	/**
+	 * Like /dev/null for streams.
+	 */
+	public static OutputStream nullStream() {
+		return new OutputStream() {
+			@Override
+			public void write(byte[] bytes, int offset, int length) {
+				// Nothing to do.
+			}
+			@Override
+			public void write(int b) {
+				// Nothing to do.
+			}
+		};
+	}
+
+	/**
+	 * Makes a world with the given number of blocks in columns across the
+	 * table, dropped from just above each other. Sizes and colors come from a
+	 * fixed seed, so runs are comparable.
+	 */
+	public static World newWorld(int blockCount, Logger logger) {
+		Random random = new Random(blockCount);
+		World world = new World();
+		world.setSeed(blockCount);
+		world.setLogger(logger);
+		int columns = 18;
+		for (int b = 0; b < blockCount; b++) {
+			Block block = new Block();
+			block.setColor(Color.getHSBColor(random.nextFloat(), 0.5f, 0.8f));
+			block.setExtent(
+				0.5 + 0.4 * random.nextDouble(), 0.5 + 0.4 * random.nextDouble()
+			);
+			block.setPosition(
+				-17 + 2 * (b % columns), 1.5 + 2.5 * (b / columns)
+			);
+			world.addBlock(block);
+		}
+		return world;
+	}
+
+	/**
+	 * Steps the world for a while and then grabs clones of its blocks at
+	 * each of the given number of steps.
+	 */
+	public static Item[][] recordFrames(World world, int settle, int count) {
+		for (int step = 0; step < settle; step++) {
+			world.update();
+		}
+		Item[][] frames = new Item[count][];
+		for (int f = 0; f < count; f++) {
+			world.update();
+			List<Item> items = new ArrayList<Item>();
+			for (Block block: world.getBlocks()) {
+				items.add(block.clone());
+			}
+			frames[f] = items.toArray(new Item[items.size()]);
+		}
+		return frames;
+	}
+
+}
@@ -0,0 +1,74 @@
+package stackiter.sim;
+
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Logged steps per second for each logger, replaying recorded frames of block
+ * state so that the sim itself isn't measured.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+public class LoggerBenchmark {
+
+	/**
+	 * Enough to keep values changing from one frame to the next.
+	 */
+	private static final int FRAME_COUNT = 64;
+
+	@Param({"1", "10", "50", "200"})
+	public int blocks;
+
+	private int frame;
+
+	private Item[][] frames;
+
+	private Logger logger;
+
+	@Param({"binary", "episodic", "filter", "null", "text"})
+	public String loggerType;
+
+	private long steps;
+
+	@Benchmark
+	public Logger logStep() {
+		Item[] items = frames[frame];
+		frame = (frame + 1) % FRAME_COUNT;
+		steps++;
+		logger.logSimTime(steps, 0.01 * steps);
+		for (Item item: items) {
+			logger.logItem(item);
+		}
+		return logger;
+	}
+
+	@Setup
+	public void setUp() {
+		World world = BenchWorlds.newWorld(blocks, new NullLogger());
+		frames = BenchWorlds.recordFrames(world, 100, FRAME_COUNT);
+		if (loggerType.equals("binary")) {
+			logger = new BinaryLogger(BenchWorlds.nullStream(), true);
+		} else if (loggerType.equals("episodic")) {
+			logger = new EpisodicLogger(new NullLogger());
+		} else if (loggerType.equals("filter")) {
+			logger = new FilterLogger(new NullLogger());
+		} else if (loggerType.equals("null")) {
+			logger = new NullLogger();
+		} else if (loggerType.equals("text")) {
+			logger = new TextLogger(BenchWorlds.nullFormatter());
+		} else {
+			throw new RuntimeException("Unknown logger type: " + loggerType);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		logger.close();
+	}
+
+}
@@ -0,0 +1,36 @@
+package stackiter.sim;
+
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Sim steps per second with nothing logged.
+ * The world is rebuilt each iteration, so each one covers blocks falling,
+ * settling, and sitting in piles.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+public class WorldBenchmark {
+
+	@Param({"1", "10", "50", "200"})
+	public int blocks;
+
+	private World world;
+
+	@Setup(Level.Iteration)
+	public void setUp() {
+		world = BenchWorlds.newWorld(blocks, new NullLogger());
+	}
+
+	@Benchmark
+	public World update() {
+		world.update();
+		return world;
+	}
+
+}
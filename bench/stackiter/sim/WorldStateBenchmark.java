@@ -0,0 +1,58 @@
+package stackiter.sim;
+
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Costs of world state snapshots, both alone and with a step's worth of item
+ * updates, as EpisodicLogger does each step. Also filling from a live world,
+ * as the option agent bridge does.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+public class WorldStateBenchmark {
+
+	@Param({"1", "10", "50", "200"})
+	public int blocks;
+
+	private Item[] items;
+
+	private WorldState state;
+
+	private World world;
+
+	@Benchmark
+	public WorldState snapshot() {
+		return state.clone();
+	}
+
+	@Benchmark
+	public WorldState snapshotAndUpdate() {
+		WorldState next = state.clone();
+		for (Item item: items) {
+			next.items.put(item);
+		}
+		return next;
+	}
+
+	@Benchmark
+	public WorldState fillFrom() {
+		WorldState result = new WorldState();
+		result.fillFrom(world);
+		return result;
+	}
+
+	@Setup
+	public void setUp() {
+		world = BenchWorlds.newWorld(blocks, new NullLogger());
+		items = BenchWorlds.recordFrames(world, 100, 1)[0];
+		state = new WorldState();
+		state.fillFrom(world);
+	}
+
+}
@@ -153,6 +153,29 @@ public class CholeskyDecomposition {
       return new Matrix(L,n,n);
    }
 
+   /** Rank one update, so the factor is of A + x*x' instead, in O(n^2).
+   @param  x   Vector as long as A is square.
+   @exception  IllegalArgumentException  Vector length must agree.
+   @exception  RuntimeException  Matrix is not symmetric positive definite.
+   */
+
+   public void update (double[] x) {
+      checkVector(x);
+      update(L,x.clone(),null,null);
+   }
+
+   /** Rank one downdate, so the factor is of A - x*x' instead, in O(n^2).
+   The factor is left alone if that wouldn't be positive definite.
+   @param  x   Vector as long as A is square.
+   @exception  IllegalArgumentException  Vector length must agree.
+   @exception  RuntimeException  Matrix is not symmetric positive definite.
+   */
+
+   public void downdate (double[] x) {
+      checkVector(x);
+      downdate(L,x,null,null);
+   }
+
    /** Solve A*X = B
    @param  B   A Matrix with as many rows as A and any number of columns.
    @return     X so that L*L'*X = B
@@ -195,5 +218,110 @@ public class CholeskyDecomposition {
 
       return new Matrix(X,n,nx);
    }
+
+/* ------------------------
+   Package Methods
+ * ------------------------ */
+
+   /** Rotate x' in as a new row below L', by LINPACK dchud, which is also
+   appending a row to the R of a QR decomposition, since R = L'.  If given,
+   Z holds Q'*B for some B, which gets the matching row y' appended.
+   Overwrites x and y with what's left after rotation.
+   */
+
+   static void update (double[][] L, double[] x, double[][] Z, double[] y) {
+      int n = L.length;
+      for (int k = 0; k < n; k++) {
+         double r = Maths.hypot(L[k][k],x[k]);
+         if (r == 0.0) {
+            continue;
+         }
+         double c = L[k][k]/r;
+         double s = x[k]/r;
+         L[k][k] = r;
+         for (int i = k+1; i < n; i++) {
+            double t = L[i][k];
+            L[i][k] = c*t + s*x[i];
+            x[i] = c*x[i] - s*t;
+         }
+         if (Z != null) {
+            double[] Zrowk = Z[k];
+            for (int j = 0; j < y.length; j++) {
+               double t = Zrowk[j];
+               Zrowk[j] = c*t + s*y[j];
+               y[j] = c*y[j] - s*t;
+            }
+         }
+      }
+   }
+
+   /** Rotate x' back out of L', by LINPACK dchdd, which is also deleting a
+   row from the R of a QR decomposition.  If given, Z holds Q'*B for some B,
+   which loses the matching row y'.  Leaves everything alone and throws if
+   L*L' - x*x' wouldn't be positive definite.
+   */
+
+   static void downdate (double[][] L, double[] x, double[][] Z, double[] y) {
+      int n = L.length;
+      // Solve L*a = x.
+      double[] a = new double[n];
+      double norm = 0.0;
+      for (int k = 0; k < n; k++) {
+         double t = x[k];
+         for (int i = 0; i < k; i++) {
+            t -= L[k][i]*a[i];
+         }
+         a[k] = t/L[k][k];
+         norm = Maths.hypot(norm,a[k]);
+      }
+      if (!(norm < 1.0)) {
+         throw new RuntimeException("Matrix is not symmetric positive definite.");
+      }
+      // Find the rotations, last to first.
+      double alpha = Math.sqrt(1.0 - norm*norm);
+      double[] c = new double[n];
+      double[] s = new double[n];
+      for (int k = n-1; k >= 0; k--) {
+         double scale = alpha + Math.abs(a[k]);
+         double ca = alpha/scale;
+         double sa = a[k]/scale;
+         double r = Math.sqrt(ca*ca + sa*sa);
+         c[k] = ca/r;
+         s[k] = sa/r;
+         alpha = scale*r;
+      }
+      // Apply them to each row of L, which are columns of R.
+      for (int j = 0; j < n; j++) {
+         double[] Lrowj = L[j];
+         double t = 0.0;
+         for (int k = j; k >= 0; k--) {
+            double u = c[k]*t + s[k]*Lrowj[k];
+            Lrowj[k] = c[k]*Lrowj[k] - s[k]*t;
+            t = u;
+         }
+      }
+      if (Z != null) {
+         for (int j = 0; j < y.length; j++) {
+            double zeta = y[j];
+            for (int k = 0; k < n; k++) {
+               Z[k][j] = (Z[k][j] - s[k]*zeta)/c[k];
+               zeta = c[k]*zeta - s[k]*Z[k][j];
+            }
+         }
+      }
+   }
+
+/* ------------------------
+   Private Methods
+ * ------------------------ */
+
+   private void checkVector (double[] x) {
+      if (x.length != n) {
+         throw new IllegalArgumentException("Vector length must agree.");
+      }
+      if (!isspd) {
+         throw new RuntimeException("Matrix is not symmetric positive definite.");
+      }
+   }
 }
 
@@ -0,0 +1,447 @@
+package jamasam;
+
+/**
+   A matrix stored in one flat array with row and column strides, so that
+   submatrices, transposes, rows and columns can be views sharing the same
+   storage instead of copies.
+<P>
+   Element (i,j) lives at data[offset + i*rowStride + j*columnStride].  New
+   matrices are packed by rows.  Views write through to whatever they view.
+<P>
+   For decompositions and anything else only Matrix offers, toMatrix makes a
+   Matrix copy, and the convenience methods here do that for you.
+ */
+
+public class FlatMatrix implements Cloneable {
+
+	/* ------------------------
+   Class variables
+	 * ------------------------ */
+
+	/** Step between columns in the storage.
+	 */
+	private int columnStride;
+
+	/** Shared storage, maybe with other matrices.
+	 */
+	private double[] data;
+
+	/** Row and column dimensions.
+	 */
+	private int m, n;
+
+	/** Position of element (0,0) in the storage.
+	 */
+	private int offset;
+
+	/** Step between rows in the storage.
+	 */
+	private int rowStride;
+
+	/* ------------------------
+   Constructors
+	 * ------------------------ */
+
+	/** Construct an m-by-n matrix of zeros, packed by rows.
+   @param m    Number of rows.
+   @param n    Number of colums.
+	 */
+
+	public FlatMatrix (int m, int n) {
+		this(new double[m*n], 0, m, n, n, 1);
+	}
+
+	/** Construct a matrix over existing storage without copying.
+   @param data          Storage, which might be shared.
+   @param offset        Position of element (0,0).
+   @param m             Number of rows.
+   @param n             Number of colums.
+   @param rowStride     Step between rows.
+   @param columnStride  Step between columns.
+   @exception  IllegalArgumentException Elements must fit in the storage.
+	 */
+
+	public FlatMatrix (
+		double[] data, int offset, int m, int n, int rowStride, int columnStride
+	) {
+		if (m < 0 || n < 0) {
+			throw new IllegalArgumentException("Dimensions must not be negative.");
+		}
+		if (m > 0 && n > 0) {
+			long last = offset + (long)(m-1)*rowStride + (long)(n-1)*columnStride;
+			if (offset < 0 || offset >= data.length || last < 0 || last >= data.length) {
+				throw new IllegalArgumentException("Elements must fit in the storage.");
+			}
+		}
+		this.data = data;
+		this.offset = offset;
+		this.m = m;
+		this.n = n;
+		this.rowStride = rowStride;
+		this.columnStride = columnStride;
+	}
+
+	/** Construct a matrix from a copy of a Matrix.
+   @param A    Matrix to copy, packed by rows.
+	 */
+
+	public FlatMatrix (Matrix A) {
+		this(A.getM(),A.getN());
+		double[][] B = A.getArray();
+		for (int i = 0; i < m; i++) {
+			System.arraycopy(B[i],0,data,i*n,n);
+		}
+	}
+
+	/* ------------------------
+   Public Methods
+	 * ------------------------ */
+
+	/** Construct a matrix over a one-dimensional array packed by columns,
+   without copying.
+   @param vals One-dimensional array of doubles, packed by columns (ala Fortran).
+   @param m    Number of rows.
+   @return     A matrix sharing vals.
+   @exception  IllegalArgumentException Array length must be a multiple of m.
+	 */
+
+	public static FlatMatrix columnPacked (double[] vals, int m) {
+		int n = (m != 0 ? vals.length/m : 0);
+		if (m*n != vals.length) {
+			throw new IllegalArgumentException("Array length must be a multiple of m.");
+		}
+		return new FlatMatrix(vals,0,m,n,1,m);
+	}
+
+	/** Construct a matrix over a one-dimensional array packed by rows,
+   without copying.
+   @param vals One-dimensional array of doubles, packed by rows.
+   @param n    Number of columns.
+   @return     A matrix sharing vals.
+   @exception  IllegalArgumentException Array length must be a multiple of n.
+	 */
+
+	public static FlatMatrix rowPacked (double[] vals, int n) {
+		int m = (n != 0 ? vals.length/n : 0);
+		if (m*n != vals.length) {
+			throw new IllegalArgumentException("Array length must be a multiple of n.");
+		}
+		return new FlatMatrix(vals,0,m,n,n,1);
+	}
+
+	/** Make a deep copy, packed by rows, sharing nothing.
+	 */
+
+	public FlatMatrix copy () {
+		FlatMatrix X = new FlatMatrix(m,n);
+		double[] C = X.data;
+		for (int i = 0; i < m; i++) {
+			int k = offset + i*rowStride;
+			for (int j = 0; j < n; j++) {
+				C[i*n+j] = data[k];
+				k += columnStride;
+			}
+		}
+		return X;
+	}
+
+	/** Clone the FlatMatrix object.
+	 */
+
+	@Override
+	public Object clone () {
+		return this.copy();
+	}
+
+	/** Get a single element.
+   @param i    Row index.
+   @param j    Column index.
+   @return     A(i,j)
+   @exception  ArrayIndexOutOfBoundsException
+	 */
+
+	public double get (int i, int j) {
+		return data[index(i,j)];
+	}
+
+	/** Get a column as a view.
+   @param j    Column index.
+   @return     A(:,j), sharing storage.
+   @exception  ArrayIndexOutOfBoundsException Submatrix indices
+	 */
+
+	public FlatMatrix getColumn (int j) {
+		return getMatrix(0,m-1,j,j);
+	}
+
+	/** Make a one-dimensional column packed copy.
+   @return     Matrix elements packed in a one-dimensional array by columns.
+	 */
+
+	public double[] getColumnPackedCopy () {
+		return transpose().copy().data;
+	}
+
+	/** Step between columns in the storage.
+	 */
+
+	public int getColumnStride () {
+		return columnStride;
+	}
+
+	/** Access the storage, which may hold more than this matrix.
+   @return     Pointer to the storage.
+	 */
+
+	public double[] getData () {
+		return data;
+	}
+
+	/** Get row dimension.
+   @return     m, the number of rows.
+	 */
+
+	public int getM () {
+		return m;
+	}
+
+	/** Get a submatrix as a view.
+   @param i0   Initial row index
+   @param i1   Final row index
+   @param j0   Initial column index
+   @param j1   Final column index
+   @return     A(i0:i1,j0:j1), sharing storage.
+   @exception  ArrayIndexOutOfBoundsException Submatrix indices
+	 */
+
+	public FlatMatrix getMatrix (int i0, int i1, int j0, int j1) {
+		if (i0 < 0 || i1 >= m || i1 < i0-1 || j0 < 0 || j1 >= n || j1 < j0-1) {
+			throw new ArrayIndexOutOfBoundsException("Submatrix indices");
+		}
+		int rows = i1-i0+1;
+		int columns = j1-j0+1;
+		if (rows == 0 || columns == 0) {
+			return new FlatMatrix(rows,columns);
+		}
+		return new FlatMatrix(
+			data,offset+i0*rowStride+j0*columnStride,rows,columns,rowStride,columnStride
+		);
+	}
+
+	/** Get column dimension.
+   @return     n, the number of columns.
+	 */
+
+	public int getN () {
+		return n;
+	}
+
+	/** Position of element (0,0) in the storage.
+	 */
+
+	public int getOffset () {
+		return offset;
+	}
+
+	/** Get a row as a view.
+   @param i    Row index.
+   @return     A(i,:), sharing storage.
+   @exception  ArrayIndexOutOfBoundsException Submatrix indices
+	 */
+
+	public FlatMatrix getRow (int i) {
+		return getMatrix(i,i,0,n-1);
+	}
+
+	/** Make a one-dimensional row packed copy.
+   @return     Matrix elements packed in a one-dimensional array by rows.
+	 */
+
+	public double[] getRowPackedCopy () {
+		return copy().data;
+	}
+
+	/** Step between rows in the storage.
+	 */
+
+	public int getRowStride () {
+		return rowStride;
+	}
+
+	/** Set a single element.
+   @param i    Row index.
+   @param j    Column index.
+   @param s    A(i,j).
+   @exception  ArrayIndexOutOfBoundsException
+	 */
+
+	public void set (int i, int j, double s) {
+		data[index(i,j)] = s;
+	}
+
+	/** Copy the elements of another matrix into this one.
+   @param X    Matrix of the same dimensions, which may overlap this one.
+   @exception  IllegalArgumentException Matrix dimensions must agree.
+	 */
+
+	public void setMatrix (FlatMatrix X) {
+		if (X.m != m || X.n != n) {
+			throw new IllegalArgumentException("Matrix dimensions must agree.");
+		}
+		if (X.data == data) {
+			// Could overlap, so go through a copy.
+			X = X.copy();
+		}
+		for (int i = 0; i < m; i++) {
+			for (int j = 0; j < n; j++) {
+				set(i,j,X.get(i,j));
+			}
+		}
+	}
+
+	/** Make a Matrix copy, such as for decompositions.
+   @return     A new Matrix with the same elements.
+	 */
+
+	public Matrix toMatrix () {
+		double[][] C = new double[m][n];
+		for (int i = 0; i < m; i++) {
+			int k = offset + i*rowStride;
+			for (int j = 0; j < n; j++) {
+				C[i][j] = data[k];
+				k += columnStride;
+			}
+		}
+		return new Matrix(C,m,n);
+	}
+
+	/** Matrix transpose as a view.
+   @return     A', sharing storage.
+	 */
+
+	public FlatMatrix transpose () {
+		if (m == 0 || n == 0) {
+			return new FlatMatrix(n,m);
+		}
+		return new FlatMatrix(data,offset,n,m,columnStride,rowStride);
+	}
+
+	/** Linear algebraic matrix multiplication, A * B
+   @param B    another matrix
+   @return     Matrix product, A * B, packed by rows.
+   @exception  IllegalArgumentException Matrix inner dimensions must agree.
+	 */
+
+	public FlatMatrix times (FlatMatrix B) {
+		return timesInto(B,new FlatMatrix(m,B.n));
+	}
+
+	/** Linear algebraic matrix multiplication into existing storage,
+   C = A * B.  Sums go in the same order as Matrix.times, so results match
+   exactly.
+   @param B    another matrix
+   @param C    where to put the product, not sharing storage with A or B
+   @return     C
+   @exception  IllegalArgumentException Matrix dimensions must agree.
+	 */
+
+	public FlatMatrix timesInto (FlatMatrix B, FlatMatrix C) {
+		if (B.m != n) {
+			throw new IllegalArgumentException("Matrix inner dimensions must agree.");
+		}
+		if (C.m != m || C.n != B.n) {
+			throw new IllegalArgumentException("Product dimensions must agree.");
+		}
+		if (C.data == data || C.data == B.data) {
+			throw new IllegalArgumentException("Product must not share storage.");
+		}
+		for (int i = 0; i < m; i++) {
+			for (int j = 0; j < B.n; j++) {
+				C.set(i,j,0);
+			}
+			int a = offset + i*rowStride;
+			for (int k = 0; k < n; k++) {
+				double Aik = data[a];
+				a += columnStride;
+				int b = B.offset + k*B.rowStride;
+				int c = C.offset + i*C.rowStride;
+				for (int j = 0; j < B.n; j++) {
+					C.data[c] += Aik*B.data[b];
+					b += B.columnStride;
+					c += C.columnStride;
+				}
+			}
+		}
+		return C;
+	}
+
+	/** LU Decomposition of a Matrix copy
+   @return     LUDecomposition
+   @see LUDecomposition
+	 */
+
+	public LUDecomposition lu () {
+		return new LUDecomposition(toMatrix());
+	}
+
+	/** QR Decomposition of a Matrix copy
+   @return     QRDecomposition
+   @see QRDecomposition
+	 */
+
+	public QRDecomposition qr () {
+		return new QRDecomposition(toMatrix());
+	}
+
+	/** Cholesky Decomposition of a Matrix copy
+   @return     CholeskyDecomposition
+   @see CholeskyDecomposition
+	 */
+
+	public CholeskyDecomposition chol () {
+		return new CholeskyDecomposition(toMatrix());
+	}
+
+	/** Singular Value Decomposition of a Matrix copy
+   @return     SingularValueDecomposition
+   @see SingularValueDecomposition
+	 */
+
+	public SingularValueDecomposition svd () {
+		return new SingularValueDecomposition(toMatrix());
+	}
+
+	/** Eigenvalue Decomposition of a Matrix copy
+   @return     EigenvalueDecomposition
+   @see EigenvalueDecomposition
+	 */
+
+	public EigenvalueDecomposition eig () {
+		return new EigenvalueDecomposition(toMatrix());
+	}
+
+	/** Solve A*X = B
+   @param B    right hand side
+   @return     solution if A is square, least squares solution otherwise
+	 */
+
+	public FlatMatrix solve (FlatMatrix B) {
+		return new FlatMatrix(toMatrix().solve(B.toMatrix()));
+	}
+
+	/* ------------------------
+   Private Methods
+	 * ------------------------ */
+
+	/** Storage position of an element, checked, since views otherwise could
+   quietly reach outside themselves.
+	 */
+
+	private int index (int i, int j) {
+		if (i < 0 || i >= m || j < 0 || j >= n) {
+			throw new ArrayIndexOutOfBoundsException("(" + i + "," + j + ")");
+		}
+		return offset + i*rowStride + j*columnStride;
+	}
+
+}
@@ -3,6 +3,7 @@ package jamasam;
 import java.io.*;
 import java.text.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
    Jama = Java Matrix class.
@@ -64,6 +65,19 @@ public class Matrix implements Cloneable {
 	 */
 	private int m, n;
 
+	/** Products with at least this many multiply-adds split rows across
+   threads.
+	 */
+	private static final long PARALLEL_WORK = 1L << 20;
+
+	/** Tile edge for products, so tiles of B stay in cache while reused.
+	 */
+	private static final int TILE = 64;
+
+	/** Shared by all products, made on first need.
+	 */
+	private static ForkJoinPool pool;
+
 	/* ------------------------
    Constructors
 	 * ------------------------ */
@@ -737,23 +751,38 @@ public class Matrix implements Cloneable {
 		if (B.m != n) {
 			throw new IllegalArgumentException("Matrix inner dimensions must agree.");
 		}
-		Matrix X = new Matrix(m,B.n);
-		double[][] C = X.getArray();
-		double[] Bcolj = new double[n];
-		for (int j = 0; j < B.n; j++) {
-			for (int k = 0; k < n; k++) {
-				Bcolj[k] = B.A[k][j];
-			}
-			for (int i = 0; i < m; i++) {
-				double[] Arowi = A[i];
-				double s = 0;
-				for (int k = 0; k < n; k++) {
-					s += Arowi[k]*Bcolj[k];
-				}
-				C[i][j] = s;
-			}
+		return timesInto(B, new Matrix(m,B.n));
+	}
+
+	/** Linear algebraic matrix multiplication into existing storage, C = A * B.
+   Large products are tiled and split across threads, and small square ones
+   are unrolled. Elements otherwise sum in the same order as a plain loop,
+   so results don't depend on thread count.
+   @param B    another matrix
+   @param C    destination, with rows of A and columns of B, not sharing
+               storage with either
+   @return     C, now holding A * B
+   @exception  IllegalArgumentException Matrix inner dimensions must agree.
+	 */
+
+	public Matrix timesInto (Matrix B, Matrix C) {
+		if (B.m != n) {
+			throw new IllegalArgumentException("Matrix inner dimensions must agree.");
 		}
-		return X;
+		if (C.m != m || C.n != B.n) {
+			throw new IllegalArgumentException("Matrix dimensions must agree.");
+		}
+		if (C.A == A || C.A == B.A) {
+			throw new IllegalArgumentException("Product can't overwrite a factor.");
+		}
+		if (m == n && n == B.n && m >= 2 && m <= 4) {
+			timesSmall(A, B.A, C.A, m);
+		} else if ((long)m * n * B.n >= PARALLEL_WORK && m > TILE) {
+			getPool().invoke(new Product(A, B.A, C.A, 0, m, n, B.n));
+		} else {
+			timesRows(A, B.A, C.A, 0, m, n, B.n);
+		}
+		return C;
 	}
 
 	/** LU Decomposition
@@ -1031,6 +1060,114 @@ public class Matrix implements Cloneable {
    Private Methods
 	 * ------------------------ */
 
+	/** Rows of a product, split in halves until small enough for one thread.
+	 */
+
+	@SuppressWarnings("serial")
+	private static class Product extends RecursiveAction {
+
+		private double[][] A, B, C;
+
+		private int i0, i1, n, p;
+
+		Product (double[][] A, double[][] B, double[][] C, int i0, int i1, int n, int p) {
+			this.A = A;
+			this.B = B;
+			this.C = C;
+			this.i0 = i0;
+			this.i1 = i1;
+			this.n = n;
+			this.p = p;
+		}
+
+		@Override
+		protected void compute () {
+			if (i1 - i0 <= TILE || (long)(i1 - i0) * n * p < PARALLEL_WORK / 4) {
+				timesRows(A, B, C, i0, i1, n, p);
+				return;
+			}
+			int mid = (i0 + i1) >>> 1;
+			invokeAll(
+				new Product(A, B, C, i0, mid, n, p),
+				new Product(A, B, C, mid, i1, n, p)
+			);
+		}
+
+	}
+
+	private static synchronized ForkJoinPool getPool () {
+		if (pool == null) {
+			pool = new ForkJoinPool();
+		}
+		return pool;
+	}
+
+	/** Rows i0 to i1 - 1 of C = A * B, tiled over k and j. Each element still
+   accumulates over k in order from zero.
+	 */
+
+	private static void timesRows (double[][] A, double[][] B, double[][] C, int i0, int i1, int n, int p) {
+		for (int i = i0; i < i1; i++) {
+			Arrays.fill(C[i], 0, p, 0);
+		}
+		for (int k0 = 0; k0 < n; k0 += TILE) {
+			int k1 = Math.min(k0 + TILE, n);
+			for (int j0 = 0; j0 < p; j0 += TILE) {
+				int j1 = Math.min(j0 + TILE, p);
+				for (int i = i0; i < i1; i++) {
+					double[] Arowi = A[i];
+					double[] Crowi = C[i];
+					for (int k = k0; k < k1; k++) {
+						double a = Arowi[k];
+						double[] Browk = B[k];
+						for (int j = j0; j < j1; j++) {
+							Crowi[j] += a*Browk[j];
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/** Unrolled square products for sizes 2 through 4.
+	 */
+
+	private static void timesSmall (double[][] A, double[][] B, double[][] C, int size) {
+		double[] A0 = A[0], A1 = A[1], B0 = B[0], B1 = B[1];
+		double[] C0 = C[0], C1 = C[1];
+		switch (size) {
+		case 2:
+			for (int j = 0; j < 2; j++) {
+				double b0 = B0[j], b1 = B1[j];
+				C0[j] = A0[0]*b0 + A0[1]*b1;
+				C1[j] = A1[0]*b0 + A1[1]*b1;
+			}
+			break;
+		case 3: {
+			double[] A2 = A[2], B2 = B[2], C2 = C[2];
+			for (int j = 0; j < 3; j++) {
+				double b0 = B0[j], b1 = B1[j], b2 = B2[j];
+				C0[j] = A0[0]*b0 + A0[1]*b1 + A0[2]*b2;
+				C1[j] = A1[0]*b0 + A1[1]*b1 + A1[2]*b2;
+				C2[j] = A2[0]*b0 + A2[1]*b1 + A2[2]*b2;
+			}
+			break;
+		}
+		case 4: {
+			double[] A2 = A[2], A3 = A[3], B2 = B[2], B3 = B[3];
+			double[] C2 = C[2], C3 = C[3];
+			for (int j = 0; j < 4; j++) {
+				double b0 = B0[j], b1 = B1[j], b2 = B2[j], b3 = B3[j];
+				C0[j] = A0[0]*b0 + A0[1]*b1 + A0[2]*b2 + A0[3]*b3;
+				C1[j] = A1[0]*b0 + A1[1]*b1 + A1[2]*b2 + A1[3]*b3;
+				C2[j] = A2[0]*b0 + A2[1]*b1 + A2[2]*b2 + A2[3]*b3;
+				C3[j] = A3[0]*b0 + A3[1]*b1 + A3[2]*b2 + A3[3]*b3;
+			}
+			break;
+		}
+		}
+	}
+
 	/** Check if size(A) == size(B) **/
 
 	private void checkMatrixDimensions (Matrix B) {
@@ -0,0 +1,295 @@
+package jamasam;
+
+import java.util.*;
+
+/**
+   Randomized, truncated Singular Value Decomposition.
+<P>
+   Approximates the top k singular values and right singular vectors of an
+   m-by-n matrix A, by Halko, Martinsson and Tropp, without ever holding A
+   or anything m long.  Rows come in blocks from an Iterable, one pass per
+   iterator, so they can be read from disk again each pass.  That suits
+   matrices with many more rows than columns, as from whole log corpora.
+<P>
+   The range of A'*A gets sampled from random Gaussian vectors, sharpened
+   by power iterations, then A gets projected onto that subspace.  Blocks
+   of the projection are folded into a small triangular factor by QR as they
+   arrive, and the final small SVD comes from that.  So memory is about
+   n*(k+oversample) plus one block.  Large block products get split across
+   threads by Matrix.times.
+<P>
+   With centering, column means come from a first pass, and everything acts
+   on A less the means, which makes this PCA.  Left singular vectors and
+   principal component scores are then available per block, from getU and
+   project.
+<P>
+   Given the same Random seed and blocks, results are the same every time.
+   Passes made are 2 + powerIterations, plus 1 for centering.
+ */
+
+public class RandomizedSVD {
+
+	/* ------------------------
+   Class variables
+	 * ------------------------ */
+
+	/** Whether to subtract means.
+	 */
+	private boolean center;
+
+	/** Column means, or zeros without centering.
+	 */
+	private double[] means;
+
+	/** Row and column dimensions, and the number of components.
+	 */
+	private int m, n, k;
+
+	/** Singular values, descending.
+	 */
+	private double[] s;
+
+	/** Right singular vectors, n-by-k.
+	 */
+	private Matrix V;
+
+	/* ------------------------
+   Constructors
+	 * ------------------------ */
+
+	/** Approximate the top k of an in-memory matrix, with default oversampling
+   and power iterations and a fixed seed.
+   @param A    Rectangular matrix.
+   @param k    Number of components.
+	 */
+
+	public RandomizedSVD (Matrix A, int k) {
+		this(blocks(A,1024),A.getN(),k,10,2,false,new Random(0));
+	}
+
+	/** Approximate the top k from blocks of rows.
+   @param rows              Row blocks, each with n columns, the same on
+                            every pass.
+   @param n                 Number of columns.
+   @param k                 Number of components.
+   @param oversample        Extra samples for accuracy, like 10.
+   @param powerIterations   Extra passes for accuracy with slowly decaying
+                            singular values, like 2.
+   @param center            Whether to subtract column means first, for PCA.
+   @param random            Source of the random samples.
+   @exception  IllegalArgumentException k must be between 1 and n.
+	 */
+
+	public RandomizedSVD (
+		Iterable<Matrix> rows, int n, int k, int oversample,
+		int powerIterations, boolean center, Random random
+	) {
+		if (k < 1 || k > n) {
+			throw new IllegalArgumentException("k must be between 1 and n.");
+		}
+		this.n = n;
+		this.k = k;
+		this.center = center;
+		means = new double[n];
+		if (center) {
+			findMeans(rows);
+		}
+		int l = Math.min(k + oversample, n);
+		// Sample the row space, with power iterations.
+		Matrix Q = new Matrix(n,l);
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < l; j++) {
+				Q.set(i,j,random.nextGaussian());
+			}
+		}
+		for (int pass = 0; pass <= powerIterations; pass++) {
+			Q = orthonormalize(timesGram(rows,Q));
+		}
+		// Project onto it, folding blocks into R.
+		Matrix R = new Matrix(l,l);
+		m = 0;
+		for (Matrix block: rows) {
+			checkBlock(block);
+			Matrix C = centered(block).times(Q);
+			Matrix stacked = new Matrix(l + C.getM(),l);
+			stacked.setMatrix(0,l-1,0,l-1,R);
+			stacked.setMatrix(l,l + C.getM()-1,0,l-1,C);
+			R = stacked.qr().getR();
+			m += block.getM();
+		}
+		// A*Q = W*R = W*(U*S*V'), so A is about (W*U)*S*(Q*V)'.
+		SingularValueDecomposition svd = R.svd();
+		s = Arrays.copyOf(svd.getSingularValues(),k);
+		V = Q.times(svd.getV()).getMatrix(0,n-1,0,k-1);
+	}
+
+	/* ------------------------
+   Public Methods
+	 * ------------------------ */
+
+	/** Split an in-memory matrix into row blocks, copying one at a time.
+   @param A            Matrix to split.
+   @param blockRows    Rows per block, except maybe the last.
+   @return             Blocks for any number of passes.
+	 */
+
+	public static Iterable<Matrix> blocks (final Matrix A, final int blockRows) {
+		return new Iterable<Matrix>() {
+			@Override
+			public Iterator<Matrix> iterator() {
+				return new Iterator<Matrix>() {
+					int begin = 0;
+					@Override
+					public boolean hasNext() {
+						return begin < A.getM();
+					}
+					@Override
+					public Matrix next() {
+						if (!hasNext()) {
+							throw new NoSuchElementException();
+						}
+						int end = Math.min(begin + blockRows,A.getM());
+						Matrix block = A.getMatrix(begin,end-1,0,A.getN()-1);
+						begin = end;
+						return block;
+					}
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
+
+	/** Column means subtracted, or zeros without centering.
+	 */
+
+	public double[] getMeans () {
+		return means.clone();
+	}
+
+	/** Total rows seen in the last pass.
+	 */
+
+	public int getM () {
+		return m;
+	}
+
+	/** Return the diagonal matrix of singular values
+   @return     S
+	 */
+
+	public Matrix getS () {
+		Matrix X = new Matrix(k,k);
+		for (int i = 0; i < k; i++) {
+			X.set(i,i,s[i]);
+		}
+		return X;
+	}
+
+	/** Return the top singular values, descending.
+   @return     diagonal of S.
+	 */
+
+	public double[] getSingularValues () {
+		return s.clone();
+	}
+
+	/** Left singular vectors for a block of rows, as in A = U*S*V'.
+   Components with zero singular values come out zero.
+   @param block Rows of A, centered here if the decomposition was.
+   @return     Matching rows of U.
+	 */
+
+	public Matrix getU (Matrix block) {
+		Matrix U = project(block);
+		for (int j = 0; j < k; j++) {
+			double scale = s[j] == 0 ? 0 : 1/s[j];
+			for (int i = 0; i < U.getM(); i++) {
+				U.set(i,j,U.get(i,j)*scale);
+			}
+		}
+		return U;
+	}
+
+	/** Return the right singular vectors, n-by-k.
+   @return     V
+	 */
+
+	public Matrix getV () {
+		return V.copy();
+	}
+
+	/** Reduce rows to k dimensions, which for PCA gives component scores.
+   @param block Rows of A, centered here if the decomposition was.
+   @return     block*V, after centering.
+	 */
+
+	public Matrix project (Matrix block) {
+		checkBlock(block);
+		return centered(block).times(V);
+	}
+
+	/* ------------------------
+   Private Methods
+	 * ------------------------ */
+
+	private void checkBlock (Matrix block) {
+		if (block.getN() != n) {
+			throw new IllegalArgumentException("Matrix column dimensions must agree.");
+		}
+	}
+
+	private Matrix centered (Matrix block) {
+		if (!center) {
+			return block;
+		}
+		Matrix X = block.copy();
+		double[][] B = X.getArray();
+		for (int i = 0; i < X.getM(); i++) {
+			for (int j = 0; j < n; j++) {
+				B[i][j] -= means[j];
+			}
+		}
+		return X;
+	}
+
+	private void findMeans (Iterable<Matrix> rows) {
+		long count = 0;
+		for (Matrix block: rows) {
+			checkBlock(block);
+			double[][] B = block.getArray();
+			for (int i = 0; i < block.getM(); i++) {
+				for (int j = 0; j < n; j++) {
+					means[j] += B[i][j];
+				}
+			}
+			count += block.getM();
+		}
+		for (int j = 0; j < n; j++) {
+			means[j] = count == 0 ? 0 : means[j]/count;
+		}
+	}
+
+	/** An orthonormal basis for the columns, by QR.
+	 */
+
+	private static Matrix orthonormalize (Matrix X) {
+		return X.qr().getQ();
+	}
+
+	/** A'*A*X, one block at a time.
+	 */
+
+	private Matrix timesGram (Iterable<Matrix> rows, Matrix X) {
+		Matrix G = new Matrix(n,X.getN());
+		for (Matrix block: rows) {
+			checkBlock(block);
+			Matrix B = centered(block);
+			G.plusEquals(B.transpose().times(B.times(X)));
+		}
+		return G;
+	}
+
+}
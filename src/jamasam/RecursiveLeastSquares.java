@@ -0,0 +1,217 @@
+package jamasam;
+
+/**
+   Least squares that takes observations one at a time.
+<P>
+   Keeps the triangular factor R of a QR decomposition of all rows so far,
+   and Q'*Y for the targets, without Q itself.  Adding or removing a row
+   rotates it in or out of R in O(n^2), as opposed to refactoring from
+   scratch in O(m*n^2).  Solving is then just back substitution.
+<P>
+   R is stored transposed, as the L of a Cholesky factor of A'*A, which is
+   the same thing.  A ridge penalty starts things off positive definite, so
+   solutions exist even before there are enough rows.  Forgetting scales
+   down past rows, for tracking things that drift.
+ */
+
+public class RecursiveLeastSquares {
+
+	/* ------------------------
+   Class variables
+	 * ------------------------ */
+
+	/** Observations added less those removed.
+	 */
+	private int count;
+
+	/** The transposed R factor, lower triangular.
+	 */
+	private double[][] L;
+
+	/** Number of inputs and number of targets.
+	 */
+	private int n, nz;
+
+	/** Q'*Y, as far as R goes.
+	 */
+	private double[][] Z;
+
+	/* ------------------------
+   Constructors
+	 * ------------------------ */
+
+	/** Start with no observations, just a ridge penalty.
+   @param n       Number of inputs.
+   @param nz      Number of targets.
+   @param ridge   Penalty on squared coefficients, which must be positive.
+   @exception  IllegalArgumentException Ridge must be positive.
+	 */
+
+	public RecursiveLeastSquares (int n, int nz, double ridge) {
+		if (!(ridge > 0)) {
+			throw new IllegalArgumentException("Ridge must be positive.");
+		}
+		this.n = n;
+		this.nz = nz;
+		L = new double[n][n];
+		Z = new double[n][nz];
+		double d = Math.sqrt(ridge);
+		for (int i = 0; i < n; i++) {
+			L[i][i] = d;
+		}
+	}
+
+	/** Start from a batch of observations, factored by QR.
+   @param A    Inputs, one row per observation, with full column rank.
+   @param Y    Targets, one row per observation.
+   @exception  IllegalArgumentException Matrix row dimensions must agree.
+   @exception  RuntimeException Matrix is rank deficient.
+	 */
+
+	public RecursiveLeastSquares (Matrix A, Matrix Y) {
+		if (A.getM() != Y.getM()) {
+			throw new IllegalArgumentException("Matrix row dimensions must agree.");
+		}
+		QRDecomposition qr = A.qr();
+		if (!qr.isFullRank()) {
+			throw new RuntimeException("Matrix is rank deficient.");
+		}
+		n = A.getN();
+		nz = Y.getN();
+		count = A.getM();
+		L = qr.getR().transpose().getArray();
+		Z = qr.getQ().transpose().times(Y).getArray();
+		// Keep the diagonal positive, as rotations expect.
+		for (int k = 0; k < n; k++) {
+			if (L[k][k] < 0) {
+				for (int i = k; i < n; i++) {
+					L[i][k] = -L[i][k];
+				}
+				for (int j = 0; j < nz; j++) {
+					Z[k][j] = -Z[k][j];
+				}
+			}
+		}
+	}
+
+	/* ------------------------
+   Public Methods
+	 * ------------------------ */
+
+	/** Append an observation.
+   @param x    Inputs.
+   @param y    Targets.
+   @exception  IllegalArgumentException Vector lengths must agree.
+	 */
+
+	public void add (double[] x, double[] y) {
+		checkLengths(x,y);
+		CholeskyDecomposition.update(L,x.clone(),Z,y.clone());
+		count++;
+	}
+
+	/** Scale down the weight of everything so far, as for exponential
+   forgetting.  The ridge penalty fades along with it.
+   @param factor   Weight to keep, between 0 exclusive and 1.
+   @exception  IllegalArgumentException Factor must be in (0, 1].
+	 */
+
+	public void forget (double factor) {
+		if (!(factor > 0 && factor <= 1)) {
+			throw new IllegalArgumentException("Factor must be in (0, 1].");
+		}
+		double s = Math.sqrt(factor);
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j <= i; j++) {
+				L[i][j] *= s;
+			}
+			for (int j = 0; j < nz; j++) {
+				Z[i][j] *= s;
+			}
+		}
+	}
+
+	/** Observations added less those removed.
+	 */
+
+	public int getCount () {
+		return count;
+	}
+
+	/** Copy of the triangular factor, so that A'*A = R'*R, plus the ridge.
+   @return     R
+	 */
+
+	public Matrix getR () {
+		return new Matrix(L,n,n).transpose();
+	}
+
+	/** Predict targets for the current coefficients.
+   @param x    Inputs.
+   @return     Predicted targets.
+	 */
+
+	public double[] predict (double[] x) {
+		if (x.length != n) {
+			throw new IllegalArgumentException("Vector lengths must agree.");
+		}
+		double[][] X = solveArray();
+		double[] y = new double[nz];
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < nz; j++) {
+				y[j] += x[i]*X[i][j];
+			}
+		}
+		return y;
+	}
+
+	/** Remove an observation added before.  It isn't checked that it really
+   was added, and removing something never added gives nonsense.
+   @param x    Inputs.
+   @param y    Targets.
+   @exception  IllegalArgumentException Vector lengths must agree.
+   @exception  RuntimeException Removal would leave no positive definite fit.
+	 */
+
+	public void remove (double[] x, double[] y) {
+		checkLengths(x,y);
+		CholeskyDecomposition.downdate(L,x,Z,y);
+		count--;
+	}
+
+	/** Coefficients minimizing the squared error plus penalty.
+   @return     X, with a row per input and a column per target.
+	 */
+
+	public Matrix solve () {
+		return new Matrix(solveArray(),n,nz);
+	}
+
+	/* ------------------------
+   Private Methods
+	 * ------------------------ */
+
+	private void checkLengths (double[] x, double[] y) {
+		if (x.length != n || y.length != nz) {
+			throw new IllegalArgumentException("Vector lengths must agree.");
+		}
+	}
+
+	/** Solve R*X = Z by back substitution.
+	 */
+
+	private double[][] solveArray () {
+		double[][] X = new double[n][nz];
+		for (int k = n-1; k >= 0; k--) {
+			for (int j = 0; j < nz; j++) {
+				double t = Z[k][j];
+				for (int i = k+1; i < n; i++) {
+					t -= L[i][k]*X[i][j];
+				}
+				X[k][j] = t/L[k][k];
+			}
+		}
+		return X;
+	}
+
+}
@@ -0,0 +1,491 @@
+package jamasam;
+
+import java.util.*;
+
+import libsvm.*;
+
+/**
+   Sparse matrix in compressed rows (CSR) or compressed columns (CSC).
+<P>
+   Only nonzeros are stored.  For each row, or each column, pointers give
+   where its entries start in the parallel index and value arrays, with
+   indices sorted within each.  Compressed columns of A are the same arrays
+   as compressed rows of A', so transposing is free, and the two forms
+   convert into each other in O(nnz).
+<P>
+   Matrices are immutable once made.  Row iteration needs compressed rows,
+   which get made and kept on first need if not already there.
+ */
+
+public class SparseMatrix {
+
+	/* ------------------------
+   Nested classes
+	 * ------------------------ */
+
+	/** Steps through the nonzeros of one row, in column order, without
+   allocating anything per entry.
+	 */
+
+	public static class Cursor {
+
+		private int end;
+
+		private int k;
+
+		private SparseMatrix matrix;
+
+		private Cursor (SparseMatrix matrix, int begin, int end) {
+			this.matrix = matrix;
+			this.k = begin - 1;
+			this.end = end;
+		}
+
+		/** Column of the current nonzero.
+		 */
+
+		public int getIndex () {
+			return matrix.indices[k];
+		}
+
+		/** Value of the current nonzero.
+		 */
+
+		public double getValue () {
+			return matrix.values[k];
+		}
+
+		/** Move to the next nonzero.
+   @return     false if there are no more.
+		 */
+
+		public boolean next () {
+			return ++k < end;
+		}
+
+	}
+
+	/* ------------------------
+   Class variables
+	 * ------------------------ */
+
+	/** Whether pointers are per row, else per column.
+	 */
+	private boolean byRows;
+
+	/** Minor indices of each nonzero.
+	 */
+	private int[] indices;
+
+	/** Row and column dimensions.
+	 */
+	private int m, n;
+
+	/** The other compressed form, once made.
+	 */
+	private SparseMatrix other;
+
+	/** Where each major line starts, with one extra for the end.
+	 */
+	private int[] pointers;
+
+	/** Nonzero values.
+	 */
+	private double[] values;
+
+	/* ------------------------
+   Constructors
+	 * ------------------------ */
+
+	/** Construct compressed rows from the nonzeros of a dense matrix.
+   @param A    Dense matrix.
+	 */
+
+	public SparseMatrix (Matrix A) {
+		m = A.getM();
+		n = A.getN();
+		byRows = true;
+		double[][] B = A.getArray();
+		int count = 0;
+		for (int i = 0; i < m; i++) {
+			for (int j = 0; j < n; j++) {
+				if (B[i][j] != 0) count++;
+			}
+		}
+		pointers = new int[m+1];
+		indices = new int[count];
+		values = new double[count];
+		int k = 0;
+		for (int i = 0; i < m; i++) {
+			for (int j = 0; j < n; j++) {
+				if (B[i][j] != 0) {
+					indices[k] = j;
+					values[k++] = B[i][j];
+				}
+			}
+			pointers[i+1] = k;
+		}
+	}
+
+	/** Construct over existing compressed arrays without copying or checking.
+   @param m           Number of rows.
+   @param n           Number of columns.
+   @param byRows      Whether compressed by rows, else by columns.
+   @param pointers    Where each row or column starts, plus the end.
+   @param indices     Column or row of each nonzero, sorted within each.
+   @param values      Value of each nonzero.
+	 */
+
+	public SparseMatrix (
+		int m, int n, boolean byRows, int[] pointers, int[] indices, double[] values
+	) {
+		this.m = m;
+		this.n = n;
+		this.byRows = byRows;
+		this.pointers = pointers;
+		this.indices = indices;
+		this.values = values;
+	}
+
+	/* ------------------------
+   Public Methods
+	 * ------------------------ */
+
+	/** Construct compressed rows from coordinate triplets, in any order.
+   Duplicates get summed, and exact zeros, given or summed, get dropped.
+   @param m           Number of rows.
+   @param n           Number of columns.
+   @param rows        Row of each triplet.
+   @param columns     Column of each triplet.
+   @param vals        Value of each triplet.
+   @param count       Number of triplets to use.
+   @return     Sparse matrix compressed by rows.
+   @exception  ArrayIndexOutOfBoundsException Triplet indices
+	 */
+
+	public static SparseMatrix fromTriplets (
+		int m, int n, int[] rows, int[] columns, double[] vals, int count
+	) {
+		// Bucket by column then stably by row, so columns come out sorted.
+		for (int t = 0; t < count; t++) {
+			if (rows[t] < 0 || rows[t] >= m || columns[t] < 0 || columns[t] >= n) {
+				throw new ArrayIndexOutOfBoundsException("Triplet indices");
+			}
+		}
+		int[] order = new int[count];
+		int[] starts = new int[n+1];
+		for (int t = 0; t < count; t++) {
+			starts[columns[t]+1]++;
+		}
+		for (int j = 0; j < n; j++) {
+			starts[j+1] += starts[j];
+		}
+		for (int t = 0; t < count; t++) {
+			order[starts[columns[t]]++] = t;
+		}
+		int[] pointers = new int[m+1];
+		for (int t = 0; t < count; t++) {
+			pointers[rows[t]+1]++;
+		}
+		for (int i = 0; i < m; i++) {
+			pointers[i+1] += pointers[i];
+		}
+		int[] next = Arrays.copyOf(pointers,m);
+		int[] indices = new int[count];
+		double[] values = new double[count];
+		for (int u = 0; u < count; u++) {
+			int t = order[u];
+			int k = next[rows[t]]++;
+			indices[k] = columns[t];
+			values[k] = vals[t];
+		}
+		// Sum duplicates, now next to each other, in place.
+		int k = 0;
+		int begin = 0;
+		for (int i = 0; i < m; i++) {
+			int end = pointers[i+1];
+			pointers[i] = k;
+			for (int q = begin; q < end; q++) {
+				if (k > pointers[i] && indices[k-1] == indices[q]) {
+					values[k-1] += values[q];
+				} else {
+					indices[k] = indices[q];
+					values[k++] = values[q];
+				}
+			}
+			// Then drop zeros, so only nonzeros stay stored.
+			int kept = pointers[i];
+			for (int q = pointers[i]; q < k; q++) {
+				if (values[q] != 0) {
+					indices[kept] = indices[q];
+					values[kept++] = values[q];
+				}
+			}
+			k = kept;
+			begin = end;
+		}
+		pointers[m] = k;
+		return new SparseMatrix(
+			m,n,true,pointers,Arrays.copyOf(indices,k),Arrays.copyOf(values,k)
+		);
+	}
+
+	/** Get a single element, by binary search.
+   @param i    Row index.
+   @param j    Column index.
+   @return     A(i,j)
+   @exception  ArrayIndexOutOfBoundsException
+	 */
+
+	public double get (int i, int j) {
+		if (i < 0 || i >= m || j < 0 || j >= n) {
+			throw new ArrayIndexOutOfBoundsException("(" + i + "," + j + ")");
+		}
+		int major = byRows ? i : j;
+		int minor = byRows ? j : i;
+		int k = Arrays.binarySearch(indices,pointers[major],pointers[major+1],minor);
+		return k < 0 ? 0 : values[k];
+	}
+
+	/** Get row dimension.
+   @return     m, the number of rows.
+	 */
+
+	public int getM () {
+		return m;
+	}
+
+	/** Get column dimension.
+   @return     n, the number of columns.
+	 */
+
+	public int getN () {
+		return n;
+	}
+
+	/** Number of stored entries.
+	 */
+
+	public int getNonZeroCount () {
+		return pointers[byRows ? m : n];
+	}
+
+	/** Whether compressed by rows, else by columns.
+	 */
+
+	public boolean isCompressedRows () {
+		return byRows;
+	}
+
+	/** Step through the nonzeros of a row.
+   @param i    Row index.
+   @return     A cursor before the first nonzero.
+	 */
+
+	public Cursor row (int i) {
+		SparseMatrix rows = toCompressedRows();
+		return new Cursor(rows,rows.pointers[i],rows.pointers[i+1]);
+	}
+
+	/** Sparse times dense, A * B
+   @param B    another matrix
+   @return     Matrix product, A * B
+   @exception  IllegalArgumentException Matrix inner dimensions must agree.
+	 */
+
+	public Matrix times (Matrix B) {
+		if (B.getM() != n) {
+			throw new IllegalArgumentException("Matrix inner dimensions must agree.");
+		}
+		int nb = B.getN();
+		Matrix X = new Matrix(m,nb);
+		double[][] C = X.getArray();
+		double[][] Barray = B.getArray();
+		if (byRows) {
+			for (int i = 0; i < m; i++) {
+				double[] Crowi = C[i];
+				for (int k = pointers[i]; k < pointers[i+1]; k++) {
+					double v = values[k];
+					double[] Browj = Barray[indices[k]];
+					for (int j = 0; j < nb; j++) {
+						Crowi[j] += v*Browj[j];
+					}
+				}
+			}
+		} else {
+			for (int c = 0; c < n; c++) {
+				double[] Browc = Barray[c];
+				for (int k = pointers[c]; k < pointers[c+1]; k++) {
+					double v = values[k];
+					double[] Crowi = C[indices[k]];
+					for (int j = 0; j < nb; j++) {
+						Crowi[j] += v*Browc[j];
+					}
+				}
+			}
+		}
+		return X;
+	}
+
+	/** Sparse times sparse, A * B, by Gustavson's row by row method.
+   @param B    another sparse matrix
+   @return     Product compressed by rows.
+   @exception  IllegalArgumentException Matrix inner dimensions must agree.
+	 */
+
+	public SparseMatrix times (SparseMatrix B) {
+		if (B.m != n) {
+			throw new IllegalArgumentException("Matrix inner dimensions must agree.");
+		}
+		SparseMatrix A = toCompressedRows();
+		B = B.toCompressedRows();
+		int nb = B.n;
+		// Dense accumulator, with marks for which columns are in use.
+		double[] sums = new double[nb];
+		int[] marks = new int[nb];
+		Arrays.fill(marks,-1);
+		int[] pointers = new int[m+1];
+		int[] indices = new int[Math.max(A.getNonZeroCount(),16)];
+		double[] values = new double[indices.length];
+		int count = 0;
+		for (int i = 0; i < m; i++) {
+			int begin = count;
+			for (int ka = A.pointers[i]; ka < A.pointers[i+1]; ka++) {
+				double v = A.values[ka];
+				int r = A.indices[ka];
+				for (int kb = B.pointers[r]; kb < B.pointers[r+1]; kb++) {
+					int j = B.indices[kb];
+					if (marks[j] != i) {
+						marks[j] = i;
+						sums[j] = 0;
+						if (count == indices.length) {
+							indices = Arrays.copyOf(indices,2*count);
+							values = Arrays.copyOf(values,2*count);
+						}
+						indices[count++] = j;
+					}
+					sums[j] += v*B.values[kb];
+				}
+			}
+			Arrays.sort(indices,begin,count);
+			// Terms can cancel, so drop zeros while compacting.
+			int kept = begin;
+			for (int k = begin; k < count; k++) {
+				double sum = sums[indices[k]];
+				if (sum != 0) {
+					indices[kept] = indices[k];
+					values[kept++] = sum;
+				}
+			}
+			count = kept;
+			pointers[i+1] = count;
+		}
+		return new SparseMatrix(
+			m,nb,true,pointers,Arrays.copyOf(indices,count),Arrays.copyOf(values,count)
+		);
+	}
+
+	/** Copy to compressed columns, or this if already so.
+   @return     Same matrix, compressed by columns.
+	 */
+
+	public SparseMatrix toCompressedColumns () {
+		return byRows ? other() : this;
+	}
+
+	/** Copy to compressed rows, or this if already so.
+   @return     Same matrix, compressed by rows.
+	 */
+
+	public SparseMatrix toCompressedRows () {
+		return byRows ? this : other();
+	}
+
+	/** Make a dense copy.
+   @return     Dense matrix with the same elements.
+	 */
+
+	public Matrix toMatrix () {
+		Matrix X = new Matrix(m,n);
+		double[][] C = X.getArray();
+		int majors = byRows ? m : n;
+		for (int a = 0; a < majors; a++) {
+			for (int k = pointers[a]; k < pointers[a+1]; k++) {
+				if (byRows) {
+					C[a][indices[k]] = values[k];
+				} else {
+					C[indices[k]][a] = values[k];
+				}
+			}
+		}
+		return X;
+	}
+
+	/** Rows as libsvm feature vectors, one svm_node array per row.
+   libsvm numbers features from 1, so column j gets index j+1.
+   @return     Nodes for each row, in column order.
+	 */
+
+	public svm_node[][] toSvmNodes () {
+		SparseMatrix rows = toCompressedRows();
+		svm_node[][] nodes = new svm_node[m][];
+		for (int i = 0; i < m; i++) {
+			int begin = rows.pointers[i];
+			nodes[i] = new svm_node[rows.pointers[i+1] - begin];
+			for (int k = 0; k < nodes[i].length; k++) {
+				svm_node node = new svm_node();
+				node.index = rows.indices[begin+k] + 1;
+				node.value = rows.values[begin+k];
+				nodes[i][k] = node;
+			}
+		}
+		return nodes;
+	}
+
+	/** Matrix transpose, sharing storage.
+   @return     A', compressed the other way.
+	 */
+
+	public SparseMatrix transpose () {
+		return new SparseMatrix(n,m,!byRows,pointers,indices,values);
+	}
+
+	/* ------------------------
+   Private Methods
+	 * ------------------------ */
+
+	/** The other compressed form, by counting sort, made once and kept.
+   Going through the majors in order leaves minors sorted.
+	 */
+
+	private synchronized SparseMatrix other () {
+		if (other == null) {
+			int majors = byRows ? m : n;
+			int minors = byRows ? n : m;
+			int count = getNonZeroCount();
+			int[] otherPointers = new int[minors+1];
+			for (int k = 0; k < count; k++) {
+				otherPointers[indices[k]+1]++;
+			}
+			for (int b = 0; b < minors; b++) {
+				otherPointers[b+1] += otherPointers[b];
+			}
+			int[] next = Arrays.copyOf(otherPointers,minors);
+			int[] otherIndices = new int[count];
+			double[] otherValues = new double[count];
+			for (int a = 0; a < majors; a++) {
+				for (int k = pointers[a]; k < pointers[a+1]; k++) {
+					int q = next[indices[k]]++;
+					otherIndices[q] = a;
+					otherValues[q] = values[k];
+				}
+			}
+			other = new SparseMatrix(
+				m,n,!byRows,otherPointers,otherIndices,otherValues
+			);
+			other.other = this;
+		}
+		return other;
+	}
+
+}
@@ -101,7 +101,7 @@ public abstract class ActionAgents {
 				// TODO right soul?
 				return false;
 			}
-			if (!getWorld().getItemSouls().contains(item.getSoul())) {
+			if (!getWorld().getItemView().contains(item.getSoul())) {
 				// It must have died.
 				return true;
 			}
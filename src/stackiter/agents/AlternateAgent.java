@@ -167,4 +167,11 @@ public class AlternateAgent extends BasicAgent {
 		return 12.5 + 10 * getRandom().nextDouble();
 	}
 
+	@Override
+	public void reset() {
+		block = null;
+		dropped = null;
+		mode = Mode.CONJURE;
+	}
+
 }
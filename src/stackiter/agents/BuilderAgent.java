@@ -34,8 +34,8 @@ public class BuilderAgent extends BasicAgent {
 	@Override
 	public void act() {
 		// Pick a new cargo item, if we don't already have one.
-		List<Soul> itemSouls = getWorld().getItemSouls();
-		if (cargo == null || !itemSouls.contains(cargo.getSoul())) {
+		World.ItemView items = getWorld().getItemView();
+		if (cargo == null || !items.contains(cargo.getSoul())) {
 			chooseCargo();
 			if (cargo != null) {
 				action = new Grasp(getWorld(), tool, cargo);
@@ -61,9 +61,10 @@ public class BuilderAgent extends BasicAgent {
 
 	private void chooseCargo() {
 		// Randomly pick one for now.
-		List<Item> items = listGraspableItems();
-		if (!items.isEmpty()) {
-			cargo = items.get(getRandom().nextInt(items.size()));
+		List<Integer> indexes = listGraspableIndexes();
+		if (!indexes.isEmpty()) {
+			int index = indexes.get(getRandom().nextInt(indexes.size()));
+			cargo = getWorld().getItemView().getWorldItem(index);
 		}
 	}
 
@@ -77,24 +78,31 @@ public class BuilderAgent extends BasicAgent {
 		tool.setColor(Color.ORANGE);
 	}
 
-	private List<Item> listGraspableItems() {
+	/**
+	 * Indexes into the world item view, so only the chosen one needs copied.
+	 */
+	private List<Integer> listGraspableIndexes() {
+		World.ItemView items = getWorld().getItemView();
+		List<Integer> indexes = new ArrayList<Integer>();
 		// Find all tray items to consider choosing.
-		List<Item> items = new ArrayList<Item>();
-		Tray tray = getWorld().getTray();
-		// Logic duped from World.getItems().
-		for (Block block: tray.getItems()) {
-			Block copied = block.clone();
-			copied.setPosition(added(copied.getPosition(), tray.getAnchor()));
-			items.add(copied);
+		for (int i = 0; i < items.size() && items.isTray(i); i++) {
+			indexes.add(i);
 		}
 		// Also consider live items.
 		Item ground = getWorld().getGround();
-		for (Item item: getWorld().getItems()) {
+		for (int i = 0; i < items.size(); i++) {
+			Item item = items.get(i);
 			if (item.isAlive() && ground.getSoul() != item.getSoul()) {
-				items.add(item);
+				indexes.add(i);
 			}
 		}
-		return items;
+		return indexes;
+	}
+
+	@Override
+	public void reset() {
+		action = null;
+		cargo = null;
 	}
 
 }
@@ -193,4 +193,11 @@ public class BuilderOptionAgent implements OptionAgent {
 		return randInRange(random, 10, 40);
 	}
 
+	@Override
+	public void reset() {
+		cargo = null;
+		goalItem = null;
+		goalPoint = null;
+	}
+
 }
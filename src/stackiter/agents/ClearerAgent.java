@@ -50,4 +50,11 @@ public class ClearerAgent extends BasicAgent {
 		tool.setColor(Color.RED);
 	}
 
+	@Override
+	public void reset() {
+		// The tool moved back, so put it at the clearer again.
+		clearerPosition = null;
+		count = 0;
+	}
+
 }
@@ -40,7 +40,10 @@ public class DropperAgent extends BasicAgent {
 
 	private Mode mode = Mode.EMPTY;
 
-	private Random random = new Random();
+	/**
+	 * Shared from the tray, so seeding the world covers us, too.
+	 */
+	private Random random;
 
 	private int stableCount;
 
@@ -67,15 +70,14 @@ public class DropperAgent extends BasicAgent {
 
 	@Override
 	public void act() {
-		Iterable<Item> items = getWorld().getItems();
+		World.ItemView items = getWorld().getItemView();
 		// Find our target.
 		CURRENT: if (targetItem != null) {
 			// Find the new state of the current target.
-			for (Item item: items) {
-				if (item.getSoul() == targetItem.getSoul()) {
-					targetItem = item;
-					break CURRENT;
-				}
+			int index = items.indexOf(targetItem.getSoul());
+			if (index >= 0) {
+				targetItem = items.getWorldItem(index);
+				break CURRENT;
 			}
 			// The target is missing now.
 			clearTarget();
@@ -84,14 +86,16 @@ public class DropperAgent extends BasicAgent {
 		}
 		if (targetItem == null) {
 			// Find a new something to grab.
-			List<Item> options = new ArrayList<Item>();
-			for (Item item: items) {
+			List<Integer> options = new ArrayList<Integer>();
+			for (int i = 0; i < items.size(); i++) {
+				Item item = items.get(i);
 				if (!item.isAlive() && item instanceof Block) {
-					options.add(item);
+					options.add(i);
 				}
 			}
 			if (!options.isEmpty()) {
-				targetItem = options.get(random.nextInt(options.size()));
+				int index = options.get(random.nextInt(options.size()));
+				targetItem = items.getWorldItem(index);
 			}
 		}
 		switch (mode) {
@@ -162,9 +166,15 @@ public class DropperAgent extends BasicAgent {
 
 	@Override
 	protected void init() {
+		random = getWorld().getTray().getRandom();
 		tool = getWorld().addTool();
 		// TODO Should we stylesheet agent colors instead?
 		tool.setColor(Color.GREEN);
 	}
 
+	@Override
+	public void reset() {
+		clearTarget();
+	}
+
 }
@@ -134,6 +134,12 @@ public interface OptionAgent {
 			}
 		}
 
+		@Override
+		public void reset() {
+			option = null;
+			agent.reset();
+		}
+
 	}
 
 	/**
@@ -171,6 +177,11 @@ public interface OptionAgent {
 		 */
 		public Item graspedItem;
 
+		/**
+		 * Built on first use, since not every decision needs it.
+		 */
+		private SpatialIndex spatialIndex;
+
 		/**
 		 * The current state of the tool being controlled by the agent whos
 		 * viewpoint this is.
@@ -180,12 +191,29 @@ public interface OptionAgent {
 		 */
 		public ToolState tool = new ToolState();
 
+		@Override
+		public void fillFrom(World world) {
+			super.fillFrom(world);
+			spatialIndex = null;
+		}
+
 		public void fillFrom(World world, Tool tool) {
 			fillFrom(world);
 			graspedItem = world.getGraspedItem(tool);
 			this.tool.fillFrom(tool);
 		}
 
+		/**
+		 * Bounds of the items for overlap queries. Presumes the items don't
+		 * change after filling.
+		 */
+		public SpatialIndex getSpatialIndex() {
+			if (spatialIndex == null) {
+				spatialIndex = new SpatialIndex(items);
+			}
+			return spatialIndex;
+		}
+
 	}
 
 	/**
@@ -226,4 +254,9 @@ public interface OptionAgent {
 	 */
 	Option act(State state);
 
+	/**
+	 * Forget any plans at the start of an episode.
+	 */
+	void reset();
+
 }
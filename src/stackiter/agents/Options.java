@@ -55,18 +55,13 @@ public class Options {
 		protected boolean chooseGoal(State state) {
 			Item item = state.items.get(this.item);
 			if (item == null) return false;
-			Rectangle2D bounds = applied(item.getTransform(), item.getBounds());
-			double minY = bounds.getMinY();
+			SpatialIndex index = state.getSpatialIndex();
+			double minY = index.getBounds(this.item).getMinY();
 			// In finding the top, include the item to be moved.
 			// Just get above everything.
 			// Because the lift amount is only selected once, there's no fear of
 			// infinite ascent chasing a carried block.
-			double topY = 0;
-			for (Item other: state.items.values()) {
-				Rectangle2D otherBounds =
-					applied(other.getTransform(), other.getBounds());
-				topY = max(otherBounds.getMaxY(), topY);
-			}
+			double topY = max(index.getTopY(), 0);
 			// Add some units to be on the likely safe side.
 			amount = topY + 5 - minY;
 			// Now let super take it from here.
@@ -617,7 +612,7 @@ public class Options {
 				// Well, it's not with anything else in the state ...
 				return true;
 			}
-			List<Item> others = listOverlappers(item, state.items.values());
+			List<Item> others = listOverlappers(item, state);
 			return others.isEmpty();
 		}
 
@@ -661,11 +656,11 @@ public class Options {
 			if (item == null) return false;
 			// First get a sorted list of edges of other items.
 			// TODO Also exclude things that might be atop this item?
+			SpatialIndex index = state.getSpatialIndex();
 			List<Edge> edges = new ArrayList<Edge>();
 			for (Item other: state.items.values()) {
 				if (other == item) continue;
-				Rectangle2D bounds =
-					applied(other.getTransform(), other.getBounds());
+				Rectangle2D bounds = index.getBounds(other.getSoul());
 				// Min and max x should be different unless we're zero width.
 				// That shouldn't happen. TODO Assert against it?
 				edges.add(new Edge(Edge.Side.BEGIN, bounds.getMinX()));
@@ -695,8 +690,7 @@ public class Options {
 				}
 			}
 			// See if the gap is big enough for our item.
-			double size =
-				applied(item.getTransform(), item.getBounds()).getWidth();
+			double size = index.getBounds(this.item).getWidth();
 			// How much space do we prefer extra on each side of our block.
 			double wiggleRoom = 2;
 			if (biggestGap < size + 2 * wiggleRoom) {
@@ -806,13 +800,13 @@ public class Options {
 		protected boolean chooseGoal(State state) {
 			Item item = state.items.get(this.item);
 			if (item == null) return false;
-			Rectangle2D bounds = applied(item.getTransform(), item.getBounds());
+			SpatialIndex index = state.getSpatialIndex();
+			Rectangle2D bounds = index.getBounds(this.item);
 			// The ground level is 0.
 			double topY = 0;
-			List<Item> others = listOverlappers(item, state.items.values());
+			List<Item> others = listOverlappers(item, state);
 			for (Item other: others) {
-				Rectangle2D otherBounds =
-					applied(other.getTransform(), other.getBounds());
+				Rectangle2D otherBounds = index.getBounds(other.getSoul());
 				// Find the highest point among such items.
 				// Note that the highest point might not be beneath us, but
 				// this should be good enough most of the time.
@@ -1081,27 +1075,12 @@ public class Options {
 	/**
 	 * Return a list of those items which overlap item horizontally.
 	 */
-	private static List<Item> listOverlappers(
-		Item item, Collection<Item> items
-	) {
-		List<Item> overlappers = new ArrayList<Item>();
-		Rectangle2D bounds = applied(item.getTransform(), item.getBounds());
-		double minX = bounds.getMinX();
-		double maxX = bounds.getMaxX();
-		for (Item other: items) {
-			if (other == item) continue;
-			Rectangle2D otherBounds =
-				applied(other.getTransform(), other.getBounds());
-			if (
-				between(otherBounds.getMinX(), minX, maxX) ||
-				between(otherBounds.getCenterX(), minX, maxX) ||
-				between(otherBounds.getMaxX(), minX, maxX)
-			) {
-				// Some kind of x overlap exists.
-				overlappers.add(other);
-			}
-		}
-		return overlappers;
+	private static List<Item> listOverlappers(Item item, State state) {
+		SpatialIndex index = state.getSpatialIndex();
+		Rectangle2D bounds = index.getBounds(item.getSoul());
+		return index.listXOverlappers(
+			bounds.getMinX(), bounds.getMaxX(), item.getSoul()
+		);
 	}
 
 	public Options(Random random) {
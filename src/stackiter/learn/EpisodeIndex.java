@@ -0,0 +1,526 @@
+package stackiter.learn;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.channels.FileChannel.*;
+import java.util.*;
+import java.util.zip.*;
+
+import stackiter.sim.*;
+
+/**
+ * Records where each episode starts in a text log, along with periodic sim
+ * time checkpoints, in a side file next to the log. The side file is read
+ * through a memory map, so opening even a large index is cheap.
+ *
+ * Each checkpoint holds the offset to resume reading from and the log lines
+ * needed to recreate the items present at that point, so a StateReader can
+ * start there without seeing anything before. Offsets are into the
+ * uncompressed text. For gzip logs, the index also records where each gzip
+ * member starts, so reading can begin at the nearest member. TextLogger
+ * writes compressed logs in blocks for this. Single-member gzip logs still
+ * work but need decompressing from the start.
+ *
+ * See IndexedLog for reading logs by episode or time.
+ */
+public class EpisodeIndex implements Closeable {
+
+	/**
+	 * Tracks the places to resume from while reading through a log.
+	 */
+	private static class Builder extends StateReader {
+
+		private int checkpointCount;
+
+		private ByteArrayOutputStream checkpointBytes =
+			new ByteArrayOutputStream();
+
+		private DataOutputStream checkpoints =
+			new DataOutputStream(checkpointBytes);
+
+		private long checkpointSteps;
+
+		/**
+		 * Resuming from a clear, held until a step follows it, since a clear
+		 * at the very end starts no episode. EpisodicLogger also could write
+		 * the same clear twice in a row, and that's still one episode start.
+		 */
+		private StringBuilder clearPreamble;
+
+		private long clearOffset;
+
+		private long clearSteps;
+
+		private double clearTime;
+
+		private byte[] deflated = new byte[1 << 12];
+
+		private Deflater deflater = new Deflater();
+
+		private List<Integer> episodes = new ArrayList<Integer>();
+
+		private long lastSteps;
+
+		private DataOutputStream preambles;
+
+		/**
+		 * File position of the next preamble.
+		 */
+		private long preamblePosition = HEADER_SIZE;
+
+		public Builder(
+			InputStream in, DataOutputStream preambles, long checkpointSteps
+		) {
+			super(in);
+			this.preambles = preambles;
+			this.checkpointSteps = checkpointSteps;
+		}
+
+		private void addCheckpoint(
+			long offset, StringBuilder preamble, long steps, double time,
+			boolean episodeStart
+		) {
+			try {
+				byte[] bytes = preamble.toString().getBytes("UTF-8");
+				// Preambles repeat a lot, so they're worth compressing.
+				deflater.reset();
+				deflater.setInput(bytes);
+				deflater.finish();
+				int stored = 0;
+				while (!deflater.finished()) {
+					if (stored == deflated.length) {
+						deflated = Arrays.copyOf(deflated, 2 * deflated.length);
+					}
+					stored +=
+						deflater.deflate(deflated, stored, deflated.length - stored);
+				}
+				if (episodeStart) {
+					episodes.add(checkpointCount);
+				}
+				checkpoints.writeLong(offset);
+				checkpoints.writeLong(steps);
+				checkpoints.writeDouble(time);
+				checkpoints.writeLong(preamblePosition);
+				checkpoints.writeInt(stored);
+				checkpoints.writeInt(bytes.length);
+				checkpoints.writeInt(episodes.size() - 1);
+				preambles.write(deflated, 0, stored);
+				preamblePosition += stored;
+				checkpointCount++;
+				lastSteps = steps;
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		protected void mark(boolean clear) {
+			if (clear && clearPreamble != null) {
+				// No step since the last clear, so nothing new started.
+				return;
+			}
+			if (checkpointCount == 0) {
+				// The start of the log starts the first episode.
+				addCheckpoint(0, new StringBuilder(), getSteps(), getTime(), true);
+				if (!clear) return;
+			}
+			long offset = getTokenizer().getLineOffset();
+			StringBuilder preamble = new StringBuilder();
+			if (clear) {
+				// Resuming at the clear line needs the step started first.
+				preamble.append("time sim ").append(getSteps()).append(' ');
+				preamble.append(getTime()).append('\n');
+				writeItems(preamble);
+				clearPreamble = preamble;
+				clearOffset = offset;
+				clearSteps = getSteps();
+				clearTime = getTime();
+				return;
+			}
+			if (clearPreamble != null) {
+				// A step followed the clear, so it did start an episode.
+				addCheckpoint(
+					clearOffset, clearPreamble, clearSteps, clearTime, true
+				);
+				clearPreamble = null;
+			} else if (getSteps() - lastSteps >= checkpointSteps) {
+				// Resuming at the time line itself starts the step.
+				writeItems(preamble);
+				addCheckpoint(offset, preamble, getSteps(), getTime(), false);
+			}
+		}
+
+	}
+
+	public static final long DEFAULT_CHECKPOINT_STEPS = 6000;
+
+	public static final String EXTENSION = ".idx";
+
+	private static final byte[] MAGIC = {'S', 'T', 'K', 'X'};
+
+	private static final int VERSION = 1;
+
+	private static final int CHECKPOINT_SIZE = 44;
+
+	/**
+	 * Magic, version, three counts, end steps and time, and table position.
+	 */
+	private static final int HEADER_SIZE = 44;
+
+	private static final int MEMBER_SIZE = 16;
+
+	/**
+	 * Indexes the log, writing the index next to it.
+	 */
+	public static File build(File log) {
+		File indexFile = new File(log.getPath() + EXTENSION);
+		build(log, indexFile, DEFAULT_CHECKPOINT_STEPS);
+		return indexFile;
+	}
+
+	/**
+	 * Indexes the log, with a time checkpoint at least every so many sim steps
+	 * in addition to the episode starts. Logs with names ending in ".gz" are
+	 * treated as gzip. Member offsets come from the side file written by
+	 * ParallelGzipOutputStream if there is one, rather than being tracked
+	 * again while inflating.
+	 */
+	public static void build(File log, File indexFile, long checkpointSteps) {
+		try {
+			InputStream stream = new FileInputStream(log);
+			MemberInputStream members = null;
+			if (log.getName().endsWith(".gz")) {
+				stream = members = new MemberInputStream(stream, 0, 0);
+			}
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(indexFile), 1 << 16
+			));
+			Builder builder;
+			int memberCount;
+			try {
+				// Preambles stream out first, after room for the header.
+				out.write(new byte[HEADER_SIZE]);
+				builder = new Builder(stream, out, checkpointSteps);
+				try {
+					while (builder.hasNext()) {
+						builder.next();
+					}
+				} finally {
+					builder.deflater.end();
+					builder.close();
+				}
+				// Now the tables.
+				long[] memberOffsets = readMembers(log);
+				if (memberOffsets != null) {
+					memberCount = memberOffsets.length / 2;
+					for (long offset: memberOffsets) {
+						out.writeLong(offset);
+					}
+				} else {
+					memberCount = members == null ? 0 : members.getMemberCount();
+					for (int m = 0; m < memberCount; m++) {
+						out.writeLong(members.getMemberInput(m));
+						out.writeLong(members.getMemberOutput(m));
+					}
+				}
+				builder.checkpointBytes.writeTo(out);
+				for (int checkpoint: builder.episodes) {
+					out.writeInt(checkpoint);
+				}
+			} finally {
+				out.close();
+			}
+			// And the header, now that we know the counts.
+			RandomAccessFile file = new RandomAccessFile(indexFile, "rw");
+			try {
+				file.write(MAGIC);
+				file.writeInt(VERSION);
+				file.writeInt(memberCount);
+				file.writeInt(builder.checkpointCount);
+				file.writeInt(builder.episodes.size());
+				file.writeLong(builder.getSteps());
+				file.writeDouble(builder.getTime());
+				file.writeLong(builder.preamblePosition);
+			} finally {
+				file.close();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Usage: EpisodeIndex log...
+	 * Or: EpisodeIndex block in.log[.gz] out.log.gz
+	 * The first form indexes each log. The second rewrites a log into gzip
+	 * blocks for faster seeking and indexes the result.
+	 */
+	public static void main(String[] args) {
+		if (args.length == 0) {
+			System.err.println("Usage: EpisodeIndex log...");
+			System.err.println("   or: EpisodeIndex block in.log[.gz] out.log.gz");
+			System.exit(1);
+		}
+		if (args[0].equals("block")) {
+			if (args.length != 3) {
+				System.err.println("Usage: EpisodeIndex block in out.log.gz");
+				System.exit(1);
+			}
+			File out = new File(args[2]);
+			rewriteBlocks(new File(args[1]), out);
+			build(out);
+		} else {
+			for (String name: args) {
+				build(new File(name));
+			}
+		}
+	}
+
+	/**
+	 * Returns the compressed and uncompressed member offsets in pairs from
+	 * the log's side file, or null if it has none or it's older than the log.
+	 */
+	private static long[] readMembers(File log) {
+		File membersFile =
+			new File(log.getPath() + ParallelGzipOutputStream.INDEX_EXTENSION);
+		if (
+			!log.getName().endsWith(".gz") || !membersFile.exists() ||
+			membersFile.lastModified() < log.lastModified()
+		) {
+			return null;
+		}
+		return ParallelGzipOutputStream.readIndex(membersFile);
+	}
+
+	/**
+	 * Writes the log back out as block-compressed gzip.
+	 */
+	public static void rewriteBlocks(File in, File out) {
+		try {
+			InputStream input = new FileInputStream(in);
+			if (in.getName().endsWith(".gz")) {
+				input = new MemberInputStream(input, 0, 0);
+			}
+			try {
+				OutputStream output =
+					new BlockGzipOutputStream(new FileOutputStream(out));
+				try {
+					byte[] buffer = new byte[1 << 16];
+					int count;
+					while ((count = input.read(buffer)) >= 0) {
+						output.write(buffer, 0, count);
+					}
+				} finally {
+					output.close();
+				}
+			} finally {
+				input.close();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private ByteBuffer buffer;
+
+	private int checkpointCount;
+
+	private int checkpointsStart;
+
+	private long endSteps;
+
+	private double endTime;
+
+	private int episodeCount;
+
+	private int episodesStart;
+
+	private int memberCount;
+
+	private int membersStart;
+
+	public EpisodeIndex(File indexFile) {
+		try {
+			RandomAccessFile file = new RandomAccessFile(indexFile, "r");
+			try {
+				// The mapping stays valid after closing.
+				FileChannel channel = file.getChannel();
+				buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+			} finally {
+				file.close();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		byte[] magic = new byte[MAGIC.length];
+		buffer.get(magic);
+		if (!Arrays.equals(magic, MAGIC)) {
+			throw new RuntimeException("Not a stackiter log index: " + indexFile);
+		}
+		int version = buffer.getInt();
+		if (version != VERSION) {
+			throw new RuntimeException("Unknown index version: " + version);
+		}
+		memberCount = buffer.getInt();
+		checkpointCount = buffer.getInt();
+		episodeCount = buffer.getInt();
+		endSteps = buffer.getLong();
+		endTime = buffer.getDouble();
+		membersStart = (int)buffer.getLong();
+		checkpointsStart = membersStart + memberCount * MEMBER_SIZE;
+		episodesStart = checkpointsStart + checkpointCount * CHECKPOINT_SIZE;
+	}
+
+	@Override
+	public void close() {
+		// Mappings go away with garbage collection, so just drop ours.
+		buffer = null;
+	}
+
+	/**
+	 * Finds the last checkpoint at or before the given sim time, or the first
+	 * checkpoint if none.
+	 */
+	public int findCheckpoint(double time) {
+		int low = 0;
+		int high = checkpointCount - 1;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (getCheckpointTime(mid) <= time) {
+				low = mid;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Finds the last gzip member starting at or before the given uncompressed
+	 * offset. Only meaningful for compressed logs.
+	 */
+	public int findMember(long offset) {
+		int low = 0;
+		int high = memberCount - 1;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (getMemberOutput(mid) <= offset) {
+				low = mid;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return low;
+	}
+
+	public int getCheckpointCount() {
+		return checkpointCount;
+	}
+
+	/**
+	 * The episode the checkpoint falls in.
+	 */
+	public int getCheckpointEpisode(int checkpoint) {
+		return buffer.getInt(checkpointsStart + checkpoint * CHECKPOINT_SIZE + 40);
+	}
+
+	/**
+	 * The uncompressed log offset to resume reading from.
+	 */
+	public long getCheckpointOffset(int checkpoint) {
+		return buffer.getLong(checkpointsStart + checkpoint * CHECKPOINT_SIZE);
+	}
+
+	/**
+	 * Log lines to read before resuming from the checkpoint offset.
+	 */
+	public byte[] getCheckpointPreamble(int checkpoint) {
+		int base = checkpointsStart + checkpoint * CHECKPOINT_SIZE;
+		byte[] stored = new byte[buffer.getInt(base + 32)];
+		byte[] preamble = new byte[buffer.getInt(base + 36)];
+		ByteBuffer view = buffer.duplicate();
+		view.position((int)buffer.getLong(base + 24));
+		view.get(stored);
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(stored);
+			inflater.inflate(preamble);
+		} catch (DataFormatException e) {
+			throw new RuntimeException(e);
+		} finally {
+			inflater.end();
+		}
+		return preamble;
+	}
+
+	public long getCheckpointSteps(int checkpoint) {
+		return buffer.getLong(checkpointsStart + checkpoint * CHECKPOINT_SIZE + 8);
+	}
+
+	public double getCheckpointTime(int checkpoint) {
+		return buffer.getDouble(
+			checkpointsStart + checkpoint * CHECKPOINT_SIZE + 16
+		);
+	}
+
+	/**
+	 * The checkpoint at which the episode starts.
+	 */
+	public int getEpisodeCheckpoint(int episode) {
+		return buffer.getInt(episodesStart + 4 * episode);
+	}
+
+	public int getEpisodeCount() {
+		return episodeCount;
+	}
+
+	/**
+	 * The sim time at which the episode ends, being the start of the next or
+	 * else the end of the log.
+	 */
+	public double getEpisodeEndTime(int episode) {
+		return episode + 1 < episodeCount ?
+			getEpisodeStartTime(episode + 1) : endTime;
+	}
+
+	public double getEpisodeStartTime(int episode) {
+		return getCheckpointTime(getEpisodeCheckpoint(episode));
+	}
+
+	/**
+	 * The last sim step count in the log.
+	 */
+	public long getEndSteps() {
+		return endSteps;
+	}
+
+	/**
+	 * The last sim time in the log.
+	 */
+	public double getEndTime() {
+		return endTime;
+	}
+
+	/**
+	 * Zero for uncompressed logs.
+	 */
+	public int getMemberCount() {
+		return memberCount;
+	}
+
+	/**
+	 * The file offset where the gzip member starts.
+	 */
+	public long getMemberInput(int member) {
+		return buffer.getLong(membersStart + member * MEMBER_SIZE);
+	}
+
+	/**
+	 * The uncompressed offset where the gzip member starts.
+	 */
+	public long getMemberOutput(int member) {
+		return buffer.getLong(membersStart + member * MEMBER_SIZE + 8);
+	}
+
+}
@@ -0,0 +1,152 @@
+package stackiter.learn;
+
+import java.io.*;
+import java.nio.channels.*;
+
+/**
+ * Reads episodes or time spans from a text log by seeking straight to them
+ * through its EpisodeIndex, with the log itself memory-mapped.
+ * The index is built if it's missing or older than the log.
+ */
+public class IndexedLog implements Closeable {
+
+	/**
+	 * Stops at a given number of bytes.
+	 */
+	private static class LimitedInputStream extends FilterInputStream {
+
+		private long remaining;
+
+		public LimitedInputStream(InputStream in, long limit) {
+			super(in);
+			remaining = limit;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (remaining <= 0) return -1;
+			int b = in.read();
+			if (b >= 0) remaining--;
+			return b;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) throws IOException {
+			if (remaining <= 0) return -1;
+			int count = in.read(bytes, offset, (int)Math.min(length, remaining));
+			if (count > 0) remaining -= count;
+			return count;
+		}
+
+	}
+
+	private FileChannel channel;
+
+	private RandomAccessFile file;
+
+	private EpisodeIndex index;
+
+	public IndexedLog(String name) {
+		this(new File(name));
+	}
+
+	public IndexedLog(File log) {
+		File indexFile = new File(log.getPath() + EpisodeIndex.EXTENSION);
+		if (
+			!indexFile.exists() || indexFile.lastModified() < log.lastModified()
+		) {
+			EpisodeIndex.build(log);
+		}
+		index = new EpisodeIndex(indexFile);
+		try {
+			file = new RandomAccessFile(log, "r");
+			channel = file.getChannel();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void close() {
+		try {
+			index.close();
+			file.close();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public EpisodeIndex getIndex() {
+		return index;
+	}
+
+	/**
+	 * Reads from the given checkpoint up to the given uncompressed offset, or
+	 * to the end of the log if negative.
+	 */
+	private StateReader open(int checkpoint, long end) {
+		long offset = index.getCheckpointOffset(checkpoint);
+		InputStream text = openText(offset);
+		if (end >= 0) {
+			text = new LimitedInputStream(text, end - offset);
+		}
+		return new StateReader(new SequenceInputStream(
+			new ByteArrayInputStream(index.getCheckpointPreamble(checkpoint)),
+			text
+		));
+	}
+
+	/**
+	 * Reads states for just the given episode, starting from the step that
+	 * cleared out the previous one.
+	 */
+	public StateReader openEpisode(int episode) {
+		long end = -1;
+		if (episode + 1 < index.getEpisodeCount()) {
+			end = index.getCheckpointOffset(index.getEpisodeCheckpoint(episode + 1));
+		}
+		return open(index.getEpisodeCheckpoint(episode), end);
+	}
+
+	/**
+	 * Opens the uncompressed log text at the given offset.
+	 */
+	private InputStream openText(long offset) {
+		if (index.getMemberCount() == 0) {
+			return new MappedInputStream(channel, offset);
+		}
+		// Start from the nearest gzip member and skip ahead inside it.
+		int member = index.findMember(offset);
+		long input = index.getMemberInput(member);
+		long output = index.getMemberOutput(member);
+		InputStream text = new MemberInputStream(
+			new MappedInputStream(channel, input), input, output
+		);
+		try {
+			long skip = offset - output;
+			while (skip > 0) {
+				long count = text.skip(skip);
+				if (count <= 0) {
+					throw new EOFException("Index past end of log.");
+				}
+				skip -= count;
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return text;
+	}
+
+	/**
+	 * Reads states from the first at or after the given sim time through the
+	 * end of the log.
+	 */
+	public StateReader openTime(double time) {
+		StateReader reader = open(index.findCheckpoint(time), -1);
+		while (reader.peek() != null && reader.peek().time < time) {
+			reader.next();
+		}
+		return reader;
+	}
+
+}
@@ -1,76 +1,20 @@
 package stackiter.learn;
 
 import java.io.*;
-import java.util.*;
 import java.util.zip.*;
 
 public class Loader {
 
-	/**
-	 * Instance level so we don't need to pass in args.
-	 */
-	private Map<String, Runnable> handlers;
-
-	/**
-	 * The sequence of loaded states.
-	 */
-	private Sequence sequence;
-
-	/**
-	 * The current state of the world, needing cloned and frequently modified
-	 * for each new time step.
-	 */
-	private State state;
-
-	public Loader() {
-		clear();
-		handlers = new HashMap<String, Runnable>();
-		handlers.put("color", new Runnable() { @Override public void run() {
-			// TODO Auto-generated method stub
-		}});
-		handlers.put("destroy", new Runnable() { @Override public void run() {
-			// TODO Auto-generated method stub
-		}});
-		handlers.put("extent", new Runnable() { @Override public void run() {
-			// TODO Auto-generated method stub
-		}});
-		handlers.put("item", new Runnable() { @Override public void run() {
-			// TODO Auto-generated method stub
-		}});
-		handlers.put("pos", new Runnable() { @Override public void run() {
-			// TODO Auto-generated method stub
-		}});
-		handlers.put("rot", new Runnable() { @Override public void run() {
-			// TODO Auto-generated method stub
-		}});
-	}
-
-	private void clear() {
-		sequence = new Sequence();
-		state = new State();
-	}
-
 	public Sequence load(String name, InputStream stream) {
+		StateReader reader = open(name, stream);
 		try {
-			try {
-				if (name.endsWith(".gz")) {
-					stream = new GZIPInputStream(stream);
-				}
-				BufferedReader in = new BufferedReader(new InputStreamReader(stream, "UTF-8"));
-				try {
-					String line;
-					while ((line = in.readLine()) != null) {
-						parseLine(line);
-					}
-				} finally {
-					in.close();
-				}
-				return sequence;
-			} finally {
-				stream.close();
+			Sequence sequence = new Sequence();
+			while (reader.hasNext()) {
+				sequence.states.add(reader.next());
 			}
-		} catch (Exception e) {
-			throw new RuntimeException(e);
+			return sequence;
+		} finally {
+			reader.close();
 		}
 	}
 
@@ -84,21 +28,39 @@ public class Loader {
 	}
 
 	public Sequence loadResource(String name) {
+		InputStream stream = Loader.class.getResourceAsStream(name);
+		if (stream == null) {
+			throw new RuntimeException("No such resource: " + name);
+		}
+		return load(name, stream);
+	}
+
+	/**
+	 * Streams states from the log one step at a time rather than loading them
+	 * all at once. Names ending in ".gz" are decompressed. Close the reader
+	 * when done.
+	 */
+	public StateReader open(String name, InputStream stream) {
 		try {
-			InputStream stream = Loader.class.getResourceAsStream(name);
-			return load(name, stream);
-		} catch (Exception e) {
+			if (name.endsWith(".gz")) {
+				stream = new GZIPInputStream(stream, 1 << 16);
+			}
+			return new StateReader(stream);
+		} catch (IOException e) {
+			try {
+				stream.close();
+			} catch (IOException e2) {
+				// Already failing anyway.
+			}
 			throw new RuntimeException(e);
 		}
 	}
 
-	private void parseLine(String line) {
-		// TODO Look into faster splitting than regex?
-		String[] words = line.split("\\s+");
-		String command = words[0];
-		Runnable handler = handlers.get(command);
-		if (handler != null) {
-			handler.run();
+	public StateReader openFile(String name) {
+		try {
+			return open(name, new FileInputStream(name));
+		} catch (FileNotFoundException e) {
+			throw new RuntimeException(e);
 		}
 	}
 
@@ -0,0 +1,293 @@
+package stackiter.learn;
+
+import java.io.*;
+
+/**
+ * Splits log text into lines and whitespace-separated tokens without regexes
+ * or per-line allocation.
+ * Numbers are parsed straight from the bytes.
+ * Logs are expected to be ASCII outside of free-form names.
+ */
+public class LogTokenizer implements Closeable {
+
+	/**
+	 * Doubles hold every integer of up to 15 decimal digits exactly.
+	 */
+	private static final int MAX_EXACT_DIGITS = 15;
+
+	/**
+	 * Beyond 18 digits, a long might overflow.
+	 */
+	private static final int MAX_LONG_DIGITS = 18;
+
+	/**
+	 * Exact powers of ten for fraction parsing, which is as far as doubles
+	 * hold them exactly.
+	 */
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12,
+		1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22,
+	};
+
+	private byte[] buffer = new byte[1 << 16];
+
+	/**
+	 * Stream offset of the start of the buffer.
+	 */
+	private long bufferOffset;
+
+	private int end;
+
+	private InputStream in;
+
+	/**
+	 * Whether the newline (or end) of the current line has been reached.
+	 */
+	private boolean lineEnded = true;
+
+	private long lineNumber;
+
+	private long lineOffset;
+
+	private int position;
+
+	private byte[] token = new byte[64];
+
+	private int tokenLength;
+
+	public LogTokenizer(InputStream in) {
+		this.in = in;
+	}
+
+	/**
+	 * Converts ASCII text to bytes for use with tokenIs.
+	 */
+	public static byte[] bytes(String text) {
+		byte[] bytes = new byte[text.length()];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte)text.charAt(i);
+		}
+		return bytes;
+	}
+
+	@Override
+	public void close() {
+		try {
+			in.close();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * The 1-based number of the current line, for error messages.
+	 */
+	public long getLineNumber() {
+		return lineNumber;
+	}
+
+	/**
+	 * The byte offset in the stream of the start of the current line.
+	 */
+	public long getLineOffset() {
+		return lineOffset;
+	}
+
+	/**
+	 * The current token as a string. This one allocates.
+	 */
+	public String getToken() {
+		try {
+			return new String(token, 0, tokenLength, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Returns true if more tokens remain on the current line.
+	 * Doesn't consume anything but spaces.
+	 */
+	public boolean hasToken() {
+		if (lineEnded) return false;
+		while (true) {
+			int b = peek();
+			if (b == ' ' || b == '\t' || b == '\r') {
+				position++;
+			} else {
+				return b >= 0 && b != '\n';
+			}
+		}
+	}
+
+	/**
+	 * Parses the next token as a boolean ("true" or otherwise false).
+	 */
+	public boolean nextBoolean() {
+		requireToken();
+		return tokenLength == 4 &&
+			token[0] == 't' && token[1] == 'r' &&
+			token[2] == 'u' && token[3] == 'e';
+	}
+
+	/**
+	 * Parses the next token as a decimal number.
+	 * Falls back to the library parser for anything unusual.
+	 */
+	public double nextDouble() {
+		requireToken();
+		int t = 0;
+		boolean negative = false;
+		if (token[t] == '-' || token[t] == '+') {
+			negative = token[t] == '-';
+			t++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int fractionDigits = 0;
+		boolean fraction = false;
+		for (; t < tokenLength; t++) {
+			byte b = token[t];
+			if (b >= '0' && b <= '9') {
+				mantissa = 10 * mantissa + (b - '0');
+				digits++;
+				if (fraction) fractionDigits++;
+			} else if (b == '.' && !fraction) {
+				fraction = true;
+			} else {
+				break;
+			}
+		}
+		if (
+			t < tokenLength || digits == 0 || digits > MAX_EXACT_DIGITS ||
+			fractionDigits >= POWERS_OF_TEN.length
+		) {
+			// Exponents, NaN, huge precision, or the like.
+			return Double.parseDouble(getToken());
+		}
+		// Both values are exact here, so the division rounds correctly.
+		double value = mantissa / POWERS_OF_TEN[fractionDigits];
+		return negative ? -value : value;
+	}
+
+	public int nextInt() {
+		return (int)nextLong();
+	}
+
+	public long nextLong() {
+		requireToken();
+		int t = 0;
+		boolean negative = token[0] == '-';
+		if (negative || token[0] == '+') t++;
+		if (t == tokenLength) {
+			throw new NumberFormatException(
+				"Bad number at line " + lineNumber + ": " + getToken()
+			);
+		}
+		if (tokenLength - t > MAX_LONG_DIGITS) {
+			throw new NumberFormatException(
+				"Number too long at line " + lineNumber + ": " + getToken()
+			);
+		}
+		long value = 0;
+		for (; t < tokenLength; t++) {
+			byte b = token[t];
+			if (b < '0' || b > '9') {
+				throw new NumberFormatException(
+					"Bad number at line " + lineNumber + ": " + getToken()
+				);
+			}
+			value = 10 * value + (b - '0');
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Moves to the start of the next line, skipping whatever remains of the
+	 * current one. Returns false at the end of the stream.
+	 */
+	public boolean nextLine() {
+		// Skip the rest of the current line.
+		while (!lineEnded) {
+			int b = read();
+			if (b < 0 || b == '\n') {
+				lineEnded = true;
+			}
+		}
+		if (peek() < 0) {
+			return false;
+		}
+		lineEnded = false;
+		lineNumber++;
+		lineOffset = bufferOffset + position;
+		return true;
+	}
+
+	/**
+	 * Reads the next token on the current line, returning false if none.
+	 */
+	public boolean nextToken() {
+		if (!hasToken()) return false;
+		tokenLength = 0;
+		while (true) {
+			int b = peek();
+			if (b < 0 || b == ' ' || b == '\t' || b == '\r' || b == '\n') {
+				break;
+			}
+			if (tokenLength == token.length) {
+				byte[] bigger = new byte[2 * token.length];
+				System.arraycopy(token, 0, bigger, 0, tokenLength);
+				token = bigger;
+			}
+			token[tokenLength++] = (byte)b;
+			position++;
+		}
+		return true;
+	}
+
+	private int peek() {
+		if (position == end && !refill()) {
+			return -1;
+		}
+		return buffer[position] & 0xFF;
+	}
+
+	private int read() {
+		int b = peek();
+		if (b >= 0) position++;
+		return b;
+	}
+
+	private boolean refill() {
+		try {
+			bufferOffset += end;
+			position = end = 0;
+			int count = in.read(buffer, 0, buffer.length);
+			if (count <= 0) {
+				return false;
+			}
+			end = count;
+			return true;
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void requireToken() {
+		if (!nextToken()) {
+			throw new RuntimeException("Missing value at line " + lineNumber);
+		}
+	}
+
+	/**
+	 * Whether the current token matches the given bytes exactly.
+	 */
+	public boolean tokenIs(byte[] word) {
+		if (word.length != tokenLength) return false;
+		for (int i = 0; i < tokenLength; i++) {
+			if (word[i] != token[i]) return false;
+		}
+		return true;
+	}
+
+}
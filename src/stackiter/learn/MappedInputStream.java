@@ -0,0 +1,92 @@
+package stackiter.learn;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.channels.FileChannel.*;
+
+/**
+ * Reads a file through memory-mapped windows, starting from any offset.
+ * Windows are remapped as reading moves along, so files beyond 2GB work.
+ * Closing doesn't close the channel, since several streams can share it.
+ */
+public class MappedInputStream extends InputStream {
+
+	private static final long WINDOW_SIZE = 1 << 26;
+
+	private FileChannel channel;
+
+	private long position;
+
+	private long size;
+
+	private MappedByteBuffer window;
+
+	private long windowStart;
+
+	public MappedInputStream(FileChannel channel, long position) {
+		try {
+			this.channel = channel;
+			this.position = position;
+			size = channel.size();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public int available() {
+		return (int)Math.min(Integer.MAX_VALUE, size - position);
+	}
+
+	/**
+	 * Makes sure the current window covers the current position, returning
+	 * false at the end of the file.
+	 */
+	private boolean map() throws IOException {
+		if (position >= size) {
+			return false;
+		}
+		if (
+			window == null || position < windowStart ||
+			position >= windowStart + window.limit()
+		) {
+			windowStart = position;
+			window = channel.map(
+				MapMode.READ_ONLY, windowStart,
+				Math.min(WINDOW_SIZE, size - windowStart)
+			);
+		}
+		window.position((int)(position - windowStart));
+		return true;
+	}
+
+	public long getPosition() {
+		return position;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!map()) return -1;
+		position++;
+		return window.get() & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] bytes, int offset, int length) throws IOException {
+		if (length == 0) return 0;
+		if (!map()) return -1;
+		int count = Math.min(length, window.remaining());
+		window.get(bytes, offset, count);
+		position += count;
+		return count;
+	}
+
+	@Override
+	public long skip(long count) {
+		count = Math.max(0, Math.min(count, size - position));
+		position += count;
+		return count;
+	}
+
+}
@@ -0,0 +1,197 @@
+package stackiter.learn;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+/**
+ * Inflates gzip data made of one or more members, such as written by
+ * stackiter.sim.BlockGzipOutputStream, and notes where each member starts.
+ * Can start at any member boundary in a file, since members are independent.
+ * CRCs aren't checked.
+ */
+public class MemberInputStream extends InputStream {
+
+	private static final int FHCRC = 2, FEXTRA = 4, FNAME = 8, FCOMMENT = 16;
+
+	private InputStream in;
+
+	private Inflater inflater = new Inflater(true);
+
+	private byte[] input = new byte[1 << 16];
+
+	private int inputEnd;
+
+	/**
+	 * Compressed offset of the start of the input buffer.
+	 */
+	private long inputOffset;
+
+	private int inputStart;
+
+	private boolean inMember;
+
+	private int memberCount;
+
+	private long[] memberInputs = new long[16];
+
+	private long[] memberOutputs = new long[16];
+
+	/**
+	 * Uncompressed offset of the next byte to be read.
+	 */
+	private long outputOffset;
+
+	/**
+	 * The compressed offset here should be that of the start of the given
+	 * stream in the file, and the uncompressed offset that of the member
+	 * starting there. These are used only for reporting member locations.
+	 */
+	public MemberInputStream(
+		InputStream in, long compressedOffset, long uncompressedOffset
+	) {
+		this.in = in;
+		inputOffset = compressedOffset;
+		outputOffset = uncompressedOffset;
+	}
+
+	@Override
+	public void close() throws IOException {
+		inflater.end();
+		in.close();
+	}
+
+	private boolean fillInput() throws IOException {
+		inputOffset += inputEnd;
+		inputStart = inputEnd = 0;
+		int count = in.read(input, 0, input.length);
+		if (count <= 0) {
+			return false;
+		}
+		inputEnd = count;
+		return true;
+	}
+
+	/**
+	 * The number of member starts seen so far.
+	 */
+	public int getMemberCount() {
+		return memberCount;
+	}
+
+	/**
+	 * The compressed (file) offset where the given member starts.
+	 */
+	public long getMemberInput(int member) {
+		return memberInputs[member];
+	}
+
+	/**
+	 * The uncompressed offset where the given member starts.
+	 */
+	public long getMemberOutput(int member) {
+		return memberOutputs[member];
+	}
+
+	private int inputByte() throws IOException {
+		if (inputStart == inputEnd && !fillInput()) {
+			return -1;
+		}
+		return input[inputStart++] & 0xFF;
+	}
+
+	@Override
+	public int read() throws IOException {
+		byte[] bytes = new byte[1];
+		return read(bytes, 0, 1) < 0 ? -1 : bytes[0] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] bytes, int offset, int length) throws IOException {
+		if (length == 0) return 0;
+		try {
+			while (true) {
+				if (!inMember && !startMember()) {
+					return -1;
+				}
+				if (inflater.needsInput()) {
+					if (inputStart == inputEnd && !fillInput()) {
+						throw new EOFException("Truncated gzip member.");
+					}
+					inflater.setInput(input, inputStart, inputEnd - inputStart);
+					inputStart = inputEnd;
+				}
+				int count = inflater.inflate(bytes, offset, length);
+				if (count > 0) {
+					outputOffset += count;
+					return count;
+				}
+				if (inflater.finished()) {
+					// Give back what's past the member, and skip the trailer.
+					inputStart = inputEnd - inflater.getRemaining();
+					skipBytes(8);
+					inMember = false;
+				} else if (inflater.needsDictionary()) {
+					throw new ZipException("Unexpected deflate dictionary.");
+				}
+			}
+		} catch (DataFormatException e) {
+			throw new ZipException(e.getMessage());
+		}
+	}
+
+	private int requireByte() throws IOException {
+		int b = inputByte();
+		if (b < 0) {
+			throw new EOFException("Truncated gzip header.");
+		}
+		return b;
+	}
+
+	private void skipBytes(int count) throws IOException {
+		for (int i = 0; i < count; i++) {
+			requireByte();
+		}
+	}
+
+	private void skipString() throws IOException {
+		while (requireByte() != 0) {
+			// Keep going.
+		}
+	}
+
+	/**
+	 * Reads a member header, returning false at the end of the data.
+	 */
+	private boolean startMember() throws IOException {
+		int id1 = inputByte();
+		if (id1 < 0) {
+			return false;
+		}
+		if (memberCount == memberInputs.length) {
+			memberInputs = Arrays.copyOf(memberInputs, 2 * memberCount);
+			memberOutputs = Arrays.copyOf(memberOutputs, 2 * memberCount);
+		}
+		memberInputs[memberCount] = inputOffset + inputStart - 1;
+		memberOutputs[memberCount] = outputOffset;
+		memberCount++;
+		int id2 = requireByte();
+		int method = requireByte();
+		if (id1 != 0x1f || id2 != 0x8b || method != 8) {
+			throw new ZipException("Not a gzip member.");
+		}
+		int flags = requireByte();
+		// Time, extra flags, and OS.
+		skipBytes(6);
+		if ((flags & FEXTRA) != 0) {
+			skipBytes(requireByte() | (requireByte() << 8));
+		}
+		if ((flags & FNAME) != 0) skipString();
+		if ((flags & FCOMMENT) != 0) skipString();
+		if ((flags & FHCRC) != 0) skipBytes(2);
+		inflater.reset();
+		inMember = true;
+		return true;
+	}
+
+}
@@ -6,21 +6,61 @@ import java.util.*;
 
 /**
  * All the arrays/lists/matrices should have the same length/size/width.
+ * The attribute matrices are row views into values, so they share its
+ * storage.
  */
 public class State {
 
-	public Matrix angles;
+	/**
+	 * Rows in values for each attribute, with colors, extents, locations,
+	 * and velocities taking consecutive rows from their starts.
+	 */
+	public static final int
+		ANGLE_ROW = 0,
+		COLOR_ROW = 1,
+		EXTENT_ROW = 5,
+		LOCATION_ROW = 7,
+		VELOCITY_ROW = 9,
+		VALUE_COUNT = 11;
 
-	public Matrix colors;
+	public FlatMatrix angles;
 
-	public Matrix extents;
+	/**
+	 * Whether the world was cleared during this step.
+	 */
+	public boolean cleared;
+
+	public FlatMatrix colors;
+
+	public FlatMatrix extents;
 
 	public int[] ids;
 
-	public Matrix locations;
+	public FlatMatrix locations;
+
+	/**
+	 * The sim step count from the log.
+	 */
+	public long steps;
 
 	public double time;
 
+	/**
+	 * The same numbers as the attribute matrices, but all in one, with one
+	 * column per item, packed by columns. Item columns and attribute rows are
+	 * views without copying.
+	 */
+	public FlatMatrix values;
+
 	List<Type> types;
 
+	public FlatMatrix velocities;
+
+	/**
+	 * All the values of one item as a column view into values.
+	 */
+	public FlatMatrix getItem(int index) {
+		return values.getColumn(index);
+	}
+
 }
@@ -0,0 +1,418 @@
+package stackiter.learn;
+
+import static stackiter.learn.LogTokenizer.*;
+
+import jamasam.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Streams states out of a text log, one per sim time step, so logs of any
+ * size can be processed without holding them in memory.
+ *
+ * The current value of every item is tracked in flat arrays as log lines
+ * arrive, and each State gets packed from those when its step completes.
+ * States include live boxes (in the world frame) and tools. Tray items and
+ * the view are left out.
+ */
+public class StateReader implements Iterator<State>, Closeable {
+
+	private static final byte[] ALIVE = bytes("alive");
+	private static final byte[] BOX = bytes("box");
+	private static final byte[] CLEAR = bytes("clear");
+	private static final byte[] COLOR = bytes("color");
+	private static final byte[] DESTROY = bytes("destroy");
+	private static final byte[] EXTENT = bytes("extent");
+	private static final byte[] ITEM = bytes("item");
+	private static final byte[] POS = bytes("pos");
+	private static final byte[] POSVEL = bytes("posvel");
+	private static final byte[] ROT = bytes("rot");
+	private static final byte[] SIM = bytes("sim");
+	private static final byte[] TIME = bytes("time");
+	private static final byte[] TOOL = bytes("tool");
+	private static final byte[] TYPE = bytes("type");
+
+	// Per-slot item data, with slots reused after destruction.
+	private boolean[] alive = new boolean[16];
+	private double[] angles = new double[16];
+	private double[][] colors = new double[4][16];
+	private double[][] extents = new double[2][16];
+	private int[] ids = new int[16];
+	private double[][] locations = new double[2][16];
+	private Type[] types = new Type[16];
+	private double[][] velocities = new double[2][16];
+
+	/**
+	 * Whether the current step includes a clear.
+	 */
+	private boolean cleared;
+
+	private int[] freeSlots = new int[16];
+
+	private int freeCount;
+
+	/**
+	 * Live slots in order of appearance.
+	 */
+	private int[] liveSlots = new int[16];
+
+	private int liveCount;
+
+	private State next;
+
+	private int slotCount;
+
+	/**
+	 * Indexed by log id. Holds slot + 1, so zero means none.
+	 */
+	private int[] slotsById = new int[64];
+
+	private long steps;
+
+	/**
+	 * Whether we've seen the first sim time yet.
+	 */
+	private boolean started;
+
+	private double time;
+
+	private LogTokenizer tokenizer;
+
+	public StateReader(InputStream in) {
+		tokenizer = new LogTokenizer(in);
+	}
+
+	private int addSlot(int id) {
+		int slot;
+		if (freeCount > 0) {
+			slot = freeSlots[--freeCount];
+		} else {
+			slot = slotCount++;
+			if (slot == ids.length) grow();
+		}
+		ids[slot] = id;
+		alive[slot] = false;
+		types[slot] = null;
+		angles[slot] = 0;
+		for (int k = 0; k < 2; k++) {
+			extents[k][slot] = locations[k][slot] = velocities[k][slot] = 0;
+		}
+		for (int k = 0; k < 4; k++) {
+			colors[k][slot] = 0;
+		}
+		if (id >= slotsById.length) {
+			slotsById = Arrays.copyOf(slotsById, Math.max(id + 1, 2 * slotsById.length));
+		}
+		slotsById[id] = slot + 1;
+		return slot;
+	}
+
+	@Override
+	public void close() {
+		tokenizer.close();
+	}
+
+	private static double[][] grown(double[][] arrays, int length) {
+		for (int k = 0; k < arrays.length; k++) {
+			arrays[k] = Arrays.copyOf(arrays[k], length);
+		}
+		return arrays;
+	}
+
+	private void grow() {
+		int length = 2 * ids.length;
+		alive = Arrays.copyOf(alive, length);
+		angles = Arrays.copyOf(angles, length);
+		grown(colors, length);
+		grown(extents, length);
+		ids = Arrays.copyOf(ids, length);
+		grown(locations, length);
+		types = Arrays.copyOf(types, length);
+		grown(velocities, length);
+		freeSlots = Arrays.copyOf(freeSlots, length);
+		liveSlots = Arrays.copyOf(liveSlots, length);
+	}
+
+	/**
+	 * The sim steps of the step being read.
+	 */
+	long getSteps() {
+		return steps;
+	}
+
+	/**
+	 * The sim time of the step being read.
+	 */
+	double getTime() {
+		return time;
+	}
+
+	LogTokenizer getTokenizer() {
+		return tokenizer;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (next == null) {
+			next = readState();
+		}
+		return next != null;
+	}
+
+	private boolean isLive(int slot) {
+		return types[slot] == Type.TOOL || (types[slot] == Type.BLOCK && alive[slot]);
+	}
+
+	/**
+	 * Called at each clear line before it's applied, and at each sim time line
+	 * right after its values are read. The tokenizer is still on the line.
+	 * Does nothing by default, but indexers can note places to resume from.
+	 */
+	protected void mark(boolean clear) {
+		// Nothing by default.
+	}
+
+	@Override
+	public State next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		State result = next;
+		next = null;
+		return result;
+	}
+
+	/**
+	 * Returns what next() would give without consuming it, or null if at the
+	 * end.
+	 */
+	State peek() {
+		return hasNext() ? next : null;
+	}
+
+	/**
+	 * Packs the current item values into a new state.
+	 */
+	private State packState() {
+		int n = liveCount;
+		State state = new State();
+		state.cleared = cleared;
+		state.steps = steps;
+		state.time = time;
+		state.ids = new int[n];
+		state.types = new ArrayList<Type>(n);
+		double[] values = new double[State.VALUE_COUNT * n];
+		for (int j = 0; j < n; j++) {
+			int slot = liveSlots[j];
+			int column = State.VALUE_COUNT * j;
+			state.ids[j] = ids[slot];
+			state.types.add(types[slot]);
+			values[column + State.ANGLE_ROW] = angles[slot];
+			for (int k = 0; k < 4; k++) {
+				values[column + State.COLOR_ROW + k] = colors[k][slot];
+			}
+			for (int k = 0; k < 2; k++) {
+				values[column + State.EXTENT_ROW + k] = extents[k][slot];
+				values[column + State.LOCATION_ROW + k] = locations[k][slot];
+				values[column + State.VELOCITY_ROW + k] = velocities[k][slot];
+			}
+		}
+		// One allocation, with the attributes as views into it.
+		state.values = FlatMatrix.columnPacked(values, State.VALUE_COUNT);
+		state.angles = rows(state.values, State.ANGLE_ROW, 1);
+		state.colors = rows(state.values, State.COLOR_ROW, 4);
+		state.extents = rows(state.values, State.EXTENT_ROW, 2);
+		state.locations = rows(state.values, State.LOCATION_ROW, 2);
+		state.velocities = rows(state.values, State.VELOCITY_ROW, 2);
+		return state;
+	}
+
+	/**
+	 * Reads lines until a step completes, returning its state, or null at
+	 * the end of the log.
+	 */
+	private State readState() {
+		LogTokenizer in = tokenizer;
+		while (in.nextLine()) {
+			if (!in.nextToken()) continue;
+			if (in.tokenIs(TIME)) {
+				in.nextToken();
+				if (in.tokenIs(SIM)) {
+					// New step. Finish out the old one first.
+					State state = started ? packState() : null;
+					started = true;
+					cleared = false;
+					steps = in.nextLong();
+					time = in.nextDouble();
+					mark(false);
+					if (state != null) {
+						return state;
+					}
+				}
+				continue;
+			}
+			if (in.tokenIs(CLEAR)) {
+				mark(true);
+				cleared = true;
+				continue;
+			}
+			// Everything else we care about is about a particular item.
+			boolean isItem = in.tokenIs(ITEM);
+			boolean isPos = !isItem && in.tokenIs(POS);
+			boolean isPosvel = !isItem && !isPos && in.tokenIs(POSVEL);
+			boolean isRot = !isItem && !isPos && !isPosvel && in.tokenIs(ROT);
+			boolean isAlive = in.tokenIs(ALIVE);
+			boolean isColor = in.tokenIs(COLOR);
+			boolean isDestroy = in.tokenIs(DESTROY);
+			boolean isExtent = in.tokenIs(EXTENT);
+			boolean isType = in.tokenIs(TYPE);
+			if (!(
+				isItem || isPos || isPosvel || isRot || isAlive || isColor ||
+				isDestroy || isExtent || isType
+			)) {
+				// Not something we track.
+				continue;
+			}
+			int id = in.nextInt();
+			if (isItem) {
+				addSlot(id);
+				continue;
+			}
+			int slot = id < slotsById.length ? slotsById[id] - 1 : -1;
+			if (slot < 0) {
+				// Unknown item, such as the view, the tray, or the world.
+				continue;
+			}
+			if (isPos) {
+				locations[0][slot] = in.nextDouble();
+				locations[1][slot] = in.nextDouble();
+			} else if (isPosvel) {
+				velocities[0][slot] = in.nextDouble();
+				velocities[1][slot] = in.nextDouble();
+			} else if (isRot) {
+				angles[slot] = in.nextDouble();
+			} else if (isAlive) {
+				alive[slot] = in.nextBoolean();
+				updateLive(slot);
+			} else if (isColor) {
+				for (int k = 0; k < 4; k++) {
+					colors[k][slot] = in.nextDouble();
+				}
+			} else if (isExtent) {
+				extents[0][slot] = in.nextDouble();
+				extents[1][slot] = in.nextDouble();
+			} else if (isType) {
+				in.nextToken();
+				if (in.tokenIs(BOX)) {
+					types[slot] = Type.BLOCK;
+				} else if (in.tokenIs(TOOL)) {
+					types[slot] = Type.TOOL;
+				} else {
+					// Views, trays, and such aren't tracked as items.
+					removeSlot(slot);
+					continue;
+				}
+				updateLive(slot);
+			} else if (isDestroy) {
+				removeSlot(slot);
+			}
+		}
+		// End of the log. Give the last step, if any.
+		if (started) {
+			started = false;
+			return packState();
+		}
+		return null;
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	private void removeLive(int slot) {
+		for (int j = 0; j < liveCount; j++) {
+			if (liveSlots[j] == slot) {
+				System.arraycopy(liveSlots, j + 1, liveSlots, j, liveCount - j - 1);
+				liveCount--;
+				return;
+			}
+		}
+	}
+
+	private void removeSlot(int slot) {
+		removeLive(slot);
+		slotsById[ids[slot]] = 0;
+		freeSlots[freeCount++] = slot;
+	}
+
+	/**
+	 * A view of consecutive attribute rows across all items.
+	 */
+	private static FlatMatrix rows(FlatMatrix values, int first, int count) {
+		return values.getMatrix(first, first + count - 1, 0, values.getN() - 1);
+	}
+
+	/**
+	 * Writes log lines that recreate the tracked items as they are now, with
+	 * live items in their current order. Reading these lines into a fresh
+	 * reader gives it the same item state.
+	 */
+	void writeItems(StringBuilder out) {
+		// Dead ones first, since their order doesn't matter.
+		for (int slot = 0; slot < slotCount; slot++) {
+			boolean tracked =
+				types[slot] != null && slotsById[ids[slot]] == slot + 1;
+			if (tracked && !isLive(slot)) {
+				writeItem(out, slot);
+			}
+		}
+		for (int j = 0; j < liveCount; j++) {
+			writeItem(out, liveSlots[j]);
+		}
+	}
+
+	private void writeItem(StringBuilder out, int slot) {
+		// Zeros and false are the defaults, so leave those out.
+		int id = ids[slot];
+		out.append("item ").append(id).append('\n');
+		out.append("type ").append(id).append(' ');
+		out.append(types[slot] == Type.TOOL ? "tool" : "box").append('\n');
+		writeValues(out, "extent", id, extents[0][slot], extents[1][slot]);
+		writeValues(
+			out, "color", id, colors[0][slot], colors[1][slot],
+			colors[2][slot], colors[3][slot]
+		);
+		if (alive[slot]) {
+			out.append("alive ").append(id).append(" true\n");
+		}
+		writeValues(out, "pos", id, locations[0][slot], locations[1][slot]);
+		writeValues(out, "posvel", id, velocities[0][slot], velocities[1][slot]);
+		writeValues(out, "rot", id, angles[slot]);
+	}
+
+	private void writeValues(
+		StringBuilder out, String command, int id, double... values
+	) {
+		boolean zero = true;
+		for (double value: values) {
+			// Compare bits, so negative zeros from the log survive.
+			zero &= Double.doubleToRawLongBits(value) == 0;
+		}
+		if (zero) return;
+		out.append(command).append(' ').append(id);
+		for (double value: values) {
+			out.append(' ').append(value);
+		}
+		out.append('\n');
+	}
+
+	private void updateLive(int slot) {
+		removeLive(slot);
+		if (isLive(slot)) {
+			liveSlots[liveCount++] = slot;
+		}
+	}
+
+}
@@ -13,7 +13,8 @@ public class WorldLearnerAgent extends BasicAgent {
 		// Um. Why doesn't ArrayList have a constructor from Iterable? Even
 		// Iterator should work fine, really.
 		List<Item> items = new ArrayList<Item>();
-		for (Item item: getWorld().getItems()) {
+		// Tray items come through uncopied, but we skip them anyway.
+		for (Item item: getWorld().getItemView()) {
 			// For now, ignore ghost items (in the tray).
 			// TODO Reconsider the ghosts.
 			if (item.isAlive()) {
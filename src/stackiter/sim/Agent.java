@@ -12,6 +12,13 @@ public interface Agent {
 
 	World getWorld();
 
+	/**
+	 * Called at the start of each seeded episode, after the world has been
+	 * cleared. Anything remembered from earlier episodes should be forgotten
+	 * here, so that replaying an episode alone gives the same result.
+	 */
+	void reset();
+
 	/**
 	 * Called after world update. Should run fast!
 	 *
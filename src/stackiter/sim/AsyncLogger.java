@@ -0,0 +1,571 @@
+package stackiter.sim;
+
+import java.awt.geom.*;
+import java.util.*;
+
+/**
+ * Hands logging off to a background thread, so the sim thread doesn't spend
+ * its time formatting and compressing.
+ *
+ * Calls are copied into preallocated records in a ring buffer, and the
+ * writer thread replays them in order to the wrapped logger, including
+ * atomic groupings. Item and tool updates copy values without allocating.
+ * Rarer events like grasps may allocate.
+ *
+ * The wrapped logger only ever gets called from the writer thread after
+ * construction. Real time stamps from it therefore reflect when records are
+ * written rather than when they happened.
+ *
+ * Push, flush, and close wait until everything before them is written.
+ * Be sure to close, or the tail end of the log can be lost.
+ */
+public class AsyncLogger extends AtomicLogger {
+
+	/**
+	 * What to do when the ring is full.
+	 */
+	public enum Backpressure {
+
+		/**
+		 * Wait for the writer to catch up.
+		 */
+		BLOCK,
+
+		/**
+		 * Drop item and tool updates, counting them. Other records still wait,
+		 * so the log keeps its structure, and so does the first update for
+		 * each item, since later records refer back to it. Later updates
+		 * carry full values, so dropping just makes the log coarser.
+		 */
+		DROP,
+
+	}
+
+	private enum Kind {
+		BEGIN,
+		CLEAR,
+		CLOSE,
+		DISPLAY_SIZE,
+		END,
+		EPISODE_START,
+		FLUSH,
+		GRASP,
+		ITEM,
+		META,
+		PUSH,
+		RELEASE,
+		REMOVAL,
+		SIM_TIME,
+		TOOL,
+		TOOL_PRESENT,
+		TRAY,
+		VIEW,
+		WAIT_FOR_EPISODE_START,
+	}
+
+	private static class Record {
+		Block block;
+		BasicItem item = new BasicItem();
+		Kind kind;
+		Meta meta;
+		Point2D point = new Point2D.Double();
+		boolean present;
+		double seconds;
+		long steps;
+		Tool tool = new Tool();
+		Tray tray;
+		Rectangle2D view = new Rectangle2D.Double();
+	}
+
+	public static final int DEFAULT_CAPACITY = 1 << 12;
+
+	private final Backpressure backpressure;
+
+	private volatile long dropCount;
+
+	/**
+	 * Set by the writer thread if the wrapped logger fails.
+	 */
+	private volatile RuntimeException error;
+
+	/**
+	 * Count of records ever added. Only the sim thread writes this.
+	 */
+	private volatile long head;
+
+	/**
+	 * Souls with updates already on the ring. Only the sim thread uses this.
+	 */
+	private final Set<Soul> logged = new HashSet<Soul>();
+
+	private final Logger logger;
+
+	/**
+	 * For waiting on either side.
+	 */
+	private final Object lock = new Object();
+
+	private final int mask;
+
+	private volatile boolean producerWaiting;
+
+	private final Record[] records;
+
+	/**
+	 * Replays records until the end of the current atomic group.
+	 */
+	private final Runnable replayGroup = new Runnable() {
+		@Override
+		public void run() {
+			while (true) {
+				Record record = take();
+				if (record.kind == Kind.END) {
+					release();
+					return;
+				}
+				replay(record);
+			}
+		}
+	};
+
+	/**
+	 * Count of records ever written. Only the writer thread writes this.
+	 */
+	private volatile long tail;
+
+	private Point2D temp = new Point2D.Double();
+
+	private final Thread writer;
+
+	private volatile boolean writerWaiting;
+
+	public AsyncLogger(Logger logger) {
+		this(logger, DEFAULT_CAPACITY, Backpressure.BLOCK);
+	}
+
+	/**
+	 * The capacity gets rounded up to a power of two.
+	 */
+	public AsyncLogger(
+		Logger logger, int capacity, Backpressure backpressure
+	) {
+		this.logger = logger;
+		this.backpressure = backpressure;
+		int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+		records = new Record[size];
+		for (int r = 0; r < size; r++) {
+			records[r] = new Record();
+		}
+		mask = size - 1;
+		writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				write();
+			}
+		}, "AsyncLogger");
+		// Closing is still needed to get everything out, but don't hold up
+		// exit if someone forgets.
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	@Override
+	protected void beginStep() {
+		super.beginStep();
+		publish(Kind.BEGIN);
+	}
+
+	/**
+	 * Gets the next free record, or null if dropping the update for the soul.
+	 * Pass a null soul for records that can't be dropped.
+	 */
+	private Record claim(Soul soul) {
+		long next = head;
+		if (soul != null && !logged.contains(soul)) {
+			logged.add(soul);
+			soul = null;
+		}
+		if (next - tail == records.length) {
+			if (soul != null && backpressure == Backpressure.DROP) {
+				dropCount++;
+				return null;
+			}
+			while (next - tail == records.length) {
+				if (!writer.isAlive()) {
+					throw new IllegalStateException("Logger already closed.");
+				}
+				synchronized (lock) {
+					producerWaiting = true;
+					try {
+						if (next - tail == records.length) {
+							lock.wait();
+						}
+					} catch (InterruptedException e) {
+						throw new RuntimeException(e);
+					} finally {
+						producerWaiting = false;
+					}
+				}
+			}
+		}
+		return records[(int)next & mask];
+	}
+
+	private void checkError() {
+		if (error != null) {
+			throw new RuntimeException("Async logging failed.", error);
+		}
+	}
+
+	@Override
+	public void close() {
+		publish(Kind.CLOSE);
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+		checkError();
+	}
+
+	private static void copy(Item item, BasicItem copy, Point2D temp) {
+		copy.setSoul(item.getSoul());
+		copy.setAlive(item.isAlive());
+		copy.setAngle(item.getAngle());
+		copy.setAngularAcceleration(item.getAngularAcceleration());
+		copy.setAngularVelocity(item.getAngularVelocity());
+		copy.setColor(item.getColor());
+		copy.setExtent(item.getExtent(temp));
+		copy.setLinearAcceleration(item.getLinearAcceleration());
+		copy.setLinearJerk(item.getLinearJerk());
+		copy.setLinearVelocity(item.getLinearVelocity(temp));
+		copy.setPosition(item.getPosition(temp));
+		copy.setSleeping(item.isSleeping());
+	}
+
+	private void copy(Tool tool, Tool copy) {
+		copy(tool, (BasicItem)copy, temp);
+		copy.setMode(tool.getMode());
+	}
+
+	@Override
+	protected void endStep() {
+		publish(Kind.END);
+		super.endStep();
+	}
+
+	@Override
+	public void flush() {
+		publish(Kind.FLUSH);
+		waitForWriter();
+	}
+
+	/**
+	 * How many item and tool updates got dropped for lack of room.
+	 */
+	public long getDropCount() {
+		return dropCount;
+	}
+
+	@Override
+	public Logger getKid() {
+		return logger;
+	}
+
+	@Override
+	public void logClear() {
+		publish(Kind.CLEAR);
+	}
+
+	@Override
+	public void logDisplaySize(Point2D size) {
+		Record record = claim(null);
+		record.kind = Kind.DISPLAY_SIZE;
+		record.point.setLocation(size);
+		publish();
+	}
+
+	@Override
+	public void logEpisodeStart() {
+		publish(Kind.EPISODE_START);
+	}
+
+	@Override
+	public void logGrasp(Tool tool, Block item, Point2D pointRelItem) {
+		Record record = claim(null);
+		record.kind = Kind.GRASP;
+		copy(tool, record.tool);
+		record.block = item.clone();
+		record.point.setLocation(pointRelItem);
+		publish();
+	}
+
+	@Override
+	public void logItem(Item item) {
+		Record record = claim(item.getSoul());
+		if (record != null) {
+			record.kind = Kind.ITEM;
+			copy(item, record.item, temp);
+			publish();
+		}
+	}
+
+	@Override
+	public void logMeta(Meta meta) {
+		Record record = claim(null);
+		record.kind = Kind.META;
+		record.meta = meta;
+		publish();
+	}
+
+	@Override
+	public void logRelease(Tool tool, Block item) {
+		Record record = claim(null);
+		record.kind = Kind.RELEASE;
+		copy(tool, record.tool);
+		record.block = item.clone();
+		publish();
+	}
+
+	@Override
+	public void logRemoval(Item item) {
+		logged.remove(item.getSoul());
+		Record record = claim(null);
+		record.kind = Kind.REMOVAL;
+		copy(item, record.item, temp);
+		publish();
+	}
+
+	@Override
+	public void logSimTime(long steps, double seconds) {
+		// Once per step is often enough to check on the writer.
+		checkError();
+		Record record = claim(null);
+		record.kind = Kind.SIM_TIME;
+		record.steps = steps;
+		record.seconds = seconds;
+		publish();
+	}
+
+	@Override
+	public void logTool(Tool tool) {
+		Record record = claim(tool.getSoul());
+		if (record != null) {
+			record.kind = Kind.TOOL;
+			copy(tool, record.tool);
+			publish();
+		}
+	}
+
+	@Override
+	public void logToolPresent(Tool tool, boolean toolPresent) {
+		Record record = claim(null);
+		record.kind = Kind.TOOL_PRESENT;
+		copy(tool, record.tool);
+		record.present = toolPresent;
+		publish();
+	}
+
+	@Override
+	public void logTray(Tray tray) {
+		// Loggers already presume the tray never changes, so just pass it on.
+		Record record = claim(null);
+		record.kind = Kind.TRAY;
+		record.tray = tray;
+		publish();
+	}
+
+	@Override
+	public void logView(Rectangle2D view) {
+		Record record = claim(null);
+		record.kind = Kind.VIEW;
+		record.view.setRect(view);
+		publish();
+	}
+
+	/**
+	 * Makes the claimed record visible to the writer.
+	 */
+	private void publish() {
+		head++;
+		if (writerWaiting) {
+			synchronized (lock) {
+				lock.notifyAll();
+			}
+		}
+	}
+
+	private void publish(Kind kind) {
+		claim(null).kind = kind;
+		publish();
+	}
+
+	@Override
+	public void push() {
+		publish(Kind.PUSH);
+		waitForWriter();
+	}
+
+	/**
+	 * Frees the record last taken.
+	 */
+	private void release() {
+		Record record = records[(int)tail & mask];
+		// Let go of anything large.
+		record.block = null;
+		record.meta = null;
+		record.tray = null;
+		tail++;
+		if (producerWaiting) {
+			synchronized (lock) {
+				lock.notifyAll();
+			}
+		}
+	}
+
+	private void replay(Record record) {
+		switch (record.kind) {
+		case BEGIN:
+			release();
+			logger.atomic(replayGroup);
+			// The group already released its end.
+			return;
+		case CLEAR:
+			logger.logClear();
+			break;
+		case DISPLAY_SIZE:
+			logger.logDisplaySize(record.point);
+			break;
+		case EPISODE_START:
+			logger.logEpisodeStart();
+			break;
+		case FLUSH:
+			logger.flush();
+			break;
+		case GRASP:
+			logger.logGrasp(record.tool, record.block, record.point);
+			break;
+		case ITEM:
+			logger.logItem(record.item);
+			break;
+		case META:
+			logger.logMeta(record.meta);
+			break;
+		case PUSH:
+			logger.push();
+			break;
+		case RELEASE:
+			logger.logRelease(record.tool, record.block);
+			break;
+		case REMOVAL:
+			logger.logRemoval(record.item);
+			break;
+		case SIM_TIME:
+			logger.logSimTime(record.steps, record.seconds);
+			break;
+		case TOOL:
+			logger.logTool(record.tool);
+			break;
+		case TOOL_PRESENT:
+			logger.logToolPresent(record.tool, record.present);
+			break;
+		case TRAY:
+			logger.logTray(record.tray);
+			break;
+		case VIEW:
+			logger.logView(record.view);
+			break;
+		case WAIT_FOR_EPISODE_START:
+			logger.waitForEpisodeStart();
+			break;
+		default:
+			// Close and unmatched ends are handled by the write loop.
+			throw new RuntimeException("Unexpected record: " + record.kind);
+		}
+		release();
+	}
+
+	/**
+	 * Waits for the next record on the writer thread.
+	 */
+	private Record take() {
+		while (tail == head) {
+			synchronized (lock) {
+				writerWaiting = true;
+				try {
+					if (tail == head) {
+						lock.wait();
+					}
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				} finally {
+					writerWaiting = false;
+				}
+			}
+		}
+		return records[(int)tail & mask];
+	}
+
+	/**
+	 * Waits until the writer has finished everything so far.
+	 */
+	private void waitForWriter() {
+		while (tail != head) {
+			if (!writer.isAlive()) {
+				throw new IllegalStateException("Logger already closed.");
+			}
+			synchronized (lock) {
+				producerWaiting = true;
+				try {
+					if (tail != head) {
+						lock.wait();
+					}
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				} finally {
+					producerWaiting = false;
+				}
+			}
+		}
+		checkError();
+	}
+
+	@Override
+	public void waitForEpisodeStart() {
+		publish(Kind.WAIT_FOR_EPISODE_START);
+	}
+
+	/**
+	 * The writer thread loop.
+	 */
+	private void write() {
+		boolean failed = false;
+		while (true) {
+			Record record = take();
+			if (record.kind == Kind.CLOSE) {
+				try {
+					logger.close();
+				} catch (RuntimeException e) {
+					if (!failed) error = e;
+				}
+				release();
+				return;
+			}
+			if (failed) {
+				// Just keep the sim thread from waiting on us.
+				release();
+				continue;
+			}
+			try {
+				replay(record);
+			} catch (RuntimeException e) {
+				// The failed record is still unreleased, so the loop drops it
+				// along with everything else after. The sim thread sees the
+				// error soon enough.
+				error = e;
+				failed = true;
+			}
+		}
+	}
+
+}
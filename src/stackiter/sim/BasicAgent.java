@@ -20,6 +20,11 @@ public class BasicAgent implements Agent {
 		// Nothing by default.
 	}
 
+	@Override
+	public void reset() {
+		// Nothing by default.
+	}
+
 	@Override
 	public void sense() {
 		// Do nothing by default.
@@ -34,6 +34,8 @@ public class BasicItem implements Item {
 
 	private Point2D position = point();
 
+	private boolean sleeping;
+
 	@Override
 	public Item clone() {
 		BasicItem copied;
@@ -54,7 +56,15 @@ public class BasicItem implements Item {
 	@Override
 	public boolean contains(Point2D point) {
 		// TODO Support rotation here?
-		return rectangle(position, extent).contains(point);
+		// Same as rectangle(position, extent).contains(point) but without
+		// the allocation.
+		double minX = position.getX() - extent.getX();
+		double minY = position.getY() - extent.getY();
+		double x = point.getX();
+		double y = point.getY();
+		return
+			x >= minX && y >= minY &&
+			x < minX + 2 * extent.getX() && y < minY + 2 * extent.getY();
 	}
 
 	@Override
@@ -74,12 +84,17 @@ public class BasicItem implements Item {
 
 	@Override
 	public Rectangle2D getBounds() {
+		return getBounds(rectangle());
+	}
+
+	@Override
+	public Rectangle2D getBounds(Rectangle2D bounds) {
 		// TODO Merge with Block#getBounds() sometime.
 		Point2D extent = getExtent();
-		Rectangle2D rectangle = rectangle(
+		bounds.setRect(
 			-extent.getX(), -extent.getY(), 2 * extent.getX(), 2 * extent.getY()
 		);
-		return rectangle;
+		return bounds;
 	}
 
 	@Override
@@ -92,6 +107,12 @@ public class BasicItem implements Item {
 		return extent;
 	}
 
+	@Override
+	public Point2D getExtent(Point2D extent) {
+		extent.setLocation(this.extent);
+		return extent;
+	}
+
 	@Override
 	public Point2D getLinearAcceleration() {
 		return linearAcceleration;
@@ -107,11 +128,23 @@ public class BasicItem implements Item {
 		return linearVelocity;
 	}
 
+	@Override
+	public Point2D getLinearVelocity(Point2D linearVelocity) {
+		linearVelocity.setLocation(this.linearVelocity);
+		return linearVelocity;
+	}
+
 	@Override
 	public Point2D getPosition() {
 		return position;
 	}
 
+	@Override
+	public Point2D getPosition(Point2D position) {
+		position.setLocation(this.position);
+		return position;
+	}
+
 	@Override
 	public Soul getSoul() {
 		return soul;
@@ -119,7 +152,12 @@ public class BasicItem implements Item {
 
 	@Override
 	public AffineTransform getTransform() {
-		AffineTransform transform = new AffineTransform();
+		return getTransform(new AffineTransform());
+	}
+
+	@Override
+	public AffineTransform getTransform(AffineTransform transform) {
+		transform.setToIdentity();
 		transform.translate(position.getX(), position.getY());
 		transform.rotate(angle * Math.PI);
 		return transform;
@@ -130,6 +168,11 @@ public class BasicItem implements Item {
 		return alive;
 	}
 
+	@Override
+	public boolean isSleeping() {
+		return sleeping;
+	}
+
 	/**
 	 * Simple rectangle, but no rotation supported at present.
 	 */
@@ -195,4 +238,15 @@ public class BasicItem implements Item {
 		this.position.setLocation(position);
 	}
 
+	public void setSleeping(boolean sleeping) {
+		this.sleeping = sleeping;
+	}
+
+	/**
+	 * Lets reused copies stand in for different items over time.
+	 */
+	void setSoul(Soul soul) {
+		this.soul = soul;
+	}
+
 }
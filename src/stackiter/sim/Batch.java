@@ -2,18 +2,11 @@ package stackiter.sim;
 
 import static java.lang.Boolean.*;
 import static java.lang.Integer.*;
-import static java.lang.Math.*;
+import static java.lang.Long.*;
 import static stackiter.sim.Util.*;
 
-import java.awt.*;
-import java.awt.geom.*;
-import java.awt.image.*;
-import java.io.*;
 import java.util.*;
 
-import javax.imageio.*;
-import javax.swing.*;
-
 import stackiter.tasks.*;
 
 /**
@@ -24,14 +17,24 @@ import stackiter.tasks.*;
 public class Batch implements Runnable {
 
 	public static void main(String[] args) {
-		new Batch(parseArgs(args)).run();
+		Map<String, String> map = parseArgs(args);
+		if (!parseBoolean(map.get("display"))) {
+			// Keep AWT from ever looking for a screen.
+			System.setProperty("java.awt.headless", "true");
+		}
+		String workers = map.get("workers");
+		if (workers != null && parseInt(workers) > 1) {
+			new ParallelBatch(map).run();
+		} else {
+			new Batch(map).run();
+		}
 	}
 
 	/**
 	 * Parses args in sloppy alternating key value format, treating both as
 	 * strings.
 	 */
-	private static Map<String, String> parseArgs(String[] args) {
+	public static Map<String, String> parseArgs(String[] args) {
 		Map<String, String> map = new HashMap<String, String>();
 		for (int a = 0; a < args.length; a++) {
 			// Note the post-increment here.
@@ -52,15 +55,22 @@ public class Batch implements Runnable {
 
 	private Map<String, String> args;
 
-	private JComponent display;
-
-	private int frameIndex = 0;
-
-	private double lastClearCount = -1;
+	/**
+	 * Only created if displaying or saving frames, so headless runs never
+	 * touch AWT graphics or Swing.
+	 */
+	private BatchDisplay display;
 
-	private double lastDisplayTranslate = 0.0;
+	/**
+	 * Completed episodes so far, readable from other threads for status.
+	 */
+	private volatile int episodeCount;
 
-	private double lastDisplayTranslateGoal = 0.0;
+	/**
+	 * Whether to print progress dots and such.
+	 * Parallel runs report combined status instead.
+	 */
+	private boolean quiet;
 
 	private String logDir;
 
@@ -85,19 +95,33 @@ public class Batch implements Runnable {
 		return value;
 	}
 
-	@SuppressWarnings("serial")
-	private void initDisplay() {
-		JFrame frame = new JFrame("Stackiter Batch Display");
-		frame.setLayout(new BorderLayout());
-		display = new JComponent() {
-			@Override
-			protected void paintComponent(Graphics graphics) {
-				paintFrame(graphics, getSize());
-			}
-		};
-		frame.add(display, BorderLayout.CENTER);
-		frame.setSize(600, 400);
-		frame.setVisible(true);
+	/**
+	 * The number of episodes completed so far. Safe to call from other
+	 * threads.
+	 */
+	public int getEpisodeCount() {
+		return episodeCount;
+	}
+
+	/**
+	 * The scenarios named by the scenario arg.
+	 * The arg is singular for now, to simply the interface, but we build a
+	 * list from it.
+	 *
+	 * TODO Allow a list of some sort?
+	 */
+	Iterable<Scenario> getScenarios() {
+		String scenarioName = arg("scenario", "default");
+		if (scenarioName.equals("default")) {
+			// Sharing these with the Stackiter UI allows manual verification
+			// to match kick-offs here.
+			return Scenario.defaults();
+		}
+		Iterable<Scenario> scenarios = scenariosMap.get(scenarioName);
+		if (scenarios == null) {
+			throw new RuntimeException("Unknown scenario: " + scenarioName);
+		}
+		return scenarios;
 	}
 
 	private void initScenarios() {
@@ -117,105 +141,40 @@ public class Batch implements Runnable {
 			new Scenario.ExternalControl(),
 			new Scenario.ArchRefill()
 		));
+		// Self-driving ones, good for unattended and parallel runs.
+		scenariosMap.put("babble", Arrays.asList(
+			new Scenario.WideTable(),
+			new Scenario.Babble()
+		));
+		scenariosMap.put("builder", Arrays.asList(
+			new Scenario.WideTable(),
+			new Scenario.Builder(),
+			// The tray is empty on a wide table, so supply blocks directly.
+			new Scenario.Refill()
+		));
 	}
 
-	private void paintFrame(Graphics graphics, Dimension size) {
-		paintFrame(graphics, size, 1.0);
-	}
-
-	private void paintFrame(Graphics graphics, Dimension size, double scale) {
-		Graphics2D g = copy(graphics);
-		try {
-			AffineTransform transform = worldToFrameTransform(size);
-			// Additional custom scale.
-			transform.scale(scale, scale);
-			g.transform(transform);
-			if (true) {
-				// Center on blocks if outside display bounds.
-				transform.translate(lastDisplayTranslateGoal, 0);
-				Rectangle2D displayBounds = applied(
-					transform.createInverse(),
-					new Rectangle2D.Double(
-						0, 0, size.getWidth(), size.getHeight()
-					)
-				);
-				double minX = world.getGround().getExtent().getX();
-				double maxX = -minX;
-				for (Item item: world.getItems()) {
-					if (item.getPosition().getY() >= 0) {
-						Rectangle2D bounds =
-							applied(item.getTransform(), item.getBounds());
-						minX = Math.min(minX, bounds.getMinX());
-						maxX = Math.max(maxX, bounds.getMaxX());
-					}
-				}
-				double midX = (minX + maxX) / 2;
-				if (
-					minX < displayBounds.getMinX() ||
-					maxX > displayBounds.getMaxX()
-				) {
-					// New goal.
-					lastDisplayTranslateGoal = -midX;
-				}
-				double translateError =
-					lastDisplayTranslateGoal - lastDisplayTranslate;
-				if (abs(translateError) > 1e-2) {
-					if (lastClearCount != world.getClearCount()) {
-						// New episode. Just jump.
-						lastDisplayTranslate = lastDisplayTranslateGoal;
-					} else {
-						// Pan over gradually to maintain context.
-						double step = 0.1;
-						if (abs(translateError) < step) {
-							step = abs(translateError);
-						}
-						lastDisplayTranslate += signum(translateError) * step;
-					}
-					lastClearCount = world.getClearCount();
-				}
-				g.translate(lastDisplayTranslate, 0);
-				// Show key x coords for debugging.
-				boolean showMarkers = false;
-				if (showMarkers) {
-					// Display bounds based on old translate goal.
-					g.setColor(Color.BLUE);
-					g.draw(displayBounds);
-					double top = displayBounds.getMaxY();
-					// X origin.
-					g.setColor(Color.BLACK);
-					g.draw(new Line2D.Double(0, 0, 0, top));
-					// Relative to blocks.
-					g.setColor(Color.RED);
-					g.draw(new Line2D.Double(minX, 0, minX, top));
-					g.setColor(Color.GREEN);
-					g.draw(new Line2D.Double(maxX, 0, maxX, top));
-					g.setColor(Color.ORANGE);
-					g.draw(new Line2D.Double(midX, 0, midX, top));
-					// Translate goals.
-					g.setColor(Color.MAGENTA);
-					g.draw(new Line2D.Double(
-						-lastDisplayTranslateGoal, 0,
-						-lastDisplayTranslateGoal, top
-					));
-					g.setColor(Color.PINK);
-					g.draw(new Line2D.Double(
-						-lastDisplayTranslate, 0,
-						// Only part-way up, so we can see when they align.
-						-lastDisplayTranslate, top / 2
-					));
-				}
+	/**
+	 * Whether the configured scenario reads commands from standard in.
+	 * Only one such batch makes sense per process.
+	 */
+	public boolean isExternallyControlled() {
+		for (Scenario scenario: getScenarios()) {
+			if (scenario instanceof Scenario.ExternalControl) {
+				return true;
 			}
-			world.paint(g);
-		} catch (Exception e) {
-			throw new RuntimeException(e);
-		} finally {
-			g.dispose();
 		}
+		return false;
 	}
 
 	@Override
 	public void run() {
 		world = new World();
+		// Seeding also needs to come before scenario setup.
+		String seed = args.get("seed");
+		if (seed != null) {
+			world.setSeed(parseLong(seed));
+		}
 
 		// Logger.
 		//Logger logger = new FilterLogger(new TextLogger());
@@ -223,47 +182,73 @@ public class Batch implements Runnable {
 		logDir = arg("log-dir", "");
 		String logSuffix = arg("log-suffix", "");
 		boolean compressLog = parseBoolean(arg("compress-log", "true"));
-		Logger logger =
-			new EpisodicLogger(new TextLogger(logDir, logSuffix, compressLog));
+		String logFormat = arg("log-format", "text");
+		Logger innerLogger;
+		if (logFormat.equals("text")) {
+			// More than one thread compresses log blocks in parallel.
+			int compressThreads = parseInt(arg("compress-threads", "1"));
+			innerLogger =
+				new TextLogger(logDir, logSuffix, compressLog, compressThreads);
+		} else if (logFormat.equals("binary")) {
+			innerLogger = new BinaryLogger(logDir, logSuffix, compressLog);
+		} else if (logFormat.equals("none")) {
+			// For measuring the sim alone.
+			innerLogger = new NullLogger();
+		} else {
+			throw new RuntimeException("Unknown log format: " + logFormat);
+		}
+		AsyncLogger asyncLogger = null;
+		if (parseBoolean(arg("log-async", "false"))) {
+			// Format and compress on another thread.
+			int capacity = parseInt(
+				arg("log-buffer", String.valueOf(AsyncLogger.DEFAULT_CAPACITY))
+			);
+			AsyncLogger.Backpressure backpressure = AsyncLogger.Backpressure.valueOf(
+				arg("log-backpressure", "block").toUpperCase()
+			);
+			innerLogger = asyncLogger =
+				new AsyncLogger(innerLogger, capacity, backpressure);
+		}
+		Logger logger = new EpisodicLogger(innerLogger);
 		// Display.
 		boolean doDisplay = parseBoolean(arg("display", "false"));
 		boolean saveFrames = parseBoolean(arg("save-frames", "false"));
-		if (doDisplay) initDisplay();
+		if (doDisplay || saveFrames) {
+			// Saved frames render and encode off the sim thread. Formats are
+			// png for separate files, zip for one archive, or mjpeg.
+			FrameWriter.Format frameFormat = FrameWriter.Format.valueOf(
+				arg("frame-format", "png").toUpperCase()
+			);
+			int frameThreads = parseInt(arg(
+				"frame-threads",
+				String.valueOf(Runtime.getRuntime().availableProcessors())
+			));
+			display = new BatchDisplay(world, logDir, frameFormat, frameThreads);
+			if (doDisplay) display.show();
+		}
 		try {
 			logger.waitForEpisodeStart();
 
-			// Scenario.
-			// The arg is singular for now, to simply the interface, but we
-			// build a list from it.
-			// TODO Allow a list of some sort?
-			Iterable<Scenario> scenarios;
-			String scenarioName = arg("scenario", "default");
-			if (scenarioName.equals("default")) {
-				// Working directly from Stackiter.initScenarios allows manual
-				// verification to match kick-offs here.
-				scenarios = Stackiter.defaultScenarios();
-			} else {
-				scenarios = scenariosMap.get(scenarioName);
-				if (scenarios == null) {
-					throw new RuntimeException(
-						"Unknown scenario: " + scenarioName
-					);
-				}
-			}
-			// Get it going.
-			Scenario.handleWorldSetup(scenarios, world, logger);
+			// Scenario. Get it going.
+			Scenario.handleWorldSetup(getScenarios(), world, logger);
 
-			// Episode limit.
+			// Episode range.
+			// A later first episode with the same seed replays just that part
+			// of the longer run.
+			final int episodeFirst = parseInt(arg("episode-first", "0"));
 			final int episodeLimit = parseInt(arg("episode-limit", "100"));
+			world.startEpisodes(episodeFirst);
 
 			// Main loop.
+			long startTime = System.nanoTime();
 			long steps = 0;
 			long stepsPerSecond = 100;
 			long stepsPerMinute = 60 * stepsPerSecond;
 			long stepsPerHour = 60 * stepsPerMinute;
 			//while (world.getSimTime() < stepsPerHour / stepsPerSecond) {
 			while (
-				world.getClearCount() < episodeLimit && !world.isQuitRequested()
+				world.getClearCount() < episodeFirst + episodeLimit &&
+				!world.isQuitRequested()
 			) {
 				try {
 					world.update();
@@ -273,22 +258,40 @@ public class Batch implements Runnable {
 					e.printStackTrace();
 				}
 				if (doDisplay) display.repaint();
-				if (saveFrames && world.getSimSteps() % 4 == 0) saveFrame();
+				if (saveFrames && world.getSimSteps() % 4 == 0) {
+					display.saveFrame();
+				}
+				episodeCount = world.getClearCount() - episodeFirst;
 				// Simple status.
 				steps++;
-				if (steps % stepsPerMinute == 0) {
+				if (!quiet && steps % stepsPerMinute == 0) {
 					System.out.print(".");
 				}
-				if (steps % stepsPerHour == 0) {
+				if (!quiet && steps % stepsPerHour == 0) {
 					System.out.printf(
 						" Hours: %d\n", steps/stepsPerHour
 					);
 				}
 			}
+			if (!quiet) {
+				double seconds = 1e-9 * (System.nanoTime() - startTime);
+				System.out.printf(
+					"\nSteps: %d in %.1f s (%.0f/s)\n",
+					steps, seconds, steps / seconds
+				);
+				if (asyncLogger != null && asyncLogger.getDropCount() > 0) {
+					System.out.printf(
+						"Dropped log updates: %d\n", asyncLogger.getDropCount()
+					);
+				}
+			}
 		} catch (Throwable e) {
 			e.printStackTrace();
 		} finally {
 			logger.close();
+			if (display != null) {
+				display.close();
+			}
 			if (doDisplay) {
 				// Kill AWT/Swing threads.
 				System.exit(0);
@@ -296,34 +299,11 @@ public class Batch implements Runnable {
 		}
 	}
 
-	private void saveFrame() {
-		BufferedImage image =
-			new BufferedImage(320, 200, BufferedImage.TYPE_INT_RGB);
-		Graphics2D graphics = image.createGraphics();
-		try {
-			graphics.setBackground(Color.WHITE);
-			graphics.clearRect(0, 0, image.getWidth(), image.getHeight());
-			Dimension size = new Dimension(image.getWidth(), image.getHeight());
-			paintFrame(graphics, size, 0.5);
-			String name = String.format("frame%05d.png", frameIndex);
-			File file = new File(logDir, name);
-			ImageIO.write(image, "png", file);
-			frameIndex++;
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		} finally {
-			graphics.dispose();
-		}
-	}
-
-	private AffineTransform worldToFrameTransform(Dimension size) {
-		AffineTransform transform = new AffineTransform();
-		transform.translate(0.5 * size.getWidth(), size.getHeight());
-		// Ideally, we just know what scale to use, but this at least
-		// seems to be a sane one for common cases.
-		double scale = 10.0;
-		transform.scale(scale, -scale);
-		return transform;
+	/**
+	 * Turns off per-batch status output.
+	 */
+	public void setQuiet(boolean quiet) {
+		this.quiet = quiet;
 	}
 
 }
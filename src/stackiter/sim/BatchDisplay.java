@@ -0,0 +1,286 @@
+package stackiter.sim;
+
+import static java.lang.Math.*;
+import static stackiter.sim.Util.*;
+
+import java.awt.*;
+import java.awt.geom.*;
+import java.util.*;
+import java.util.List;
+
+import javax.swing.*;
+
+/**
+ * Display and frame saving for batch runs. Kept apart from Batch, so that
+ * headless runs don't load any of this.
+ */
+class BatchDisplay {
+
+	/**
+	 * Where the camera is for one frame, worked out on the sim thread.
+	 */
+	private static class View {
+
+		Rectangle2D displayBounds;
+
+		double maxX;
+
+		double midX;
+
+		double minX;
+
+		/**
+		 * World to frame, including the translate.
+		 */
+		AffineTransform transform;
+
+		double translate;
+
+		double translateGoal;
+
+	}
+
+	private static final int FRAME_HEIGHT = 200;
+
+	private static final int FRAME_WIDTH = 320;
+
+	private JComponent component;
+
+	private FrameWriter.Format frameFormat;
+
+	private int frameThreads;
+
+	/**
+	 * Made on the first saved frame.
+	 */
+	private FrameWriter frameWriter;
+
+	private double lastClearCount = -1;
+
+	private double lastDisplayTranslate = 0.0;
+
+	private double lastDisplayTranslateGoal = 0.0;
+
+	private String logDir;
+
+	// Scratch for per-frame item bounds.
+	private Rectangle2D tempBounds = new Rectangle2D.Double();
+	private Point2D tempPosition = point();
+	private AffineTransform tempTransform = new AffineTransform();
+
+	private World world;
+
+	public BatchDisplay(World world, String logDir) {
+		this(world, logDir, FrameWriter.Format.PNG, 1);
+	}
+
+	/**
+	 * Saved frames render on the given number of threads.
+	 */
+	public BatchDisplay(
+		World world, String logDir, FrameWriter.Format frameFormat,
+		int frameThreads
+	) {
+		this.world = world;
+		this.logDir = logDir;
+		this.frameFormat = frameFormat;
+		this.frameThreads = frameThreads;
+	}
+
+	/**
+	 * Finishes writing any saved frames.
+	 */
+	public void close() {
+		if (frameWriter != null) {
+			frameWriter.close();
+		}
+	}
+
+	private void paintFrame(Graphics graphics, Dimension size) {
+		paintFrame(graphics, size, 1.0);
+	}
+
+	private void paintFrame(Graphics graphics, Dimension size, double scale) {
+		Graphics2D g = copy(graphics);
+		try {
+			paintView(g, updateView(size, scale));
+			world.paint(g);
+		} finally {
+			g.dispose();
+		}
+	}
+
+	/**
+	 * Applies the view transform, and draws markers if wanted. Touches only
+	 * the view, so this is safe off the sim thread.
+	 */
+	private void paintView(Graphics2D g, View view) {
+		g.transform(view.transform);
+		// Show key x coords for debugging.
+		boolean showMarkers = false;
+		if (showMarkers) {
+			// Display bounds based on old translate goal.
+			g.setColor(Color.BLUE);
+			g.draw(view.displayBounds);
+			double top = view.displayBounds.getMaxY();
+			// X origin.
+			g.setColor(Color.BLACK);
+			g.draw(new Line2D.Double(0, 0, 0, top));
+			// Relative to blocks.
+			g.setColor(Color.RED);
+			g.draw(new Line2D.Double(view.minX, 0, view.minX, top));
+			g.setColor(Color.GREEN);
+			g.draw(new Line2D.Double(view.maxX, 0, view.maxX, top));
+			g.setColor(Color.ORANGE);
+			g.draw(new Line2D.Double(view.midX, 0, view.midX, top));
+			// Translate goals.
+			g.setColor(Color.MAGENTA);
+			g.draw(new Line2D.Double(
+				-view.translateGoal, 0, -view.translateGoal, top
+			));
+			g.setColor(Color.PINK);
+			g.draw(new Line2D.Double(
+				-view.translate, 0,
+				// Only part-way up, so we can see when they align.
+				-view.translate, top / 2
+			));
+		}
+	}
+
+	public void repaint() {
+		if (component != null) {
+			component.repaint();
+		}
+	}
+
+	/**
+	 * Snapshots the world on this thread, then leaves painting and writing to
+	 * the frame writer.
+	 */
+	public void saveFrame() {
+		if (frameWriter == null) {
+			frameWriter = new FrameWriter(
+				logDir, frameFormat, FRAME_WIDTH, FRAME_HEIGHT, frameThreads
+			);
+		}
+		final View view =
+			updateView(new Dimension(FRAME_WIDTH, FRAME_HEIGHT), 0.5);
+		// Same order as World.paint.
+		final List<Item> items = new ArrayList<Item>();
+		World.ItemView itemView = world.getItemView();
+		for (int i = 0; i < itemView.size(); i++) {
+			if (!itemView.isTray(i)) {
+				items.add(itemView.get(i).clone());
+			}
+		}
+		final Tray tray = world.getTray().snapshotForPaint();
+		final List<Tool> tools = new ArrayList<Tool>();
+		for (Tool tool: world.getTools()) {
+			tools.add(tool.clone());
+		}
+		frameWriter.add(new FrameWriter.Painter() {
+			@Override
+			public void paint(Graphics2D graphics) {
+				paintView(graphics, view);
+				for (Item item: items) {
+					item.paint(graphics);
+				}
+				tray.paint(graphics);
+				for (Tool tool: tools) {
+					tool.paint(graphics);
+				}
+			}
+		});
+	}
+
+	@SuppressWarnings("serial")
+	public void show() {
+		JFrame frame = new JFrame("Stackiter Batch Display");
+		frame.setLayout(new BorderLayout());
+		component = new JComponent() {
+			@Override
+			protected void paintComponent(Graphics graphics) {
+				paintFrame(graphics, getSize());
+			}
+		};
+		frame.add(component, BorderLayout.CENTER);
+		frame.setSize(600, 400);
+		frame.setVisible(true);
+	}
+
+	/**
+	 * Moves the camera toward the blocks, and returns where it ends up for
+	 * this frame. Only call from the sim thread.
+	 */
+	private View updateView(Dimension size, double scale) {
+		View view = new View();
+		try {
+			AffineTransform transform = worldToFrameTransform(size);
+			// Additional custom scale.
+			transform.scale(scale, scale);
+			view.transform = new AffineTransform(transform);
+			// Center on blocks if outside display bounds.
+			transform.translate(lastDisplayTranslateGoal, 0);
+			view.displayBounds = applied(
+				transform.createInverse(),
+				new Rectangle2D.Double(0, 0, size.getWidth(), size.getHeight())
+			);
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+		double minX = world.getGround().getExtent().getX();
+		double maxX = -minX;
+		World.ItemView items = world.getItemView();
+		for (int i = 0; i < items.size(); i++) {
+			if (items.getPosition(i, tempPosition).getY() >= 0) {
+				Rectangle2D bounds = applied(
+					items.getTransform(i, tempTransform),
+					items.get(i).getBounds(tempBounds)
+				);
+				minX = Math.min(minX, bounds.getMinX());
+				maxX = Math.max(maxX, bounds.getMaxX());
+			}
+		}
+		double midX = (minX + maxX) / 2;
+		if (
+			minX < view.displayBounds.getMinX() ||
+			maxX > view.displayBounds.getMaxX()
+		) {
+			// New goal.
+			lastDisplayTranslateGoal = -midX;
+		}
+		double translateError = lastDisplayTranslateGoal - lastDisplayTranslate;
+		if (abs(translateError) > 1e-2) {
+			if (lastClearCount != world.getClearCount()) {
+				// New episode. Just jump.
+				lastDisplayTranslate = lastDisplayTranslateGoal;
+			} else {
+				// Pan over gradually to maintain context.
+				double step = 0.1;
+				if (abs(translateError) < step) {
+					step = abs(translateError);
+				}
+				lastDisplayTranslate += signum(translateError) * step;
+			}
+			lastClearCount = world.getClearCount();
+		}
+		view.transform.translate(lastDisplayTranslate, 0);
+		view.minX = minX;
+		view.maxX = maxX;
+		view.midX = midX;
+		view.translate = lastDisplayTranslate;
+		view.translateGoal = lastDisplayTranslateGoal;
+		return view;
+	}
+
+	private AffineTransform worldToFrameTransform(Dimension size) {
+		AffineTransform transform = new AffineTransform();
+		transform.translate(0.5 * size.getWidth(), size.getHeight());
+		// Ideally, we just know what scale to use, but this at least
+		// seems to be a sane one for common cases.
+		double scale = 10.0;
+		transform.scale(scale, -scale);
+		return transform;
+	}
+
+}
@@ -0,0 +1,370 @@
+package stackiter.sim;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+import java.util.zip.*;
+
+import stackiter.sim.BinaryLogger.Tag;
+
+/**
+ * Reads logs written by BinaryLogger one record at a time, and converts them
+ * back to the text format written by TextLogger.
+ *
+ * Float values only keep float precision, so the third decimal place of text
+ * output can occasionally differ from a direct text log.
+ */
+public class BinaryLogReader implements Closeable {
+
+	/**
+	 * Converts a binary log to text.
+	 * Usage: BinaryLogReader input.binlog [output.log[.gz]]
+	 * Without an output name, writes to standard out.
+	 */
+	public static void main(String[] args) {
+		if (args.length < 1 || args.length > 2) {
+			System.err.println("Usage: BinaryLogReader in.binlog [out.log[.gz]]");
+			System.exit(1);
+		}
+		try {
+			BinaryLogReader reader =
+				new BinaryLogReader(new FileInputStream(args[0]));
+			try {
+				OutputStream out = System.out;
+				if (args.length > 1) {
+					out = new FileOutputStream(args[1]);
+					if (args[1].endsWith(".gz")) {
+						out = new GZIPOutputStream(out);
+					}
+				}
+				Formatter formatter = new Formatter(new BufferedWriter(
+					new OutputStreamWriter(out, "UTF-8"), 1 << 16
+				));
+				try {
+					reader.toText(formatter);
+				} finally {
+					if (out == System.out) {
+						formatter.flush();
+					} else {
+						formatter.close();
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private byte[] block = new byte[1 << 16];
+
+	private boolean compressed;
+
+	private byte[] compressedBlock = new byte[1 << 16];
+
+	private int doubleCount;
+
+	private int doubleIndex;
+
+	private double[] doubles = new double[0];
+
+	private int floatCount;
+
+	private int floatIndex;
+
+	private float[] floats = new float[0];
+
+	private DataInputStream in;
+
+	private Inflater inflater = new Inflater();
+
+	private int intCount;
+
+	private int intIndex;
+
+	private int[] ints = new int[0];
+
+	private int recordCount;
+
+	private int recordIndex;
+
+	private int stringIndex;
+
+	private List<String> strings = new ArrayList<String>();
+
+	private Tag tag;
+
+	private byte[] tags = new byte[0];
+
+	private final Tag[] tagValues = Tag.values();
+
+	public BinaryLogReader(InputStream in) {
+		this.in = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+		try {
+			byte[] magic = new byte[BinaryLogger.MAGIC.length];
+			this.in.readFully(magic);
+			if (!Arrays.equals(magic, BinaryLogger.MAGIC)) {
+				throw new RuntimeException("Not a binary stackiter log.");
+			}
+			int version = this.in.readInt();
+			if (version != BinaryLogger.VERSION) {
+				throw new RuntimeException("Unknown version: " + version);
+			}
+			compressed = this.in.readBoolean();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void close() {
+		try {
+			in.close();
+			inflater.end();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Gets the kth double of the current record.
+	 */
+	public double getDouble(int k) {
+		return doubles[doubleIndex + k];
+	}
+
+	/**
+	 * Gets the kth float of the current record.
+	 */
+	public float getFloat(int k) {
+		return floats[floatIndex + k];
+	}
+
+	/**
+	 * Gets the kth int of the current record. These are ids, flags, or sizes.
+	 */
+	public int getInt(int k) {
+		return ints[intIndex + k];
+	}
+
+	/**
+	 * Gets the kth string of the current record.
+	 */
+	public String getString(int k) {
+		return strings.get(stringIndex + k);
+	}
+
+	/**
+	 * The tag of the current record.
+	 */
+	public Tag getTag() {
+		return tag;
+	}
+
+	/**
+	 * Moves to the next record, returning false at the end of the log.
+	 */
+	public boolean next() {
+		if (tag != null) {
+			// Move past the values of the current record.
+			intIndex += tag.ints;
+			floatIndex += tag.floats;
+			doubleIndex += tag.doubles;
+			stringIndex += tag.strings;
+		}
+		if (recordIndex == recordCount && !readBlock()) {
+			tag = null;
+			return false;
+		}
+		tag = tagValues[tags[recordIndex++]];
+		return true;
+	}
+
+	/**
+	 * Peeks at the next tag within the current block, or null if none.
+	 * Meta args never cross blocks, so that's all we need.
+	 */
+	private Tag peekTag() {
+		return recordIndex < recordCount ? tagValues[tags[recordIndex]] : null;
+	}
+
+	private boolean readBlock() {
+		try {
+			int size;
+			try {
+				size = in.readInt();
+			} catch (EOFException e) {
+				return false;
+			}
+			int stored = in.readInt();
+			if (block.length < size) {
+				block = new byte[Math.max(size, 2 * block.length)];
+			}
+			if (compressed) {
+				if (compressedBlock.length < stored) {
+					compressedBlock =
+						new byte[Math.max(stored, 2 * compressedBlock.length)];
+				}
+				in.readFully(compressedBlock, 0, stored);
+				inflater.reset();
+				inflater.setInput(compressedBlock, 0, stored);
+				int count = 0;
+				while (count < size) {
+					count += inflater.inflate(block, count, size - count);
+				}
+			} else {
+				in.readFully(block, 0, size);
+			}
+			// Unpack the columns.
+			ByteBuffer buffer = ByteBuffer.wrap(block, 0, size);
+			recordCount = buffer.getInt();
+			intCount = buffer.getInt();
+			floatCount = buffer.getInt();
+			doubleCount = buffer.getInt();
+			int stringCount = buffer.getInt();
+			if (tags.length < recordCount) tags = new byte[recordCount];
+			if (ints.length < intCount) ints = new int[intCount];
+			if (floats.length < floatCount) floats = new float[floatCount];
+			if (doubles.length < doubleCount) doubles = new double[doubleCount];
+			buffer.get(tags, 0, recordCount);
+			buffer.asIntBuffer().get(ints, 0, intCount);
+			buffer.position(buffer.position() + 4 * intCount);
+			buffer.asFloatBuffer().get(floats, 0, floatCount);
+			buffer.position(buffer.position() + 4 * floatCount);
+			buffer.asDoubleBuffer().get(doubles, 0, doubleCount);
+			buffer.position(buffer.position() + 8 * doubleCount);
+			strings.clear();
+			for (int s = 0; s < stringCount; s++) {
+				byte[] bytes = new byte[buffer.getInt()];
+				buffer.get(bytes);
+				strings.add(new String(bytes, "UTF-8"));
+			}
+			recordIndex = intIndex = floatIndex = doubleIndex = stringIndex = 0;
+			tag = null;
+			return true;
+		} catch (DataFormatException e) {
+			throw new RuntimeException(e);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Writes all remaining records out in TextLogger format.
+	 */
+	public void toText(Formatter out) {
+		while (next()) {
+			switch (tag) {
+			case ALIVE:
+				out.format("alive %d %s\n", getInt(0), getInt(1) != 0);
+				break;
+			case CLEAR:
+				out.format("clear\n");
+				break;
+			case COLOR:
+				out.format(
+					"color %d %.3f %.3f %.3f %.3f\n", getInt(0),
+					getFloat(0), getFloat(1), getFloat(2), getFloat(3)
+				);
+				break;
+			case DESTROY:
+				out.format("destroy %d\n", getInt(0));
+				break;
+			case EXTENT:
+				out.format(
+					"extent %d %.3f %.3f\n", getInt(0), getFloat(0), getFloat(1)
+				);
+				break;
+			case GRASP:
+				out.format(
+					"grasp %d %d %.3f %.3f\n",
+					getInt(0), getInt(1), getFloat(0), getFloat(1)
+				);
+				break;
+			case ITEM:
+				out.format("item %d\n", getInt(0));
+				break;
+			case META:
+				StringBuilder args = new StringBuilder();
+				String name = getString(0);
+				// Gather up the args that follow.
+				while (true) {
+					Tag next = peekTag();
+					if (next == null || !next.name().startsWith("META_")) break;
+					next();
+					switch (tag) {
+					case META_ITEM:
+						args.append(" ").append(getInt(0));
+						break;
+					case META_NULL:
+						args.append(" null");
+						break;
+					case META_NUMBER:
+						args.append(String.format(" %.3f", getDouble(0)));
+						break;
+					case META_POINT:
+						args.append(String.format(
+							" %.3f %.3f", getDouble(0), getDouble(1)
+						));
+						break;
+					default:
+						// Can't happen given the check above.
+						break;
+					}
+				}
+				out.format("meta %s%s\n", name, args);
+				break;
+			case POS:
+				out.format(
+					"pos %d %.3f %.3f\n", getInt(0), getFloat(0), getFloat(1)
+				);
+				break;
+			case POSVEL:
+				out.format(
+					"posvel %d %.3f %.3f\n", getInt(0), getFloat(0), getFloat(1)
+				);
+				break;
+			case PRESENT:
+				out.format("present %d %s\n", getInt(0), getInt(1) != 0);
+				break;
+			case PRESSED:
+				out.format("pressed %d %s\n", getInt(0), getInt(1) != 0);
+				break;
+			case QUIT:
+				out.format("quit\n");
+				break;
+			case REL:
+				out.format("rel %d %d\n", getInt(0), getInt(1));
+				break;
+			case RELEASE:
+				out.format("release %d %d\n", getInt(0), getInt(1));
+				break;
+			case ROT:
+				out.format("rot %d %.3f\n", getInt(0), getFloat(0));
+				break;
+			case ROTVEL:
+				out.format("rotvel %d %.3f\n", getInt(0), getFloat(0));
+				break;
+			case SIZE_DISPLAY:
+				out.format("size display %d %d\n", getInt(0), getInt(1));
+				break;
+			case TIME_REAL:
+				out.format("time real %.3f\n", getDouble(0));
+				break;
+			case TIME_SIM:
+				out.format(
+					"time sim %d %.3f\n", (long)getDouble(0), getDouble(1)
+				);
+				break;
+			case TYPE:
+				out.format("type %d %s\n", getInt(0), getString(0));
+				break;
+			default:
+				// Lone meta args shouldn't happen, so just skip them.
+				break;
+			}
+		}
+	}
+
+}
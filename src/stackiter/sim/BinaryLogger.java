@@ -0,0 +1,705 @@
+package stackiter.sim;
+
+import static stackiter.sim.Util.*;
+
+import java.awt.geom.*;
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+import java.util.zip.*;
+
+/**
+ * Logs the same information as TextLogger but in a binary columnar format,
+ * avoiding text formatting entirely on the sim thread.
+ *
+ * Records are buffered by column (tags, ints, floats, doubles, and strings)
+ * and written out as a block at each clear (so roughly one block per
+ * episode), whenever the buffer gets large, and on flush or close. Each block
+ * can optionally be compressed with a fast deflate.
+ *
+ * The file starts with the MAGIC bytes, a version int, and a compressed
+ * flag byte. Each block is then an int raw length, an int stored length, and
+ * the stored bytes. Raw block content is the record count and the counts of
+ * each value column, followed by the columns themselves.
+ *
+ * Use BinaryLogReader to read these back or to convert them to text.
+ */
+public class BinaryLogger extends AtomicLogger {
+
+	/**
+	 * Record types, each with a fixed number of values from each column.
+	 * The ordinal is what gets stored, so only ever append to this list.
+	 */
+	public enum Tag {
+
+		ALIVE(2, 0, 0, 0),
+
+		CLEAR(0, 0, 0, 0),
+
+		COLOR(1, 4, 0, 0),
+
+		DESTROY(1, 0, 0, 0),
+
+		EXTENT(1, 2, 0, 0),
+
+		GRASP(2, 2, 0, 0),
+
+		ITEM(1, 0, 0, 0),
+
+		/**
+		 * Meta name. Args follow as separate META_* records.
+		 */
+		META(0, 0, 0, 1),
+
+		META_ITEM(1, 0, 0, 0),
+
+		META_NULL(0, 0, 0, 0),
+
+		META_NUMBER(0, 0, 1, 0),
+
+		META_POINT(0, 0, 2, 0),
+
+		POS(1, 2, 0, 0),
+
+		POSVEL(1, 2, 0, 0),
+
+		PRESENT(2, 0, 0, 0),
+
+		PRESSED(2, 0, 0, 0),
+
+		QUIT(0, 0, 0, 0),
+
+		REL(2, 0, 0, 0),
+
+		RELEASE(2, 0, 0, 0),
+
+		ROT(1, 1, 0, 0),
+
+		ROTVEL(1, 1, 0, 0),
+
+		SIZE_DISPLAY(2, 0, 0, 0),
+
+		/**
+		 * Steps and seconds, with steps as a double to keep things simple.
+		 */
+		TIME_SIM(0, 0, 2, 0),
+
+		TIME_REAL(0, 0, 1, 0),
+
+		TYPE(1, 0, 0, 1);
+
+		public final int doubles;
+
+		public final int floats;
+
+		public final int ints;
+
+		public final int strings;
+
+		private Tag(int ints, int floats, int doubles, int strings) {
+			this.ints = ints;
+			this.floats = floats;
+			this.doubles = doubles;
+			this.strings = strings;
+		}
+
+	}
+
+	/**
+	 * Identifies the format at the start of the file.
+	 */
+	public static final byte[] MAGIC = {'S', 'T', 'K', 'B'};
+
+	public static final int VERSION = 1;
+
+	/**
+	 * Write a block at least this often, even without a clear.
+	 */
+	private static final int BLOCK_RECORDS_MAX = 1 << 16;
+
+	/**
+	 * Same meaning as in TextLogger.
+	 */
+	private static final double EPSILON = 1e-4;
+
+	private static class ItemInfo {
+		public int id;
+		public Item item;
+		public long sleepingStep = Long.MIN_VALUE;
+	}
+
+	private static class ToolInfo {
+		public int id;
+		public boolean present;
+		public Tool tool;
+	}
+
+	/**
+	 * Opens a binary log file in the given directory, named as for text logs
+	 * but with a ".binlog" extension.
+	 */
+	public static OutputStream openLogFile(String logDir, String suffix) {
+		try {
+			File logFile = TextLogger.newLogFile(logDir, suffix, ".binlog");
+			return new FileOutputStream(logFile);
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private byte[] block = new byte[1 << 16];
+
+	private boolean compress;
+
+	private byte[] compressed = new byte[1 << 16];
+
+	private Deflater deflater;
+
+	private Point2D displaySize = new Point2D.Double();
+
+	private int doubleCount;
+
+	private double[] doubles = new double[1 << 10];
+
+	private boolean doFlush;
+
+	private boolean firstPerTx;
+
+	private int floatCount;
+
+	private float[] floats = new float[1 << 12];
+
+	/**
+	 * Shared by items and tools, after the fixed ids.
+	 */
+	private IdRegistry ids = new IdRegistry(4);
+
+	private int idTray = 3;
+
+	private int idView = 2;
+
+	private int idWorld = 1;
+
+	private int intCount;
+
+	private int[] ints = new int[1 << 12];
+
+	private Map<Soul, ItemInfo> items = new HashMap<Soul, ItemInfo>();
+
+	private DataOutputStream out;
+
+	private int recordCount;
+
+	private double simTime;
+
+	private long startTime;
+
+	private long steps;
+
+	private List<String> strings = new ArrayList<String>();
+
+	private byte[] tags = new byte[1 << 12];
+
+	/**
+	 * Scratch points for reading item values without allocating.
+	 */
+	private Point2D tempPosition = new Point2D.Double();
+
+	private Point2D tempVelocity = new Point2D.Double();
+
+	private long time;
+
+	private Map<Soul, ToolInfo> tools = new HashMap<Soul, ToolInfo>();
+
+	private boolean trayLogged;
+
+	private Rectangle2D view = new Rectangle2D.Double();
+
+	public BinaryLogger(String logDir, String suffix, boolean compress) {
+		this(openLogFile(logDir, suffix), compress);
+	}
+
+	public BinaryLogger(OutputStream out, boolean compress) {
+		this.out = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+		this.compress = compress;
+		if (compress) {
+			// Favor speed over size. Columns compress well anyway.
+			deflater = new Deflater(Deflater.BEST_SPEED);
+		}
+		try {
+			this.out.write(MAGIC);
+			this.out.writeInt(VERSION);
+			this.out.writeBoolean(compress);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		startTime = System.currentTimeMillis();
+		time = startTime;
+		logStart();
+	}
+
+	private void addDouble(double value) {
+		if (doubleCount == doubles.length) {
+			doubles = Arrays.copyOf(doubles, 2 * doubles.length);
+		}
+		doubles[doubleCount++] = value;
+	}
+
+	private void addFloat(double value) {
+		if (floatCount == floats.length) {
+			floats = Arrays.copyOf(floats, 2 * floats.length);
+		}
+		floats[floatCount++] = (float)value;
+	}
+
+	private void addInt(int value) {
+		if (intCount == ints.length) {
+			ints = Arrays.copyOf(ints, 2 * ints.length);
+		}
+		ints[intCount++] = value;
+	}
+
+	/**
+	 * Starts a new record, logging the real time first if needed.
+	 */
+	private void addRecord(Tag tag) {
+		logTimeIfNeeded();
+		addTag(tag);
+	}
+
+	private void addTag(Tag tag) {
+		if (recordCount == tags.length) {
+			tags = Arrays.copyOf(tags, 2 * tags.length);
+		}
+		tags[recordCount++] = (byte)tag.ordinal();
+	}
+
+	@Override
+	protected void beginStep() {
+		if (getTxDepth() == 0) {
+			firstPerTx = true;
+		}
+		super.beginStep();
+	}
+
+	@Override
+	public void close() {
+		try {
+			addRecord(Tag.QUIT);
+			writeBlock();
+			out.close();
+			if (deflater != null) {
+				deflater.end();
+			}
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	protected void endStep() {
+		super.endStep();
+		if (doFlush) {
+			doFlush = false;
+			flushDirect();
+		}
+		if (getTxDepth() == 0 && recordCount >= BLOCK_RECORDS_MAX) {
+			writeBlock();
+		}
+	}
+
+	@Override
+	public void flush() {
+		if (getTxDepth() == 0) {
+			flushDirect();
+		} else {
+			doFlush = true;
+		}
+	}
+
+	private void flushDirect() {
+		writeBlock();
+		try {
+			out.flush();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private ItemInfo getInfo(Item item) {
+		ItemInfo info = items.get(item.getSoul());
+		if (info == null) {
+			// New item. Log its static information.
+			info = new ItemInfo();
+			info.id = ids.add(item.getSoul());
+			info.item = new BasicItem();
+			items.put(item.getSoul(), info);
+			addRecord(Tag.ITEM);
+			addInt(info.id);
+			addRecord(Tag.TYPE);
+			addInt(info.id);
+			strings.add("box");
+			Point2D extent = item.getExtent();
+			addRecord(Tag.EXTENT);
+			addInt(info.id);
+			addFloat(extent.getX());
+			addFloat(extent.getY());
+			logColor(info.id, item.getColor());
+			if (!item.isAlive()) {
+				// Presume all prebirth items are in the tray frame.
+				logRel(info.id, idTray);
+			}
+		}
+		return info;
+	}
+
+	private ToolInfo getInfo(Tool tool) {
+		ToolInfo info = tools.get(tool.getSoul());
+		if (info == null) {
+			// New item. Log its static information.
+			info = new ToolInfo();
+			info.id = ids.add(tool.getSoul());
+			info.tool = new Tool();
+			tools.put(tool.getSoul(), info);
+			addRecord(Tag.ITEM);
+			addInt(info.id);
+			addRecord(Tag.TYPE);
+			addInt(info.id);
+			strings.add("tool");
+			logColor(info.id, tool.getColor());
+		}
+		return info;
+	}
+
+	private void logBoolean(Tag tag, int id, boolean value) {
+		addRecord(tag);
+		addInt(id);
+		addInt(value ? 1 : 0);
+	}
+
+	@Override
+	public void logClear() {
+		addRecord(Tag.CLEAR);
+		// Start a new block, so episodes stay together.
+		if (getTxDepth() == 0) {
+			writeBlock();
+		} else {
+			doFlush = true;
+		}
+	}
+
+	private void logColor(int id, java.awt.Color color) {
+		float[] components = color.getRGBComponents(null);
+		addRecord(Tag.COLOR);
+		addInt(id);
+		for (float component: components) {
+			addFloat(component);
+		}
+	}
+
+	@Override
+	public void logDisplaySize(Point2D size) {
+		if (!approx(displaySize, size, EPSILON)) {
+			displaySize.setLocation(size);
+			addRecord(Tag.SIZE_DISPLAY);
+			addInt((int)size.getX());
+			addInt((int)size.getY());
+		}
+	}
+
+	@Override
+	public void logGrasp(final Tool tool, final Block item, final Point2D pointRelItem) {
+		atomic(new Runnable() { @Override public void run() {
+			ToolInfo toolInfo = getInfo(tool);
+			ItemInfo info = getInfo(item);
+			addRecord(Tag.GRASP);
+			addInt(toolInfo.id);
+			addInt(info.id);
+			addFloat(pointRelItem.getX());
+			addFloat(pointRelItem.getY());
+		}});
+	}
+
+	@Override
+	public void logItem(final Item item) {
+		atomic(new Runnable() { @Override public void run() {
+			ItemInfo info = getInfo(item);
+			if (item.isSleeping() && info.sleepingStep >= steps - 1) {
+				// Still asleep from last step. See TextLogger.
+				info.sleepingStep = steps;
+				return;
+			}
+			if (item.isAlive() != info.item.isAlive()) {
+				info.item.setAlive(item.isAlive());
+				if (item.isAlive()) {
+					// Presume all newly alive items are suddenly in the world frame.
+					logRel(info.id, idWorld);
+				}
+				logBoolean(Tag.ALIVE, info.id, item.isAlive());
+			}
+			Point2D position = item.getPosition(tempPosition);
+			if (!approx(position, info.item.getPosition(), EPSILON)) {
+				info.item.setPosition(position);
+				logPoint(Tag.POS, info.id, position);
+			}
+			Point2D linearVelocity = item.getLinearVelocity(tempVelocity);
+			if (!approx(linearVelocity, info.item.getLinearVelocity(), EPSILON)) {
+				info.item.setLinearVelocity(linearVelocity);
+				logPoint(Tag.POSVEL, info.id, linearVelocity);
+			}
+			double angle = item.getAngle();
+			if (!approx(angle, info.item.getAngle(), EPSILON)) {
+				info.item.setAngle(angle);
+				logScalar(Tag.ROT, info.id, angle);
+			}
+			double angularVelocity = item.getAngularVelocity();
+			if (!approx(angularVelocity, info.item.getAngularVelocity(), EPSILON)) {
+				info.item.setAngularVelocity(angularVelocity);
+				logScalar(Tag.ROTVEL, info.id, angularVelocity);
+			}
+			info.sleepingStep = item.isSleeping() ? steps : Long.MIN_VALUE;
+		}});
+	}
+
+	@Override
+	public void logMeta(final Meta meta) {
+		atomic(new Runnable() { @Override public void run() {
+			addRecord(Tag.META);
+			strings.add(meta.name);
+			for (Object arg: meta.args) {
+				if (arg instanceof Double) {
+					addTag(Tag.META_NUMBER);
+					addDouble((Double)arg);
+				} else if (arg instanceof Point2D) {
+					Point2D point = (Point2D)arg;
+					addTag(Tag.META_POINT);
+					addDouble(point.getX());
+					addDouble(point.getY());
+				} else if (arg instanceof Soul) {
+					ItemInfo item = items.get(arg);
+					if (item == null) {
+						throw new RuntimeException(
+							arg + " not in " + items.keySet()
+						);
+					}
+					addTag(Tag.META_ITEM);
+					addInt(item.id);
+				} else if (arg == null) {
+					addTag(Tag.META_NULL);
+				} else {
+					throw new RuntimeException(
+						"Only doubles, points, and item souls for now, not " +
+							arg.getClass()
+					);
+				}
+			}
+		}});
+	}
+
+	private void logPoint(Tag tag, int id, Point2D point) {
+		addRecord(tag);
+		addInt(id);
+		addFloat(point.getX());
+		addFloat(point.getY());
+	}
+
+	private void logRel(int id, int frameId) {
+		addRecord(Tag.REL);
+		addInt(id);
+		addInt(frameId);
+	}
+
+	@Override
+	public void logRelease(final Tool tool, final Block item) {
+		atomic(new Runnable() { @Override public void run() {
+			ToolInfo toolInfo = getInfo(tool);
+			ItemInfo info = getInfo(item);
+			addRecord(Tag.RELEASE);
+			addInt(toolInfo.id);
+			addInt(info.id);
+		}});
+	}
+
+	@Override
+	public void logRemoval(final Item item) {
+		atomic(new Runnable() { @Override public void run() {
+			ItemInfo info = getInfo(item);
+			addRecord(Tag.DESTROY);
+			addInt(info.id);
+			// Gone for good, so don't hang on to it.
+			items.remove(item.getSoul());
+			ids.remove(item.getSoul());
+		}});
+	}
+
+	private void logScalar(Tag tag, int id, double value) {
+		addRecord(tag);
+		addInt(id);
+		addFloat(value);
+	}
+
+	@Override
+	public void logSimTime(long steps, double seconds) {
+		if (simTime != seconds || steps != this.steps) {
+			simTime = seconds;
+			this.steps = steps;
+			addRecord(Tag.TIME_SIM);
+			addDouble(steps);
+			addDouble(seconds);
+		}
+	}
+
+	private void logStart() {
+		atomic(new Runnable() { @Override public void run() {
+			addRecord(Tag.ITEM);
+			addInt(idView);
+			addRecord(Tag.TYPE);
+			addInt(idView);
+			strings.add("view");
+		}});
+	}
+
+	private void logTimeIfNeeded() {
+		if (getTxDepth() == 0 || firstPerTx) {
+			firstPerTx = false;
+			long currentTime = System.currentTimeMillis();
+			if (currentTime != time) {
+				time = currentTime;
+				addTag(Tag.TIME_REAL);
+				addDouble(1e-3 * (currentTime - startTime));
+			}
+		}
+	}
+
+	@Override
+	public void logTool(final Tool tool) {
+		atomic(new Runnable() { @Override public void run() {
+			ToolInfo info = getInfo(tool);
+			Point2D position = tool.getPosition();
+			if (!approx(position, info.tool.getPosition(), EPSILON)) {
+				info.tool.setPosition(position);
+				logPoint(Tag.POS, info.id, position);
+			}
+			if (tool.getMode() != info.tool.getMode()) {
+				info.tool.setMode(tool.getMode());
+				logBoolean(
+					Tag.PRESSED, info.id, tool.getMode() != ToolMode.INACTIVE
+				);
+			}
+		}});
+	}
+
+	@Override
+	public void logToolPresent(Tool tool, boolean toolPresent) {
+		ToolInfo info = getInfo(tool);
+		if (toolPresent != info.present) {
+			info.present = toolPresent;
+			logBoolean(Tag.PRESENT, info.id, toolPresent);
+		}
+	}
+
+	@Override
+	public void logTray(Tray tray) {
+		if (!trayLogged) {
+			// All this assumes that the tray never changes.
+			trayLogged = true;
+			addRecord(Tag.ITEM);
+			addInt(idTray);
+			addRecord(Tag.TYPE);
+			addInt(idTray);
+			strings.add("tray");
+			Point2D pos = tray.getAnchor();
+			if (tray.isFixedToDisplay()) {
+				logRel(idTray, idView);
+				pos = point(pos.getX() - view.getMinX(), pos.getY() - view.getMinY());
+			}
+			logPoint(Tag.POS, idTray, pos);
+		}
+	}
+
+	@Override
+	public void logView(final Rectangle2D view) {
+		if (!view.equals(this.view)) {
+			atomic(new Runnable() { @Override public void run() {
+				Point2D extent = extent(view);
+				if (!extent.equals(extent(BinaryLogger.this.view))) {
+					logPoint(Tag.EXTENT, idView, extent);
+				}
+				Point2D center = center(view);
+				if (!center.equals(center(BinaryLogger.this.view))) {
+					logPoint(Tag.POS, idView, center);
+				}
+				BinaryLogger.this.view.setRect(view);
+			}});
+		}
+	}
+
+	/**
+	 * Packs up the buffered columns and writes them out as a block.
+	 */
+	private void writeBlock() {
+		if (recordCount == 0) {
+			return;
+		}
+		try {
+			// Encode strings first to know the size.
+			List<byte[]> encoded = new ArrayList<byte[]>(strings.size());
+			int stringBytes = 0;
+			for (String string: strings) {
+				byte[] bytes = string.getBytes("UTF-8");
+				encoded.add(bytes);
+				stringBytes += 4 + bytes.length;
+			}
+			int size =
+				5 * 4 + recordCount + 4 * intCount + 4 * floatCount +
+				8 * doubleCount + stringBytes;
+			if (block.length < size) {
+				block = new byte[Math.max(size, 2 * block.length)];
+			}
+			ByteBuffer buffer = ByteBuffer.wrap(block);
+			buffer.putInt(recordCount);
+			buffer.putInt(intCount);
+			buffer.putInt(floatCount);
+			buffer.putInt(doubleCount);
+			buffer.putInt(strings.size());
+			buffer.put(tags, 0, recordCount);
+			buffer.asIntBuffer().put(ints, 0, intCount);
+			buffer.position(buffer.position() + 4 * intCount);
+			buffer.asFloatBuffer().put(floats, 0, floatCount);
+			buffer.position(buffer.position() + 4 * floatCount);
+			buffer.asDoubleBuffer().put(doubles, 0, doubleCount);
+			buffer.position(buffer.position() + 8 * doubleCount);
+			for (byte[] bytes: encoded) {
+				buffer.putInt(bytes.length);
+				buffer.put(bytes);
+			}
+			// Write it out.
+			out.writeInt(size);
+			if (compress) {
+				deflater.reset();
+				deflater.setInput(block, 0, size);
+				deflater.finish();
+				int stored = 0;
+				while (!deflater.finished()) {
+					if (stored == compressed.length) {
+						compressed = Arrays.copyOf(compressed, 2 * compressed.length);
+					}
+					stored += deflater.deflate(
+						compressed, stored, compressed.length - stored
+					);
+				}
+				out.writeInt(stored);
+				out.write(compressed, 0, stored);
+			} else {
+				out.writeInt(size);
+				out.write(block, 0, size);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		// Reset for the next block.
+		recordCount = intCount = floatCount = doubleCount = 0;
+		strings.clear();
+	}
+
+}
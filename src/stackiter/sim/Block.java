@@ -33,6 +33,17 @@ public class Block implements Item {
 
 	private Color color;
 
+	/**
+	 * Half width and height, kept alongside the shape def for fast math.
+	 */
+	private float extentX = 1, extentY = 1;
+
+	/**
+	 * Half width and height of the shape in the world, which can differ in
+	 * the last bits from the def. Measured once when added.
+	 */
+	private double bodyExtentX, bodyExtentY;
+
 	private boolean debugPaint;
 
 	private List<Block> fixations = new ArrayList<Block>();
@@ -55,6 +66,11 @@ public class Block implements Item {
 
 	private PolygonDef shapeDef;
 
+	/**
+	 * Just for copies, like linear velocity.
+	 */
+	private boolean sleeping;
+
 	private Soul soul = new Soul();
 
 	public Block() {
@@ -91,8 +107,11 @@ public class Block implements Item {
 	public void addTo(World world) {
 		setAlive(true);
 		body = world.getDynamicsWorld().createBody(bodyDef);
+		// For finding blocks from broadphase queries.
+		body.setUserData(this);
 		body.createShape(shapeDef);
 		body.setMassFromShapes();
+		measureBodyExtent();
 		for (Block fixed: fixations) {
 			addFixConstraints(fixed);
 		}
@@ -118,6 +137,7 @@ public class Block implements Item {
 		copied.color = color;
 		copied.linearAcceleration.setLocation(getLinearAcceleration());
 		copied.linearVelocity.setLocation(getLinearVelocity());
+		copied.sleeping = isSleeping();
 		copied.soul = soul;
 		copied.setAngle(getAngle());
 		copied.setPosition(getPosition());
@@ -125,10 +145,50 @@ public class Block implements Item {
 		return copied;
 	}
 
+	/**
+	 * Uses plain math on the body transform rather than building shapes.
+	 */
 	@Override
 	public boolean contains(Point2D point) {
-		Shape shape = transformedShape();
-		return shape.contains(point);
+		double cos, sin, x, y;
+		if (body == null) {
+			cos = Math.cos(bodyDef.angle);
+			sin = Math.sin(bodyDef.angle);
+			x = bodyDef.position.x;
+			y = bodyDef.position.y;
+		} else {
+			XForm xForm = body.getMemberXForm();
+			cos = xForm.R.col1.x;
+			sin = xForm.R.col1.y;
+			x = xForm.position.x;
+			y = xForm.position.y;
+		}
+		// Rotate the offset into the block frame.
+		double dX = point.getX() - x;
+		double dY = point.getY() - y;
+		double localX = cos * dX + sin * dY;
+		double localY = -sin * dX + cos * dY;
+		return Math.abs(localX) <= extentX && Math.abs(localY) <= extentY;
+	}
+
+	/**
+	 * Like clone, but from values copied into a table.
+	 */
+	static Block fromTable(ItemTable table, int index) {
+		Point2D point = point();
+		Block copied = new Block();
+		copied.alive = table.isAlive(index);
+		copied.angularAcceleration = table.getAngularAcceleration(index);
+		copied.angularVelocity = table.getAngularVelocity(index);
+		copied.color = table.getColor(index);
+		table.getLinearAcceleration(index, copied.linearAcceleration);
+		table.getLinearVelocity(index, copied.linearVelocity);
+		copied.sleeping = table.isSleeping(index);
+		copied.soul = table.getSoul(index);
+		copied.setAngle(table.getAngle(index));
+		copied.setPosition(table.getPosition(index, point));
+		copied.setExtent(table.getExtent(index, point));
+		return copied;
 	}
 
 	/**
@@ -139,7 +199,7 @@ public class Block implements Item {
 		if (body == null) {
 			return bodyDef.angle / Math.PI;
 		} else {
-			XForm xForm = body.getXForm();
+			XForm xForm = body.getMemberXForm();
 			double angle = -Math.signum(xForm.R.col2.x) * Math.acos(xForm.R.col1.x);
 			return angle / Math.PI;
 		}
@@ -164,9 +224,15 @@ public class Block implements Item {
 
 	@Override
 	public Rectangle2D getBounds() {
-		Point2D extent = getExtent();
-		Rectangle2D rectangle = new Rectangle2D.Double(-extent.getX(), -extent.getY(), 2 * extent.getX(), 2 * extent.getY());
-		return rectangle;
+		return getBounds(rectangle());
+	}
+
+	@Override
+	public Rectangle2D getBounds(Rectangle2D bounds) {
+		double x = body == null ? extentX : bodyExtentX;
+		double y = body == null ? extentY : bodyExtentY;
+		bounds.setRect(-x, -y, 2 * x, 2 * y);
+		return bounds;
 	}
 
 	@Override
@@ -176,31 +242,33 @@ public class Block implements Item {
 
 	@Override
 	public Point2D getExtent() {
-		// TODO Just store our own shape info instead of this dual mess.
-		double width;
-		double height;
+		return getExtent(point());
+	}
+
+	@Override
+	public Point2D getExtent(Point2D extent) {
 		if (body == null) {
-			double minX = Double.POSITIVE_INFINITY;
-			double minY = Double.POSITIVE_INFINITY;
-			double maxX = Double.NEGATIVE_INFINITY;
-			double maxY = Double.NEGATIVE_INFINITY;
-			for (Vec2 point: shapeDef.getVertexArray()) {
-				minX = Math.min(point.x, minX);
-				minY = Math.min(point.y, minY);
-				maxX = Math.max(point.x, maxX);
-				maxY = Math.max(point.y, maxY);
-			}
-			width = maxX - minX;
-			height = maxY - minY;
+			extent.setLocation(extentX, extentY);
 		} else {
-			XForm xForm = new XForm();
-			xForm.setIdentity();
-			AABB aabb = new AABB();
-			body.getShapeList().computeAABB(aabb, xForm);
-			width = aabb.upperBound.x - aabb.lowerBound.x;
-			height = aabb.upperBound.y - aabb.lowerBound.y;
+			extent.setLocation(bodyExtentX, bodyExtentY);
+		}
+		return extent;
+	}
+
+	/**
+	 * The highest world y of any corner, without building shapes.
+	 */
+	public double getMaxY() {
+		if (body == null) {
+			return bodyDef.position.y +
+				Math.abs(Math.sin(bodyDef.angle)) * extentX +
+				Math.abs(Math.cos(bodyDef.angle)) * extentY;
+		} else {
+			XForm xForm = body.getMemberXForm();
+			return xForm.position.y +
+				Math.abs(xForm.R.col1.y) * extentX +
+				Math.abs(xForm.R.col2.y) * extentY;
 		}
-		return point(width / 2, height / 2);
 	}
 
 	/**
@@ -226,22 +294,37 @@ public class Block implements Item {
 
 	@Override
 	public Point2D getLinearVelocity() {
+		return getLinearVelocity(point());
+	}
+
+	@Override
+	public Point2D getLinearVelocity(Point2D linearVelocity) {
 		if (body == null) {
-			return linearVelocity;
+			linearVelocity.setLocation(this.linearVelocity);
 		} else {
-			return scaled(World.TIME_SCALE, point(body.m_linearVelocity.x, body.m_linearVelocity.y));
+			Vec2 velocity = body.m_linearVelocity;
+			linearVelocity.setLocation(
+				World.TIME_SCALE * velocity.x, World.TIME_SCALE * velocity.y
+			);
 		}
+		return linearVelocity;
 	}
 
 	@Override
 	public Point2D getPosition() {
-		Vec2 position;
+		return getPosition(point());
+	}
+
+	@Override
+	public Point2D getPosition(Point2D position) {
+		Vec2 vec;
 		if (body == null) {
-			position = bodyDef.position;
+			vec = bodyDef.position;
 		} else {
-			position = body.getXForm().position;
+			vec = body.getMemberXForm().position;
 		}
-		return point(position.x, position.y);
+		position.setLocation(vec.x, vec.y);
+		return position;
 	}
 
 	@Override
@@ -254,7 +337,8 @@ public class Block implements Item {
 		return getTransform(null);
 	}
 
-	private AffineTransform getTransform(AffineTransform transform) {
+	@Override
+	public AffineTransform getTransform(AffineTransform transform) {
 		if (transform == null) {
 			transform = new AffineTransform();
 		} else {
@@ -321,6 +405,11 @@ public class Block implements Item {
 		return alive;
 	}
 
+	@Override
+	public boolean isSleeping() {
+		return body == null ? sleeping : body.isSleeping();
+	}
+
 	public boolean isGrasped() {
 		// TODO If we support other kinds of constraints (that 'affix' stuff), then this won't be good enough.
 		return body.getJointList() != null;
@@ -330,11 +419,20 @@ public class Block implements Item {
 		if (body == null) {
 			return bodyDef.angle != 0;
 		} else {
-			XForm xForm = body.getXForm();
+			XForm xForm = body.getMemberXForm();
 			return !(xForm.R.col1.y == 0 && xForm.R.col2.x == 0);
 		}
 	}
 
+	private void measureBodyExtent() {
+		XForm xForm = new XForm();
+		xForm.setIdentity();
+		AABB aabb = new AABB();
+		body.getShapeList().computeAABB(aabb, xForm);
+		bodyExtentX = (aabb.upperBound.x - aabb.lowerBound.x) / 2;
+		bodyExtentY = (aabb.upperBound.y - aabb.lowerBound.y) / 2;
+	}
+
 	/**
 	 * Only meaningful if previously grasped?
 	 */
@@ -459,7 +557,9 @@ public class Block implements Item {
 	}
 
 	public void setExtent(double extentX, double extentY) {
-		shapeDef.setAsBox((float)extentX, (float)extentY);
+		this.extentX = (float)extentX;
+		this.extentY = (float)extentY;
+		shapeDef.setAsBox(this.extentX, this.extentY);
 	}
 
 	@Override
@@ -511,6 +611,29 @@ public class Block implements Item {
 		bodyDef.angle = (float)(rotation * Math.PI);
 	}
 
+	/**
+	 * Converts a point in the block frame to the world frame, without
+	 * building transforms. Gives the same values as applying getTransform.
+	 */
+	public Point2D toWorld(Point2D blockPoint) {
+		double x = blockPoint.getX();
+		double y = blockPoint.getY();
+		if (body == null) {
+			double cos = Math.cos(bodyDef.angle);
+			double sin = Math.sin(bodyDef.angle);
+			return point(
+				cos * x - sin * y + bodyDef.position.x,
+				sin * x + cos * y + bodyDef.position.y
+			);
+		} else {
+			XForm xForm = body.getMemberXForm();
+			return point(
+				xForm.R.col1.x * x + xForm.R.col2.x * y + xForm.position.x,
+				xForm.R.col1.y * x + xForm.R.col2.y * y + xForm.position.y
+			);
+		}
+	}
+
 	public Shape transformedShape() {
 		return transformedShape(new AffineTransform(), 0);
 	}
@@ -539,8 +662,16 @@ public class Block implements Item {
 			transform.translate(bodyDef.position.x, bodyDef.position.y);
 			transform.rotate(bodyDef.angle);
 		} else {
+			XForm xForm = body.getMemberXForm();
+			if (transform.isIdentity()) {
+				// The common case. Same result, but no allocation.
+				transform.setTransform(
+					xForm.R.col1.x, xForm.R.col1.y, xForm.R.col2.x, xForm.R.col2.y,
+					xForm.position.x, xForm.position.y
+				);
+				return;
+			}
 			// Position.
-			XForm xForm = body.getXForm();
 			transform.translate(xForm.position.x, xForm.position.y);
 			// Rotation.
 			transform.concatenate(new AffineTransform(new double[] {xForm.R.col1.x, xForm.R.col1.y, xForm.R.col2.x, xForm.R.col2.y}));
@@ -0,0 +1,105 @@
+package stackiter.sim;
+
+import java.io.*;
+import java.util.zip.*;
+
+/**
+ * Writes gzip data as a series of independent members, each holding a fixed
+ * amount of uncompressed data. Standard gzip tools read the result as one
+ * stream, but readers that know where a member starts can begin decompressing
+ * there instead of at the start of the file.
+ */
+public class BlockGzipOutputStream extends OutputStream {
+
+	public static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+
+	private int blockSize;
+
+	/**
+	 * Uncompressed bytes in the current member.
+	 */
+	private int count;
+
+	private GZIPOutputStream member;
+
+	private OutputStream out;
+
+	/**
+	 * Whether any member has been started.
+	 */
+	private boolean started;
+
+	public BlockGzipOutputStream(OutputStream out) {
+		this(out, DEFAULT_BLOCK_SIZE);
+	}
+
+	public BlockGzipOutputStream(OutputStream out, int blockSize) {
+		this.out = out;
+		this.blockSize = blockSize;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (!started) {
+			// Always give at least one member, so gzip tools don't complain.
+			startMember();
+		}
+		finishMember();
+		out.close();
+	}
+
+	private void finishMember() throws IOException {
+		if (member != null) {
+			member.finish();
+			member = null;
+			count = 0;
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (member != null) {
+			member.flush();
+		}
+		out.flush();
+	}
+
+	private void startMember() throws IOException {
+		member = new GZIPOutputStream(new FilterOutputStream(out) {
+			@Override
+			public void close() {
+				// The members share the underlying stream.
+			}
+			@Override
+			public void write(byte[] bytes, int offset, int length)
+				throws IOException
+			{
+				out.write(bytes, offset, length);
+			}
+		}, 1 << 16);
+		started = true;
+	}
+
+	@Override
+	public void write(byte[] bytes, int offset, int length) throws IOException {
+		while (length > 0) {
+			if (member == null) {
+				startMember();
+			}
+			int chunk = Math.min(length, blockSize - count);
+			member.write(bytes, offset, chunk);
+			count += chunk;
+			offset += chunk;
+			length -= chunk;
+			if (count == blockSize) {
+				finishMember();
+			}
+		}
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] {(byte)b}, 0, 1);
+	}
+
+}
@@ -19,6 +19,11 @@ public class EpisodicLogger extends AtomicLogger {
 
 		boolean hasAdds;
 
+		/**
+		 * Whether this state already went out, so it doesn't go again.
+		 */
+		boolean logged;
+
 		List<Meta> metas = new ArrayList<Meta>();
 
 		@Override
@@ -34,6 +39,7 @@ public class EpisodicLogger extends AtomicLogger {
 			// TODO the items.
 			result.episodeStart = false;
 			result.hasAdds = false;
+			result.logged = false;
 			result.metas = new ArrayList<Meta>();
 			return result;
 		}
@@ -57,6 +63,10 @@ public class EpisodicLogger extends AtomicLogger {
 
 	@Override
 	public void close() {
+		if (state.cleared) {
+			// A clear in the last step would otherwise never go out.
+			doLog(state);
+		}
 		logger.close();
 	}
 
@@ -73,20 +83,23 @@ public class EpisodicLogger extends AtomicLogger {
 		}
 		// Items. First removals, then new/updated items.
 		if (loggedState != null) {
-			for (Item logged: loggedState.items.values()) {
-				if (!state.items.containsKey(logged.getSoul())) {
-					logger.logRemoval(logged);
+			ItemTable logged = loggedState.items;
+			for (int i = 0; i < logged.size(); i++) {
+				if (!state.items.containsKey(logged.getSoul(i))) {
+					logger.logRemoval(logged.getItem(i));
 				}
 			}
 		}
-		for (Item item: state.items.values()) {
-			logger.logItem(item);
+		for (int i = 0; i < state.items.size(); i++) {
+			logger.logItem(state.items.getItem(i));
 		}
 		// Metas all need to go out.
 		for (Meta meta: state.metas) {
 			logger.logMeta(meta);
 		}
 		// Remember exactly what we logged for more reliability.
+		// It's just a snapshot, so this is cheap.
+		state.logged = true;
 		loggedState = state.clone();
 	}
 
@@ -99,8 +112,10 @@ public class EpisodicLogger extends AtomicLogger {
 	public void logClear() {
 		// Actual removal is logged separately.
 		state.cleared = true;
-		// We do need to log the state before the clear.
-		doLog(oldState);
+		// We do need to log the state before the clear, if not already.
+		if (!oldState.logged) {
+			doLog(oldState);
+		}
 	}
 
 	@Override
@@ -124,7 +139,8 @@ public class EpisodicLogger extends AtomicLogger {
 		if (!state.items.containsKey(item.getSoul())) {
 			state.hasAdds = true;
 		}
-		state.items.put(item.getSoul(), item.clone());
+		// Just copies values into the table, rather than cloning.
+		state.items.put(item);
 	}
 
 	@Override
@@ -151,7 +167,7 @@ public class EpisodicLogger extends AtomicLogger {
 				// TODO Do we need to wait for blocks to be added and moving?
 				doLog(state);
 			}
-			if (oldState != null && (
+			if (oldState != null && !oldState.logged && (
 				oldState.episodeStart ||
 				// Assume metas matter for now.
 				// I need that for options.
@@ -0,0 +1,246 @@
+package stackiter.sim;
+
+import java.awt.*;
+import java.awt.image.*;
+import java.io.*;
+import java.util.concurrent.*;
+import java.util.zip.*;
+
+import javax.imageio.*;
+
+/**
+ * Renders and encodes saved frames on a pool of threads, then writes them in
+ * order from one more thread, so the sim only pays for taking snapshots.
+ * Only so many frames wait at once, after which adding more blocks until the
+ * oldest gets written.
+ *
+ * Frames can go out as separate PNG files, as PNG entries in one zip
+ * archive, or as one MJPEG stream, which is just JPEG images back to back.
+ * Tools like ffmpeg read that directly.
+ *
+ * Like BatchDisplay, kept apart so headless runs without frames never load
+ * AWT imaging.
+ */
+class FrameWriter {
+
+	public enum Format {
+
+		MJPEG("jpg", "frames.mjpeg"),
+
+		PNG("png", null),
+
+		ZIP("png", "frames.zip");
+
+		/**
+		 * The single output file name, if not separate files.
+		 */
+		public final String fileName;
+
+		public final String imageFormat;
+
+		private Format(String imageFormat, String fileName) {
+			this.imageFormat = imageFormat;
+			this.fileName = fileName;
+		}
+
+	}
+
+	/**
+	 * Paints a frame from some snapshot of state. Called on a pool thread,
+	 * so it mustn't touch the live world.
+	 */
+	public interface Painter {
+		void paint(Graphics2D graphics);
+	}
+
+	/**
+	 * Tells the writer thread to finish.
+	 */
+	private static final Future<byte[]> END =
+		new FutureTask<byte[]>(new Callable<byte[]>() {
+			@Override
+			public byte[] call() {
+				return null;
+			}
+		});
+
+	private String dir;
+
+	/**
+	 * The first failure from the writer thread, if any.
+	 */
+	private volatile Throwable failure;
+
+	private Format format;
+
+	private int frameIndex;
+
+	private int height;
+
+	private OutputStream out;
+
+	private ExecutorService pool;
+
+	private BlockingQueue<Future<byte[]>> queue;
+
+	private int width;
+
+	private Thread writer;
+
+	public FrameWriter(
+		String dir, Format format, int width, int height, int threadCount
+	) {
+		this.dir = dir;
+		this.format = format;
+		this.width = width;
+		this.height = height;
+		try {
+			if (format == Format.ZIP) {
+				ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(
+					new FileOutputStream(new File(dir, format.fileName)), 1 << 16
+				));
+				// PNGs are already compressed.
+				zip.setLevel(Deflater.NO_COMPRESSION);
+				out = zip;
+			} else if (format.fileName != null) {
+				out = new BufferedOutputStream(
+					new FileOutputStream(new File(dir, format.fileName)), 1 << 16
+				);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		pool = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "FrameRenderer");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		queue = new ArrayBlockingQueue<Future<byte[]>>(2 * threadCount);
+		writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				write();
+			}
+		}, "FrameWriter");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Queues up a frame for painting and writing, waiting if too many are
+	 * already queued.
+	 */
+	public void add(final Painter painter) {
+		checkFailure();
+		Future<byte[]> frame = pool.submit(new Callable<byte[]>() {
+			@Override
+			public byte[] call() throws IOException {
+				return render(painter);
+			}
+		});
+		try {
+			queue.put(frame);
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void checkFailure() {
+		if (failure != null) {
+			throw new RuntimeException(failure);
+		}
+	}
+
+	/**
+	 * Writes out all queued frames and closes any output file.
+	 */
+	public void close() {
+		try {
+			queue.put(END);
+			writer.join();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} finally {
+			pool.shutdown();
+		}
+		checkFailure();
+	}
+
+	private byte[] render(Painter painter) throws IOException {
+		BufferedImage image =
+			new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D graphics = image.createGraphics();
+		try {
+			graphics.setBackground(Color.WHITE);
+			graphics.clearRect(0, 0, width, height);
+			painter.paint(graphics);
+		} finally {
+			graphics.dispose();
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 14);
+		ImageIO.write(image, format.imageFormat, bytes);
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Runs on the writer thread.
+	 */
+	private void write() {
+		boolean ended = false;
+		try {
+			try {
+				while (!ended) {
+					Future<byte[]> frame = queue.take();
+					if (frame == END) {
+						ended = true;
+					} else {
+						writeFrame(frame.get());
+					}
+				}
+			} finally {
+				if (out != null) {
+					out.close();
+				}
+			}
+		} catch (Throwable e) {
+			failure = e;
+			// Keep taking frames, so adding never blocks forever.
+			while (!ended) {
+				try {
+					ended = queue.take() == END;
+				} catch (InterruptedException interrupted) {
+					break;
+				}
+			}
+		}
+	}
+
+	private void writeFrame(byte[] bytes) throws IOException {
+		String name =
+			String.format("frame%05d.%s", frameIndex, format.imageFormat);
+		switch (format) {
+		case MJPEG:
+			out.write(bytes);
+			break;
+		case PNG:
+			OutputStream file = new FileOutputStream(new File(dir, name));
+			try {
+				file.write(bytes);
+			} finally {
+				file.close();
+			}
+			break;
+		case ZIP:
+			ZipOutputStream zip = (ZipOutputStream)out;
+			zip.putNextEntry(new ZipEntry(name));
+			zip.write(bytes);
+			zip.closeEntry();
+			break;
+		}
+		frameIndex++;
+	}
+
+}
@@ -0,0 +1,87 @@
+package stackiter.sim;
+
+import java.util.*;
+
+/**
+ * Assigns increasing int ids to souls, with constant time lookup both ways.
+ * Ids of removed souls never get reused, so stale ids just find nothing.
+ *
+ * Loggers use these for the ids in logs, and controllers can share them to
+ * refer to items by those same ids.
+ */
+public class IdRegistry {
+
+	private Map<Soul, Integer> ids = new HashMap<Soul, Integer>();
+
+	private int nextId;
+
+	private Map<Integer, Soul> souls = new HashMap<Integer, Soul>();
+
+	public IdRegistry() {
+		this(0);
+	}
+
+	/**
+	 * Lower ids can be kept for fixed things, as loggers do for the world,
+	 * view, and tray.
+	 */
+	public IdRegistry(int firstId) {
+		nextId = firstId;
+	}
+
+	/**
+	 * Assigns the next id to a soul not yet registered.
+	 */
+	public int add(Soul soul) {
+		if (ids.containsKey(soul)) {
+			throw new IllegalArgumentException(soul + " already has an id.");
+		}
+		int id = nextId++;
+		ids.put(soul, id);
+		souls.put(id, soul);
+		return id;
+	}
+
+	/**
+	 * The id of the soul, or -1 if none.
+	 */
+	public int getId(Soul soul) {
+		Integer id = ids.get(soul);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * The id of the soul, assigning the next if new.
+	 */
+	public int getOrAdd(Soul soul) {
+		Integer id = ids.get(soul);
+		return id == null ? add(soul) : id;
+	}
+
+	/**
+	 * The soul with the id, or null if none or removed.
+	 */
+	public Soul getSoul(int id) {
+		return souls.get(id);
+	}
+
+	/**
+	 * Frees the soul, returning its old id or -1 if it had none.
+	 */
+	public int remove(Soul soul) {
+		Integer id = ids.remove(soul);
+		if (id == null) {
+			return -1;
+		}
+		souls.remove(id);
+		return id;
+	}
+
+	/**
+	 * The count of souls currently registered.
+	 */
+	public int size() {
+		return ids.size();
+	}
+
+}
@@ -26,26 +26,53 @@ public interface Item extends Cloneable {
 	 */
 	public Rectangle2D getBounds();
 
+	/**
+	 * Fills in the given rectangle, rather than allocating a new one.
+	 * Returns the same rectangle.
+	 */
+	public Rectangle2D getBounds(Rectangle2D bounds);
+
 	public Color getColor();
 
 	/**
 	 * TODO Extent can be convenient, but it assumes a geometrically centered
 	 * TODO position. Reconsider this.
 	 *
-	 * TODO Change all these getters to receiving a point to fill????
+	 * See also the variants below that fill in a given point. Those are
+	 * better for frequent calls, since they needn't allocate.
 	 */
 	public Point2D getExtent();
 
+	/**
+	 * Fills in the given point and returns it.
+	 */
+	public Point2D getExtent(Point2D extent);
+
 	public Point2D getLinearAcceleration();
 
 	public Point2D getLinearJerk();
 
 	public Point2D getLinearVelocity();
 
+	/**
+	 * Fills in the given point and returns it.
+	 */
+	public Point2D getLinearVelocity(Point2D linearVelocity);
+
 	public Point2D getPosition();
 
+	/**
+	 * Fills in the given point and returns it.
+	 */
+	public Point2D getPosition(Point2D position);
+
 	public AffineTransform getTransform();
 
+	/**
+	 * Sets the given transform and returns it.
+	 */
+	public AffineTransform getTransform(AffineTransform transform);
+
 	/**
 	 * A way of tracking object identity across copies (and time). When exposing
 	 * world state, you aren't guaranteed to get original objects, but the soul
@@ -64,6 +91,13 @@ public interface Item extends Cloneable {
 	 */
 	public boolean isAlive();
 
+	/**
+	 * Whether the physics engine has the item at rest. Sleeping items don't
+	 * move until something wakes them. Copies keep the value from when they
+	 * were made.
+	 */
+	public boolean isSleeping();
+
 	public void paint(Graphics2D graphics);
 
 	public void setAlive(boolean alive);
@@ -0,0 +1,396 @@
+package stackiter.sim;
+
+import java.awt.*;
+import java.awt.geom.*;
+import java.util.*;
+
+/**
+ * Item values in flat arrays, one slot per item in the order added, keyed by
+ * soul. Snapshots take constant time. They share arrays with the original
+ * until either side changes, and only then does the changing side copy.
+ *
+ * It's also a map from souls to items, so it can stand in for maps of item
+ * clones. Items come back out as detached blocks, made from the arrays on
+ * first access just as Block.clone would, and kept for the life of the
+ * snapshot.
+ */
+public class ItemTable extends AbstractMap<Soul, Item> implements Cloneable {
+
+	private boolean[] alive;
+
+	private double[] angles;
+
+	private double[] angularAccelerations;
+
+	private double[] angularVelocities;
+
+	/**
+	 * Items made on demand by slot. These are never shared between snapshots.
+	 */
+	private Block[] blocks;
+
+	private Color[] colors;
+
+	/**
+	 * Pairs of x and y, as for the other point arrays.
+	 */
+	private double[] extents;
+
+	private Map<Soul, Integer> indexes;
+
+	private double[] linearAccelerations;
+
+	private double[] linearVelocities;
+
+	private double[] positions;
+
+	private int size;
+
+	private boolean[] sleeping;
+
+	private Soul[] souls;
+
+	/**
+	 * Whether souls and indexes are shared with some snapshot.
+	 */
+	private boolean structureShared;
+
+	private Point2D temp = new Point2D.Double();
+
+	/**
+	 * Whether the value arrays are shared with some snapshot.
+	 */
+	private boolean valuesShared;
+
+	public ItemTable() {
+		this(8);
+	}
+
+	public ItemTable(int capacity) {
+		capacity = Math.max(capacity, 1);
+		alive = new boolean[capacity];
+		angles = new double[capacity];
+		angularAccelerations = new double[capacity];
+		angularVelocities = new double[capacity];
+		colors = new Color[capacity];
+		extents = new double[2 * capacity];
+		indexes = new HashMap<Soul, Integer>();
+		linearAccelerations = new double[2 * capacity];
+		linearVelocities = new double[2 * capacity];
+		positions = new double[2 * capacity];
+		sleeping = new boolean[capacity];
+		souls = new Soul[capacity];
+	}
+
+	@Override
+	public void clear() {
+		if (structureShared) {
+			indexes = new HashMap<Soul, Integer>();
+			souls = new Soul[souls.length];
+			structureShared = false;
+		} else {
+			indexes.clear();
+			Arrays.fill(souls, 0, size, null);
+		}
+		// Values get overwritten on add, so no need to copy them here.
+		blocks = null;
+		size = 0;
+	}
+
+	@Override
+	public boolean containsKey(Object soul) {
+		return indexes.containsKey(soul);
+	}
+
+	@Override
+	public Set<Entry<Soul, Item>> entrySet() {
+		return new AbstractSet<Entry<Soul, Item>>() {
+			@Override
+			public Iterator<Entry<Soul, Item>> iterator() {
+				return new Iterator<Entry<Soul, Item>>() {
+					int index;
+					@Override
+					public boolean hasNext() {
+						return index < size;
+					}
+					@Override
+					public Entry<Soul, Item> next() {
+						if (!hasNext()) {
+							throw new NoSuchElementException();
+						}
+						Item item = getItem(index);
+						index++;
+						return new SimpleImmutableEntry<Soul, Item>(
+							item.getSoul(), item
+						);
+					}
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	@Override
+	public Item get(Object soul) {
+		Integer index = indexes.get(soul);
+		return index == null ? null : getItem(index);
+	}
+
+	public double getAngle(int index) {
+		return angles[index];
+	}
+
+	public double getAngularAcceleration(int index) {
+		return angularAccelerations[index];
+	}
+
+	public double getAngularVelocity(int index) {
+		return angularVelocities[index];
+	}
+
+	public Color getColor(int index) {
+		return colors[index];
+	}
+
+	public Point2D getExtent(int index, Point2D extent) {
+		extent.setLocation(extents[2 * index], extents[2 * index + 1]);
+		return extent;
+	}
+
+	/**
+	 * The slot of the item with the given soul, or -1 if none.
+	 */
+	public int getIndex(Soul soul) {
+		Integer index = indexes.get(soul);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * A detached block with the values at the given slot.
+	 * The same block comes back until the slot changes.
+	 */
+	public Item getItem(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index);
+		}
+		if (blocks == null || blocks.length < size) {
+			blocks = blocks == null ?
+				new Block[souls.length] : Arrays.copyOf(blocks, souls.length);
+		}
+		Block block = blocks[index];
+		if (block == null) {
+			block = blocks[index] = Block.fromTable(this, index);
+		}
+		return block;
+	}
+
+	public Point2D getLinearAcceleration(int index, Point2D acceleration) {
+		acceleration.setLocation(
+			linearAccelerations[2 * index], linearAccelerations[2 * index + 1]
+		);
+		return acceleration;
+	}
+
+	public Point2D getLinearVelocity(int index, Point2D velocity) {
+		velocity.setLocation(
+			linearVelocities[2 * index], linearVelocities[2 * index + 1]
+		);
+		return velocity;
+	}
+
+	public Point2D getPosition(int index, Point2D position) {
+		position.setLocation(positions[2 * index], positions[2 * index + 1]);
+		return position;
+	}
+
+	public Soul getSoul(int index) {
+		return souls[index];
+	}
+
+	private void grow() {
+		int capacity = 2 * souls.length;
+		alive = Arrays.copyOf(alive, capacity);
+		angles = Arrays.copyOf(angles, capacity);
+		angularAccelerations = Arrays.copyOf(angularAccelerations, capacity);
+		angularVelocities = Arrays.copyOf(angularVelocities, capacity);
+		colors = Arrays.copyOf(colors, capacity);
+		extents = Arrays.copyOf(extents, 2 * capacity);
+		linearAccelerations = Arrays.copyOf(linearAccelerations, 2 * capacity);
+		linearVelocities = Arrays.copyOf(linearVelocities, 2 * capacity);
+		positions = Arrays.copyOf(positions, 2 * capacity);
+		sleeping = Arrays.copyOf(sleeping, capacity);
+		souls = Arrays.copyOf(souls, capacity);
+		// Fresh arrays all around now.
+		valuesShared = false;
+		if (structureShared) {
+			indexes = new HashMap<Soul, Integer>(indexes);
+			structureShared = false;
+		}
+	}
+
+	public boolean isAlive(int index) {
+		return alive[index];
+	}
+
+	public boolean isSleeping(int index) {
+		return sleeping[index];
+	}
+
+	/**
+	 * Copies in the current values of the item, adding it at the end if it's
+	 * new. Returns its slot.
+	 */
+	public int put(Item item) {
+		Soul soul = item.getSoul();
+		Integer existing = indexes.get(soul);
+		int index;
+		if (existing == null) {
+			if (size == souls.length) {
+				grow();
+			}
+			unshareStructure();
+			index = size++;
+			souls[index] = soul;
+			indexes.put(soul, index);
+		} else {
+			index = existing;
+		}
+		unshareValues();
+		// The same values Block.clone copies.
+		alive[index] = item.isAlive();
+		angles[index] = item.getAngle();
+		angularAccelerations[index] = item.getAngularAcceleration();
+		angularVelocities[index] = item.getAngularVelocity();
+		colors[index] = item.getColor();
+		setPoint(extents, index, item.getExtent(temp));
+		setPoint(linearAccelerations, index, item.getLinearAcceleration());
+		setPoint(linearVelocities, index, item.getLinearVelocity(temp));
+		setPoint(positions, index, item.getPosition(temp));
+		sleeping[index] = item.isSleeping();
+		if (blocks != null && index < blocks.length) {
+			blocks[index] = null;
+		}
+		return index;
+	}
+
+	/**
+	 * The soul must belong to the item.
+	 */
+	@Override
+	public Item put(Soul soul, Item item) {
+		if (soul != item.getSoul()) {
+			throw new IllegalArgumentException("Soul doesn't match item.");
+		}
+		Item old = get(soul);
+		put(item);
+		return old;
+	}
+
+	@Override
+	public Item remove(Object soul) {
+		Integer existing = indexes.get(soul);
+		if (existing == null) {
+			return null;
+		}
+		int index = existing;
+		Item old = getItem(index);
+		unshareStructure();
+		unshareValues();
+		// Shift the rest down to keep add order. Removals are rare.
+		int count = size - index - 1;
+		System.arraycopy(alive, index + 1, alive, index, count);
+		System.arraycopy(angles, index + 1, angles, index, count);
+		System.arraycopy(
+			angularAccelerations, index + 1, angularAccelerations, index, count
+		);
+		System.arraycopy(
+			angularVelocities, index + 1, angularVelocities, index, count
+		);
+		System.arraycopy(blocks, index + 1, blocks, index, count);
+		System.arraycopy(colors, index + 1, colors, index, count);
+		System.arraycopy(
+			extents, 2 * (index + 1), extents, 2 * index, 2 * count
+		);
+		System.arraycopy(
+			linearAccelerations, 2 * (index + 1),
+			linearAccelerations, 2 * index, 2 * count
+		);
+		System.arraycopy(
+			linearVelocities, 2 * (index + 1),
+			linearVelocities, 2 * index, 2 * count
+		);
+		System.arraycopy(
+			positions, 2 * (index + 1), positions, 2 * index, 2 * count
+		);
+		System.arraycopy(sleeping, index + 1, sleeping, index, count);
+		System.arraycopy(souls, index + 1, souls, index, count);
+		size--;
+		blocks[size] = null;
+		colors[size] = null;
+		souls[size] = null;
+		indexes.remove(soul);
+		for (int i = index; i < size; i++) {
+			indexes.put(souls[i], i);
+		}
+		return old;
+	}
+
+	private static void setPoint(double[] points, int index, Point2D point) {
+		points[2 * index] = point.getX();
+		points[2 * index + 1] = point.getY();
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * A copy of the table in constant time. Arrays are shared until one side
+	 * or the other changes.
+	 */
+	public ItemTable snapshot() {
+		try {
+			ItemTable result = (ItemTable)super.clone();
+			result.blocks = null;
+			result.temp = new Point2D.Double();
+			result.structureShared = result.valuesShared = true;
+			structureShared = valuesShared = true;
+			return result;
+		} catch (CloneNotSupportedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void unshareStructure() {
+		if (structureShared) {
+			indexes = new HashMap<Soul, Integer>(indexes);
+			souls = souls.clone();
+			structureShared = false;
+		}
+	}
+
+	private void unshareValues() {
+		if (valuesShared) {
+			alive = alive.clone();
+			angles = angles.clone();
+			angularAccelerations = angularAccelerations.clone();
+			angularVelocities = angularVelocities.clone();
+			colors = colors.clone();
+			extents = extents.clone();
+			linearAccelerations = linearAccelerations.clone();
+			linearVelocities = linearVelocities.clone();
+			positions = positions.clone();
+			sleeping = sleeping.clone();
+			valuesShared = false;
+		}
+	}
+
+}
@@ -0,0 +1,80 @@
+package stackiter.sim;
+
+import java.awt.geom.*;
+
+/**
+ * Logs nothing at all. Useful for timing the sim itself.
+ */
+public class NullLogger extends AtomicLogger {
+
+	@Override
+	public void close() {
+		// Nothing to close.
+	}
+
+	@Override
+	public void flush() {
+		// Nothing to flush.
+	}
+
+	@Override
+	public void logClear() {
+		// Ignore.
+	}
+
+	@Override
+	public void logDisplaySize(Point2D size) {
+		// Ignore.
+	}
+
+	@Override
+	public void logGrasp(Tool tool, Block item, Point2D pointRelItem) {
+		// Ignore.
+	}
+
+	@Override
+	public void logItem(Item item) {
+		// Ignore.
+	}
+
+	@Override
+	public void logMeta(Meta meta) {
+		// Ignore.
+	}
+
+	@Override
+	public void logRelease(Tool tool, Block item) {
+		// Ignore.
+	}
+
+	@Override
+	public void logRemoval(Item item) {
+		// Ignore.
+	}
+
+	@Override
+	public void logSimTime(long steps, double seconds) {
+		// Ignore.
+	}
+
+	@Override
+	public void logTool(Tool tool) {
+		// Ignore.
+	}
+
+	@Override
+	public void logToolPresent(Tool tool, boolean toolPresent) {
+		// Ignore.
+	}
+
+	@Override
+	public void logTray(Tray tray) {
+		// Ignore.
+	}
+
+	@Override
+	public void logView(Rectangle2D view) {
+		// Ignore.
+	}
+
+}
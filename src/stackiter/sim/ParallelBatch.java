@@ -0,0 +1,138 @@
+package stackiter.sim;
+
+import static java.lang.Boolean.*;
+import static java.lang.Integer.*;
+import static java.lang.Long.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Runs several independent batches at once, each with its own world, seeded
+ * tray random, and log file.
+ *
+ * Uses the same args as Batch, plus "workers" (the number of worlds) and
+ * "threads" (pool size, defaulting to the number of processors). The
+ * "episode-limit" is split into contiguous shards across the workers, all
+ * sharing the same base seed. Seeded episodes each start over from their own
+ * seed, so the combined logs cover the same episodes as a single seeded run
+ * would.
+ */
+public class ParallelBatch implements Runnable {
+
+	public static void main(String[] args) {
+		// Batch handles the arg parsing and dispatches here.
+		Batch.main(args);
+	}
+
+	private Map<String, String> args;
+
+	private List<Batch> batches = new ArrayList<Batch>();
+
+	/**
+	 * All keys and values must be non-null.
+	 * Otherwise, behavior is undefined.
+	 */
+	public ParallelBatch(Map<String, String> args) {
+		this.args = args;
+		if (parseBoolean(arg("display", "false"))) {
+			throw new RuntimeException("No display for parallel batches.");
+		}
+		if (parseBoolean(arg("save-frames", "false"))) {
+			throw new RuntimeException("No save-frames for parallel batches.");
+		}
+		initBatches();
+	}
+
+	private String arg(String key, String defaultValue) {
+		String value = args.get(key);
+		if (value == null) {
+			value = defaultValue;
+		}
+		return value;
+	}
+
+	/**
+	 * The total episodes completed so far across all workers.
+	 */
+	public int getEpisodeCount() {
+		int count = 0;
+		for (Batch batch: batches) {
+			count += batch.getEpisodeCount();
+		}
+		return count;
+	}
+
+	private void initBatches() {
+		int workers = parseInt(arg("workers", "1"));
+		int episodeFirst = parseInt(arg("episode-first", "0"));
+		int episodeLimit = parseInt(arg("episode-limit", "100"));
+		String logSuffix = arg("log-suffix", "");
+		// Without a given seed, pick one and say so, for later reruns.
+		String seed = args.get("seed");
+		if (seed == null) {
+			seed = String.valueOf(new Random().nextLong());
+			System.out.println("Seed: " + seed);
+		}
+		for (int w = 0; w < workers; w++) {
+			Map<String, String> workerArgs = new HashMap<String, String>(args);
+			workerArgs.remove("workers");
+			workerArgs.remove("threads");
+			// Spread the remainder over the first few.
+			int workerEpisodes =
+				episodeLimit / workers + (w < episodeLimit % workers ? 1 : 0);
+			workerArgs.put("episode-first", String.valueOf(episodeFirst));
+			workerArgs.put("episode-limit", String.valueOf(workerEpisodes));
+			workerArgs.put("seed", seed);
+			episodeFirst += workerEpisodes;
+			// Distinct suffix per worker keeps the log files apart.
+			String workerSuffix = String.format("w%03d", w);
+			if (!logSuffix.isEmpty()) {
+				workerSuffix = logSuffix + "-" + workerSuffix;
+			}
+			workerArgs.put("log-suffix", workerSuffix);
+			Batch batch = new Batch(workerArgs);
+			if (batch.isExternallyControlled()) {
+				throw new RuntimeException(
+					"External control can't be shared across workers."
+				);
+			}
+			batch.setQuiet(true);
+			batches.add(batch);
+		}
+	}
+
+	@Override
+	public void run() {
+		int threads = parseInt(arg(
+			"threads", String.valueOf(Runtime.getRuntime().availableProcessors())
+		));
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		long startTime = System.currentTimeMillis();
+		try {
+			for (Batch batch: batches) {
+				executor.execute(batch);
+			}
+			executor.shutdown();
+			// Report combined progress while we wait.
+			long statusSeconds = parseLong(arg("status-seconds", "60"));
+			while (!executor.awaitTermination(statusSeconds, TimeUnit.SECONDS)) {
+				printStatus(startTime);
+			}
+			printStatus(startTime);
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void printStatus(long startTime) {
+		double seconds = 1e-3 * (System.currentTimeMillis() - startTime);
+		int episodes = getEpisodeCount();
+		System.out.printf(
+			"Episodes: %d in %.1f s (%.2f/s)\n",
+			episodes, seconds, seconds > 0 ? episodes / seconds : 0.0
+		);
+	}
+
+}
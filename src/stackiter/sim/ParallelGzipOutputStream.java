@@ -0,0 +1,266 @@
+package stackiter.sim;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.*;
+
+/**
+ * Like BlockGzipOutputStream, writes independent gzip members each holding a
+ * fixed amount of uncompressed data, but compresses the members on a pool of
+ * worker threads. Members still get written in order, so the result is the
+ * same kind of concatenated gzip that any gzip tool can read.
+ *
+ * Optionally records where each member starts in a small side file, so
+ * readers can seek straight to any member and inflate members in parallel,
+ * without first inflating everything before. The side file holds an int
+ * member count, then for each member its long compressed offset and long
+ * uncompressed offset. See readIndex.
+ *
+ * Flushing ends the current member early, since gzip data can't be read back
+ * before its member ends. So frequent flushes mean small members.
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+
+	public static final String INDEX_EXTENSION = ".members";
+
+	/**
+	 * Reads a side file as written on close. Returns the compressed and
+	 * uncompressed offsets of each member, in pairs.
+	 */
+	public static long[] readIndex(File indexFile) {
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(indexFile)
+			));
+			try {
+				int count = in.readInt();
+				long[] offsets = new long[2 * count];
+				for (int i = 0; i < offsets.length; i++) {
+					offsets[i] = in.readLong();
+				}
+				return offsets;
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private byte[] block;
+
+	private long compressedOffset;
+
+	private int count;
+
+	/**
+	 * Where to write member offsets on close, or null for none.
+	 */
+	private File indexFile;
+
+	private int maxPending;
+
+	private int memberCount;
+
+	/**
+	 * Compressed offsets, known once members are written.
+	 */
+	private long[] memberInputs = new long[16];
+
+	/**
+	 * Uncompressed offsets, known once members are started.
+	 */
+	private long[] memberOutputs = new long[16];
+
+	private OutputStream out;
+
+	/**
+	 * Members in order, some maybe still compressing.
+	 */
+	private Deque<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>();
+
+	private ExecutorService pool;
+
+	/**
+	 * Blocks done compressing, so steady writing needn't allocate new ones.
+	 */
+	private BlockingQueue<byte[]> spares = new LinkedBlockingQueue<byte[]>();
+
+	private long uncompressedOffset;
+
+	private int writtenCount;
+
+	public ParallelGzipOutputStream(OutputStream out, int threadCount) {
+		this(
+			out, threadCount, BlockGzipOutputStream.DEFAULT_BLOCK_SIZE, null
+		);
+	}
+
+	/**
+	 * At most two members per thread are held at once, so writing waits if
+	 * compression falls behind.
+	 */
+	public ParallelGzipOutputStream(
+		OutputStream out, int threadCount, int blockSize, File indexFile
+	) {
+		this.out = out;
+		this.indexFile = indexFile;
+		block = new byte[blockSize];
+		maxPending = 2 * threadCount;
+		pool = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "ParallelGzip");
+				// Don't keep the vm alive just for an unclosed log.
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	private void checkWritten(int member) {
+		if (member < 0 || member >= writtenCount) {
+			throw new IndexOutOfBoundsException("No member " + member);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			if (count > 0 || memberCount == 0) {
+				// Always give at least one member, so gzip tools don't complain.
+				submit();
+			}
+			drain(0);
+			out.close();
+			if (indexFile != null) {
+				writeIndex();
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Writes finished members in order until no more than the given count
+	 * remain pending.
+	 */
+	private void drain(int remaining) throws IOException {
+		while (pending.size() > remaining) {
+			byte[] member;
+			try {
+				member = pending.removeFirst().get();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				throw new IOException(e.getCause());
+			}
+			memberInputs[writtenCount++] = compressedOffset;
+			out.write(member);
+			compressedOffset += member.length;
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (count > 0) {
+			submit();
+		}
+		drain(0);
+		out.flush();
+	}
+
+	/**
+	 * Members written so far.
+	 */
+	public int getMemberCount() {
+		return writtenCount;
+	}
+
+	/**
+	 * The compressed offset where the member starts, relative to the start of
+	 * this stream.
+	 */
+	public long getMemberInput(int member) {
+		checkWritten(member);
+		return memberInputs[member];
+	}
+
+	/**
+	 * The uncompressed offset where the member starts.
+	 */
+	public long getMemberOutput(int member) {
+		checkWritten(member);
+		return memberOutputs[member];
+	}
+
+	/**
+	 * Hands the current block off for compression and starts a new one.
+	 */
+	private void submit() throws IOException {
+		// Make room first, which also frees up blocks for reuse.
+		drain(maxPending - 1);
+		final byte[] full = block;
+		final int length = count;
+		byte[] spare = spares.poll();
+		block = spare == null ? new byte[full.length] : spare;
+		count = 0;
+		if (memberCount == memberOutputs.length) {
+			memberInputs = Arrays.copyOf(memberInputs, 2 * memberCount);
+			memberOutputs = Arrays.copyOf(memberOutputs, 2 * memberCount);
+		}
+		memberOutputs[memberCount++] = uncompressedOffset;
+		uncompressedOffset += length;
+		pending.addLast(pool.submit(new Callable<byte[]>() {
+			@Override
+			public byte[] call() throws IOException {
+				ByteArrayOutputStream member =
+					new ByteArrayOutputStream(length / 2 + 64);
+				GZIPOutputStream gzip = new GZIPOutputStream(member, 1 << 16);
+				gzip.write(full, 0, length);
+				gzip.close();
+				spares.add(full);
+				return member.toByteArray();
+			}
+		}));
+	}
+
+	@Override
+	public void write(byte[] bytes, int offset, int length) throws IOException {
+		while (length > 0) {
+			int chunk = Math.min(length, block.length - count);
+			System.arraycopy(bytes, offset, block, count, chunk);
+			count += chunk;
+			offset += chunk;
+			length -= chunk;
+			if (count == block.length) {
+				submit();
+			}
+		}
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		block[count++] = (byte)b;
+		if (count == block.length) {
+			submit();
+		}
+	}
+
+	private void writeIndex() throws IOException {
+		DataOutputStream index = new DataOutputStream(new BufferedOutputStream(
+			new FileOutputStream(indexFile)
+		));
+		try {
+			index.writeInt(writtenCount);
+			for (int m = 0; m < writtenCount; m++) {
+				index.writeLong(memberInputs[m]);
+				index.writeLong(memberOutputs[m]);
+			}
+		} finally {
+			index.close();
+		}
+	}
+
+}
@@ -0,0 +1,176 @@
+package stackiter.sim;
+
+import static stackiter.sim.Util.*;
+
+import java.awt.geom.*;
+import java.util.*;
+
+/**
+ * World-frame bounds of the items in a table, sorted by min x, for overlap
+ * queries that don't rebuild bounds for every item every time. Items move
+ * each step, so build a new one per state.
+ *
+ * Bounds come out exactly as from Util.applied on each item's transform and
+ * bounds, so results match code that does that directly.
+ */
+public class SpatialIndex {
+
+	private Rectangle2D[] bounds;
+
+	/**
+	 * Slots in order of min x.
+	 */
+	private int[] byMinX;
+
+	private ItemTable items;
+
+	/**
+	 * The widest item, for bounding how far left overlaps can start.
+	 */
+	private double maxWidth;
+
+	/**
+	 * Min x values in sorted order, for binary search.
+	 */
+	private double[] minXs;
+
+	private double topY = Double.NEGATIVE_INFINITY;
+
+	public SpatialIndex(ItemTable items) {
+		this.items = items;
+		int size = items.size();
+		bounds = new Rectangle2D[size];
+		AffineTransform transform = new AffineTransform();
+		Rectangle2D local = new Rectangle2D.Double();
+		double[] corners = new double[8];
+		for (int i = 0; i < size; i++) {
+			Item item = items.getItem(i);
+			item.getTransform(transform);
+			item.getBounds(local);
+			bounds[i] = transformedBounds(transform, local, corners);
+			maxWidth = Math.max(maxWidth, bounds[i].getWidth());
+			topY = Math.max(topY, bounds[i].getMaxY());
+		}
+		sortByMinX();
+	}
+
+	/**
+	 * The world-frame bounds of the item, or null if not in the table.
+	 * Don't modify these.
+	 */
+	public Rectangle2D getBounds(Soul soul) {
+		int index = items.getIndex(soul);
+		return index < 0 ? null : bounds[index];
+	}
+
+	/**
+	 * The highest max y of any item, or negative infinity if none.
+	 */
+	public double getTopY() {
+		return topY;
+	}
+
+	/**
+	 * Items whose own min, center, or max x falls within the given range,
+	 * except for the given soul. That's the same horizontal overlap test the
+	 * options use, which leaves out items wider on both sides. Results are in
+	 * table order.
+	 */
+	public List<Item> listXOverlappers(double minX, double maxX, Soul except) {
+		// Anything overlapping has to start within the widest width before.
+		int begin = lowerBound(minX - maxWidth);
+		List<Integer> found = new ArrayList<Integer>();
+		for (int k = begin; k < byMinX.length && minXs[k] <= maxX; k++) {
+			int i = byMinX[k];
+			Rectangle2D other = bounds[i];
+			if (items.getSoul(i) == except) continue;
+			if (
+				between(other.getMinX(), minX, maxX) ||
+				between(other.getCenterX(), minX, maxX) ||
+				between(other.getMaxX(), minX, maxX)
+			) {
+				found.add(i);
+			}
+		}
+		Collections.sort(found);
+		List<Item> overlappers = new ArrayList<Item>(found.size());
+		for (int i: found) {
+			overlappers.add(items.getItem(i));
+		}
+		return overlappers;
+	}
+
+	/**
+	 * The first sorted position with min x at least the given.
+	 */
+	private int lowerBound(double x) {
+		int low = 0;
+		int high = minXs.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (minXs[middle] < x) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	private void sortByMinX() {
+		Integer[] order = new Integer[bounds.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Double.compare(bounds[a].getMinX(), bounds[b].getMinX());
+			}
+		});
+		byMinX = new int[order.length];
+		minXs = new double[order.length];
+		for (int k = 0; k < order.length; k++) {
+			byMinX[k] = order[k];
+			minXs[k] = bounds[order[k]].getMinX();
+		}
+	}
+
+	/**
+	 * Like Util.applied for rectangles, which transforms the corners of a path
+	 * and takes their bounds, but without the path.
+	 */
+	private static Rectangle2D transformedBounds(
+		AffineTransform transform, Rectangle2D rectangle, double[] corners
+	) {
+		double x = rectangle.getX();
+		double y = rectangle.getY();
+		double w = rectangle.getWidth();
+		double h = rectangle.getHeight();
+		corners[0] = x;
+		corners[1] = y;
+		corners[2] = x + w;
+		corners[3] = y;
+		corners[4] = x + w;
+		corners[5] = y + h;
+		corners[6] = x;
+		corners[7] = y + h;
+		transform.transform(corners, 0, corners, 0, 4);
+		// Same order and comparisons as Path2D, down to signed zeros. Its
+		// rectangle paths end back at the first corner.
+		double maxY = corners[1];
+		double minY = maxY;
+		double maxX = corners[0];
+		double minX = maxX;
+		for (int c = 6; c >= 0; c -= 2) {
+			double cornerX = corners[c];
+			double cornerY = corners[c + 1];
+			if (cornerX < minX) minX = cornerX;
+			if (cornerY < minY) minY = cornerY;
+			if (cornerX > maxX) maxX = cornerX;
+			if (cornerY > maxY) maxY = cornerY;
+		}
+		return new Rectangle2D.Double(minX, minY, maxX - minX, maxY - minY);
+	}
+
+}
@@ -18,24 +18,11 @@ import stackiter.tasks.*;
 public class Stackiter extends JComponent implements ActionListener, Closeable, MouseListener, MouseMotionListener {
 
 	/**
-	 * Custom scenarios. Change in place for now. Could parameterize.
+	 * See Scenario.defaults, which lives there so that batch runs don't need
+	 * to load this class and Swing with it.
 	 */
 	public static Iterable<Scenario> defaultScenarios() {
-		return Arrays.asList(new Scenario[] {
-			// First, so the others can respond.
-			new Scenario.WideTable(),
-			// Others.
-			//new Scenario.Alternate(),
-			//new Scenario.ArchRefill(),
-			//new Scenario.Babble(),
-			//new Scenario.BalanceScale(),
-			//new Scenario.Builder(),
-			//new Scenario.DropOn(),
-			//new Scenario.Predeployed(),
-			new Scenario.ExternalControl(),
-			new Scenario.Refill(),
-			//new Scenario.SmallSquares(),
-		});
+		return Scenario.defaults();
 	}
 
 	public static void main(String[] args) {
@@ -0,0 +1,70 @@
+package stackiter.sim;
+
+import static java.lang.Integer.*;
+import static java.lang.Long.*;
+
+import java.util.*;
+
+import stackiter.tasks.*;
+
+/**
+ * Measures headless sim steps per second on one thread, with nothing logged.
+ * Also reports the mean count of awake items per step.
+ *
+ * Takes Batch-style key value args:
+ * scenario (default builder), seed (1), steps (20000) per round, rounds (5),
+ * and warmup rounds (2).
+ */
+public class StepBenchmark {
+
+	public static void main(String[] args) {
+		System.setProperty("java.awt.headless", "true");
+		Map<String, String> map = Batch.parseArgs(args);
+		if (!map.containsKey("scenario")) {
+			map.put("scenario", "builder");
+		}
+		Batch batch = new Batch(map);
+		if (batch.isExternallyControlled()) {
+			throw new RuntimeException("Can't benchmark external control.");
+		}
+		long seed = parseLong(value(map, "seed", "1"));
+		int steps = parseInt(value(map, "steps", "20000"));
+		int rounds = parseInt(value(map, "rounds", "5"));
+		int warmup = parseInt(value(map, "warmup", "2"));
+		World world = new World();
+		world.setSeed(seed);
+		Logger logger = new EpisodicLogger(new NullLogger());
+		logger.waitForEpisodeStart();
+		Scenario.handleWorldSetup(batch.getScenarios(), world, logger);
+		world.startEpisodes(0);
+		double total = 0;
+		for (int round = -warmup; round < rounds; round++) {
+			long active = 0;
+			long start = System.nanoTime();
+			for (int step = 0; step < steps; step++) {
+				world.update();
+				active += world.getActiveCount();
+			}
+			double seconds = 1e-9 * (System.nanoTime() - start);
+			double rate = steps / seconds;
+			if (round >= 0) {
+				total += rate;
+			}
+			System.out.printf(
+				"%s %d: %.0f steps/s, %.1f awake (%d episodes so far)\n",
+				round < 0 ? "Warmup" : "Round",
+				round < 0 ? warmup + round + 1 : round + 1,
+				rate, active / (double)steps, world.getClearCount()
+			);
+		}
+		System.out.printf("Mean: %.0f steps/s\n", total / rounds);
+	}
+
+	private static String value(
+		Map<String, String> map, String key, String defaultValue
+	) {
+		String value = map.get(key);
+		return value == null ? defaultValue : value;
+	}
+
+}
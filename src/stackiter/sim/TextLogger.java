@@ -1,6 +1,5 @@
 package stackiter.sim;
 
-import static java.util.Map.*;
 import static java.lang.String.*;
 import static stackiter.sim.Util.*;
 
@@ -8,7 +7,6 @@ import java.awt.geom.*;
 import java.io.*;
 import java.text.*;
 import java.util.*;
-import java.util.zip.*;
 
 /**
  * Logs in text format to a temp file.
@@ -16,44 +14,74 @@ import java.util.zip.*;
 public class TextLogger extends AtomicLogger {
 
 	/**
-	 * Opens a log file for writing in the given directory, compressed if
-	 * requested.
-	 * The file name is also based on the current date and time.
+	 * Creates the directory (if needed) and picks the name for a new log file.
+	 * The file name is based on the current date and time.
 	 * The suffix, if present, gets a "-" prepended before it, and it goes
 	 * before the extension.
 	 */
+	public static File newLogFile(
+		String logDir, String suffix, String extension
+	) {
+		// Log file.
+		if (logDir == null || logDir.isEmpty()) {
+			logDir =
+				System.getProperty("java.io.tmpdir") + File.separator +
+					"stackiter";
+		}
+		File dir = new File(logDir);
+		dir.mkdirs();
+		SimpleDateFormat format =
+			new SimpleDateFormat("yyyyMMdd-HHmmss-SSS");
+		if (suffix == null || suffix.isEmpty()) {
+			suffix = "";
+		} else {
+			suffix = "-" + suffix;
+		}
+		String logName = String.format(
+			"stackiter-%s%s%s", format.format(new Date()), suffix, extension
+		);
+		File logFile = new File(dir, logName);
+		// TODO What's the right way to expose the log file name?
+		System.out.println(logFile);
+		return logFile;
+	}
+
+	/**
+	 * Opens a log file for writing in the given directory, compressed if
+	 * requested.
+	 * Compressed logs are written in blocks, so they can be indexed for
+	 * random access later. See stackiter.learn.EpisodeIndex.
+	 * See newLogFile for naming.
+	 */
 	public static Formatter openLogFile(
 		String logDir, String suffix, boolean doCompress
+	) {
+		return openLogFile(logDir, suffix, doCompress, 1);
+	}
+
+	/**
+	 * With more than one compression thread, blocks get compressed in
+	 * parallel, and their offsets go in a side file next to the log. See
+	 * ParallelGzipOutputStream.
+	 */
+	public static Formatter openLogFile(
+		String logDir, String suffix, boolean doCompress, int compressThreads
 	) {
 		try {
-			// Log file.
-			if (logDir == null || logDir.isEmpty()) {
-				logDir =
-					System.getProperty("java.io.tmpdir") + File.separator +
-						"stackiter";
-			}
-			File dir = new File(logDir);
-			dir.mkdirs();
-			SimpleDateFormat format =
-				new SimpleDateFormat("yyyyMMdd-HHmmss-SSS");
-			if (suffix == null || suffix.isEmpty()) {
-				suffix = "";
-			} else {
-				suffix = "-" + suffix;
-			}
-			String logName = String.format(
-				"stackiter-%s%s.log", format.format(new Date()), suffix
-			);
-			if (doCompress) {
-				logName += ".gz";
-			}
-			File logFile = new File(dir, logName);
-			// TODO What's the right way to expose the log file name?
-			System.out.println(logFile);
+			File logFile =
+				newLogFile(logDir, suffix, doCompress ? ".log.gz" : ".log");
 			OutputStream out = new FileOutputStream(logFile);
 			try {
-				if (doCompress) {
-					out = new GZIPOutputStream(out);
+				if (doCompress && compressThreads > 1) {
+					out = new ParallelGzipOutputStream(
+						out, compressThreads,
+						BlockGzipOutputStream.DEFAULT_BLOCK_SIZE, new File(
+							logFile.getPath() +
+							ParallelGzipOutputStream.INDEX_EXTENSION
+						)
+					);
+				} else if (doCompress) {
+					out = new BlockGzipOutputStream(out);
 				}
 				return new Formatter(new BufferedWriter(
 					// I think I made the buffer large in hopes for speed.
@@ -73,6 +101,8 @@ public class TextLogger extends AtomicLogger {
 		public int id;
 		// Duped info to compare for changes.
 		public Item item;
+		// Last step logged while asleep, if asleep through to now.
+		public long sleepingStep = Long.MIN_VALUE;
 	}
 
 	private static class ToolInfo {
@@ -96,7 +126,10 @@ public class TextLogger extends AtomicLogger {
 
 	boolean firstPerTx;
 
-	private int idNext = 4;
+	/**
+	 * Shared by items and tools, after the fixed ids.
+	 */
+	private IdRegistry ids = new IdRegistry(4);
 
 	private int idTray = 3;
 
@@ -112,6 +145,13 @@ public class TextLogger extends AtomicLogger {
 
 	private long steps;
 
+	/**
+	 * Scratch points for reading item values without allocating.
+	 */
+	private Point2D tempPosition = new Point2D.Double();
+
+	private Point2D tempVelocity = new Point2D.Double();
+
 	private long time;
 
 	private Map<Soul, ToolInfo> tools = new HashMap<Soul, ToolInfo>();
@@ -144,6 +184,12 @@ public class TextLogger extends AtomicLogger {
 		this(openLogFile(logDir, suffix, doCompress));
 	}
 
+	public TextLogger(
+		String logDir, String suffix, boolean doCompress, int compressThreads
+	) {
+		this(openLogFile(logDir, suffix, doCompress, compressThreads));
+	}
+
 	public TextLogger(Formatter... formatters) {
 		// Actual output.
 		writers = new ArrayList<Formatter>(Arrays.asList(formatters));
@@ -208,7 +254,7 @@ public class TextLogger extends AtomicLogger {
 		if (info == null) {
 			// New item. Log its static information.
 			info = new ItemInfo();
-			info.id = idNext++;
+			info.id = ids.add(item.getSoul());
 			info.item = new BasicItem();
 			items.put(item.getSoul(), info);
 			Point2D extent = item.getExtent();
@@ -231,7 +277,7 @@ public class TextLogger extends AtomicLogger {
 		if (info == null) {
 			// New item. Log its static information.
 			info = new ToolInfo();
-			info.id = idNext++;
+			info.id = ids.add(tool.getSoul());
 			info.tool = new Tool();
 			tools.put(tool.getSoul(), info);
 			log("item %d", info.id);
@@ -242,28 +288,21 @@ public class TextLogger extends AtomicLogger {
 		return info;
 	}
 
+	/**
+	 * The ids used in this log, for controllers to refer to items by.
+	 */
+	public IdRegistry getIds() {
+		return ids;
+	}
+
 	/**
 	 * Returns the soul of the object corresponding the given id.
 	 *
-	 * If the id isn't found or if there's no corresponding soul, returns null.
+	 * If the id isn't found, including for destroyed items, or if there's no
+	 * corresponding soul, returns null.
 	 */
 	public Soul getSoul(int id) {
-		// TODO Maintain a map?
-		// Items.
-		for (Entry<Soul, ItemInfo> entry: items.entrySet()) {
-			if (entry.getValue().id == id) {
-				return entry.getKey();
-			}
-		}
-		// Tools.
-		for (Entry<Soul, ToolInfo> entry: tools.entrySet()) {
-			if (entry.getValue().id == id) {
-				return entry.getKey();
-			}
-		}
-		// Nothing.
-		// TODO Can we provide souls for anything else?
-		return null;
+		return ids.getSoul(id);
 	}
 
 	private void log(String message, Object... args) {
@@ -308,6 +347,13 @@ public class TextLogger extends AtomicLogger {
 	public void logItem(final Item item) {
 		atomic(new Runnable() { @Override public void run() {
 			ItemInfo info = getInfo(item);
+			if (item.isSleeping() && info.sleepingStep >= steps - 1) {
+				// Asleep since the last step we saw, so nothing moved. Bodies can
+				// wake and settle between sparse logs, though, so only trust
+				// consecutive steps.
+				info.sleepingStep = steps;
+				return;
+			}
 			// TODO Could check for changes in color or shape here, too.
 			// Alive: alive.
 			if (item.isAlive() != info.item.isAlive()) {
@@ -319,7 +365,7 @@ public class TextLogger extends AtomicLogger {
 				log("alive %d %s", info.id, item.isAlive());
 			}
 			// Position: pos.
-			Point2D position = item.getPosition();
+			Point2D position = item.getPosition(tempPosition);
 			if (!approx(position, info.item.getPosition(), EPSILON)) {
 				info.item.setPosition(position);
 				log("pos %d %.3f %.3f", info.id, position.getX(), position.getY());
@@ -331,7 +377,7 @@ public class TextLogger extends AtomicLogger {
 			// we'd be logging full amounts anyway and be able to calculate it.
 			// I think I'll likely only use velocity for now in the actual concept learning?
 			// TODO Do log acceleration if we decide we need it for concept learning.
-			Point2D linearVelocity = item.getLinearVelocity();
+			Point2D linearVelocity = item.getLinearVelocity(tempVelocity);
 			if (!approx(linearVelocity, info.item.getLinearVelocity(), EPSILON)) {
 				info.item.setLinearVelocity(linearVelocity);
 				log("posvel %d %.3f %.3f", info.id, linearVelocity.getX(), linearVelocity.getY());
@@ -348,6 +394,7 @@ public class TextLogger extends AtomicLogger {
 				info.item.setAngularVelocity(angularVelocity);
 				log("rotvel %d %.3f", info.id, angularVelocity);
 			}
+			info.sleepingStep = item.isSleeping() ? steps : Long.MIN_VALUE;
 		}});
 	}
 
@@ -402,6 +449,9 @@ public class TextLogger extends AtomicLogger {
 		atomic(new Runnable() { @Override public void run() {
 			ItemInfo info = getInfo(item);
 			log("destroy %d", info.id);
+			// Gone for good, so don't hang on to it.
+			items.remove(item.getSoul());
+			ids.remove(item.getSoul());
 		}});
 	}
 
@@ -108,6 +108,22 @@ public class Tray {
 		return copy(anchor);
 	}
 
+	/**
+	 * Fills in the given point and returns it.
+	 */
+	public Point2D getAnchor(Point2D anchor) {
+		anchor.setLocation(this.anchor);
+		return anchor;
+	}
+
+	public Block getItem(int index) {
+		return blocks.get(index);
+	}
+
+	public int getItemCount() {
+		return blocks.size();
+	}
+
 	public Iterable<Block> getItems() {
 		return blocks;
 	}
@@ -268,8 +284,31 @@ public class Tray {
 		this.minBlockExtent = minBlockExtent;
 	}
 
+	/**
+	 * Replaces the random source for new blocks and for everyone else who
+	 * shares it. Set this before handing the random out to agents.
+	 */
+	public void setRandom(Random random) {
+		this.random = random;
+	}
+
 	public void setRotateBlocks(boolean rotateBlocks) {
 		this.rotateBlocks = rotateBlocks;
 	}
 
+	/**
+	 * A copy of what paint needs, with copied blocks, so another thread can
+	 * paint it while this one changes.
+	 */
+	public Tray snapshotForPaint() {
+		Tray copied = new Tray();
+		copied.anchor = copy(anchor);
+		for (Block block: blocks) {
+			copied.blocks.add(block.clone());
+		}
+		copied.die = die == null ? null : (Rectangle2D)die.clone();
+		copied.die2 = die2 == null ? null : (Rectangle2D)die2.clone();
+		return copied;
+	}
+
 }
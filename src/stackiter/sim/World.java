@@ -27,12 +27,153 @@ public class World {
 		/**
 		 * TODO Full old state at some point?
 		 */
-		Point2D oldLinearAcceleration = point();
+		double oldLinearAccelerationX, oldLinearAccelerationY;
 
 		/**
 		 * TODO Full old state at some point?
 		 */
-		Point2D oldLinearVelocity = point();
+		double oldLinearVelocityX, oldLinearVelocityY;
+
+		/**
+		 * When added relative to other items, for later drawn on top.
+		 */
+		long sequence;
+
+		/**
+		 * Whether asleep as of the last update, with derivatives zeroed.
+		 */
+		boolean sleeping;
+
+	}
+
+	/**
+	 * A read-only view of tray and live items, in that order, without copying.
+	 * Tray blocks come through as the tray's own, in the tray frame, so use
+	 * the position and transform getters here for the world frame, or
+	 * getWorldItem for an item to keep.
+	 *
+	 * The view stays current as the world changes, but don't hold on to
+	 * indexes across changes.
+	 */
+	public class ItemView implements Iterable<Item> {
+
+		private Point2D anchor = point();
+
+		private ItemView() {}
+
+		public boolean contains(Soul soul) {
+			return indexOf(soul) >= 0;
+		}
+
+		/**
+		 * The item itself. For tray blocks, that's in the tray frame.
+		 */
+		public Item get(int index) {
+			int trayCount = tray.getItemCount();
+			if (index < trayCount) {
+				return tray.getItem(index);
+			}
+			return getLiveItems().get(index - trayCount);
+		}
+
+		/**
+		 * Fills in the given point with the world frame position and returns
+		 * it.
+		 */
+		public Point2D getPosition(int index, Point2D position) {
+			get(index).getPosition(position);
+			if (isTray(index)) {
+				tray.getAnchor(anchor);
+				// Rounded as blocks store positions, same as copies get.
+				position.setLocation(
+					(float)(position.getX() + anchor.getX()),
+					(float)(position.getY() + anchor.getY())
+				);
+			}
+			return position;
+		}
+
+		public Soul getSoul(int index) {
+			return get(index).getSoul();
+		}
+
+		/**
+		 * Sets the given transform to the world frame one and returns it.
+		 */
+		public AffineTransform getTransform(
+			int index, AffineTransform transform
+		) {
+			get(index).getTransform(transform);
+			if (isTray(index)) {
+				tray.getAnchor(anchor);
+				transform.setTransform(
+					transform.getScaleX(), transform.getShearY(),
+					transform.getShearX(), transform.getScaleY(),
+					(float)(transform.getTranslateX() + anchor.getX()),
+					(float)(transform.getTranslateY() + anchor.getY())
+				);
+			}
+			return transform;
+		}
+
+		/**
+		 * The item in the world frame. Live items come as they are, but tray
+		 * blocks get copied with the tray offset applied.
+		 */
+		public Item getWorldItem(int index) {
+			if (!isTray(index)) {
+				return get(index);
+			}
+			Block copied = tray.getItem(index).clone();
+			copied.setPosition(added(copied.getPosition(), tray.getAnchor()));
+			return copied;
+		}
+
+		/**
+		 * The index of the item with the soul, or -1 if none.
+		 */
+		public int indexOf(Soul soul) {
+			int size = size();
+			for (int i = 0; i < size; i++) {
+				if (getSoul(i) == soul) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		public boolean isTray(int index) {
+			return index < tray.getItemCount();
+		}
+
+		/**
+		 * Iterates items as from get.
+		 */
+		@Override
+		public Iterator<Item> iterator() {
+			return new Iterator<Item>() {
+				int index;
+				@Override
+				public boolean hasNext() {
+					return index < size();
+				}
+				@Override
+				public Item next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					return get(index++);
+				}
+				@Override
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+
+		public int size() {
+			return tray.getItemCount() + getLiveItems().size();
+		}
 
 	}
 
@@ -56,12 +197,22 @@ public class World {
 	 */
 	public static final double TIME_SCALE = 2;
 
+	private int activeCount;
+
 	private List<Agent> agents = new ArrayList<Agent>();
 
-	private List<Block> blocks;
+	/**
+	 * In order added, but with constant time removal.
+	 */
+	private Set<Block> blocks;
 
 	private int clearCount;
 
+	/**
+	 * A clear asked for during the current update.
+	 */
+	private boolean clearPending;
+
 	private Clearer clearer;
 
 	/**
@@ -72,29 +223,55 @@ public class World {
 
 	private Block ground;
 
-	private List<ItemInfo> items = new ArrayList<ItemInfo>();
+	/**
+	 * Also in order added. Items don't override equals, so this is by
+	 * identity.
+	 */
+	private Map<Item, ItemInfo> items = new LinkedHashMap<Item, ItemInfo>();
+
+	private ItemView itemView = new ItemView();
+
+	/**
+	 * Live items in order for indexed access, rebuilt after removals.
+	 */
+	private List<Item> liveItems = new ArrayList<Item>();
+
+	private boolean liveItemsStale;
 
 	private Logger logger;
 
+	private long nextSequence;
+
 	private boolean quitRequested;
 
+	/**
+	 * Base seed for per-episode randoms, or null if unseeded.
+	 */
+	private Long seed;
+
 	private long steps;
 
+	// Scratch points for the per-step update, to avoid garbage.
+	private Point2D tempAcceleration = point();
+	private Point2D tempJerk = point();
+	private Point2D tempVelocity = point();
+
 	private Map<Tool, ToolInfo> tools = new HashMap<Tool, ToolInfo>();
 
 	private Tray tray = new Tray();
 
 	private double trayHeight = 30.0;
 
+	/**
+	 * Whether inside update, so clears can wait for the end of it.
+	 */
+	private boolean updating;
+
 	private org.jbox2d.dynamics.World world;
 
 	public World() {
-		blocks = new ArrayList<Block>();
-		world = new org.jbox2d.dynamics.World(
-			new AABB(new Vec2(-200,-100), new Vec2(200,400)),
-			new Vec2(0, -10),
-			true
-		);
+		blocks = new LinkedHashSet<Block>();
+		world = newDynamicsWorld();
 		addGround();
 		//Stock stock = new Stock();
 		//stock.addTo(this);
@@ -133,7 +310,11 @@ public class World {
 	private void addItem(Item item) {
 		ItemInfo info = new ItemInfo();
 		info.item = item;
-		items.add(info);
+		info.sequence = nextSequence++;
+		items.put(item, info);
+		if (!liveItemsStale) {
+			liveItems.add(item);
+		}
 	}
 
 	/**
@@ -146,14 +327,43 @@ public class World {
 		return tool;
 	}
 
+	/**
+	 * Removes all blocks and starts the next episode. During an update, the
+	 * clear waits for the end of the update, so the new episode starts cleanly
+	 * with the next one, as it would when replayed from startEpisodes.
+	 */
 	public void clearBlocks() {
-		for (Block block: blocks) {
-			// Calling this in a block loop is super inefficient n^2.
-			handleRemoval(block);
+		if (updating) {
+			clearPending = true;
+		} else {
+			clearBlocksNow();
 		}
+	}
+
+	private void clearBlocksNow() {
+		// Log all the removals together, and drop the whole set at once after.
+		logger.atomic(new Runnable() { @Override public void run() {
+			for (Block block: blocks) {
+				handleRemoval(block);
+			}
+		}});
 		blocks.clear();
 		logger.logClear();
 		clearCount++;
+		startEpisode();
+	}
+
+	/**
+	 * Derives an independent seed for the given episode from a base seed, so
+	 * any episode can be rerun without running those before it.
+	 *
+	 * This is the SplitMix64 finalizer over the combined values.
+	 */
+	public static long episodeSeed(long seed, int episode) {
+		long z = seed + (episode + 1) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
 	}
 
 	/**
@@ -173,14 +383,21 @@ public class World {
 			return;
 		}
 		Point2D graspedPoint = graspedItem.getGraspPosition();
-		Point2D toolPoint = applied(graspedItem.getTransform(), graspedPoint);
-		tool.setPosition(toolPoint);
+		tool.setPosition(graspedItem.toWorld(graspedPoint));
 	}
 
 	public void episodeStarted() {
 		this.episodeStarted = true;
 	}
 
+	/**
+	 * The number of blocks awake, and so with derivatives updated, at the
+	 * last step. The ground and clearer never sleep, so they aren't counted.
+	 */
+	public int getActiveCount() {
+		return activeCount;
+	}
+
 	public Iterable<Block> getBlocks() {
 		// TODO Wrap for immutability?
 		return blocks;
@@ -191,12 +408,7 @@ public class World {
 	}
 
 	public Clearer getClearer() {
-		for (Item item: getItems()) {
-			if (item instanceof Clearer) {
-				return (Clearer)item;
-			}
-		}
-		return null;
+		return clearer;
 	}
 
 	public org.jbox2d.dynamics.World getDynamicsWorld() {
@@ -213,30 +425,43 @@ public class World {
 
 	/**
 	 * Gets a list of the world items in the world coordination frame.
+	 *
+	 * This copies tray blocks every call. See getItemView for less waste.
 	 */
 	public Iterable<Item> getItems() {
-		// TODO Improve this to avoid copying and nonsense?
-		// TODO Or should I guarantee copies to avoid modification???
-		List<Item> items = new ArrayList<Item>();
-		for (Block block: tray.getItems()) {
-			Block copied = block.clone();
-			copied.setPosition(added(copied.getPosition(), tray.getAnchor()));
-			items.add(copied);
-		}
-		for (ItemInfo info: this.items) {
-			items.add(info.item);
+		List<Item> items = new ArrayList<Item>(itemView.size());
+		for (int i = 0; i < itemView.size(); i++) {
+			items.add(itemView.getWorldItem(i));
 		}
 		return items;
 	}
 
 	public List<Soul> getItemSouls() {
-		List<Soul> itemSouls = new ArrayList<Soul>();
-		for (Item item: getItems()) {
-			itemSouls.add(item.getSoul());
+		List<Soul> itemSouls = new ArrayList<Soul>(itemView.size());
+		for (int i = 0; i < itemView.size(); i++) {
+			itemSouls.add(itemView.getSoul(i));
 		}
 		return itemSouls;
 	}
 
+	/**
+	 * The same view every time, always current.
+	 */
+	public ItemView getItemView() {
+		return itemView;
+	}
+
+	private List<Item> getLiveItems() {
+		if (liveItemsStale) {
+			liveItems.clear();
+			for (ItemInfo info: items.values()) {
+				liveItems.add(info.item);
+			}
+			liveItemsStale = false;
+		}
+		return liveItems;
+	}
+
 	public Logger getLogger() {
 		return logger;
 	}
@@ -263,6 +488,10 @@ public class World {
 		return 0.01;
 	}
 
+	public Iterable<Tool> getTools() {
+		return tools.keySet();
+	}
+
 	public Tray getTray() {
 		return tray;
 	}
@@ -281,16 +510,30 @@ public class World {
 			addBlock(graspedBlock);
 		}
 		if (!tray.isActionConsumed()) {
-			for (Block block: blocks) {
-				if (block.contains(tool.getPosition())) {
-					if (!block.isGrasped()) {
-						// For now, don't allow double-grasping.
-						// TODO Support double-grasping.
-						graspedBlock = block;
-					}
-					// Don't break from loop. Make the last drawn have priority for clicking.
+			// Let the broadphase find candidates rather than checking every
+			// block.
+			Point2D position = tool.getPosition();
+			Vec2 point = new Vec2((float)position.getX(), (float)position.getY());
+			org.jbox2d.collision.shapes.Shape[] shapes =
+				world.query(new AABB(point, point), blocks.size() + 1);
+			long graspedSequence = -1;
+			for (org.jbox2d.collision.shapes.Shape shape: shapes) {
+				Object block = shape.getBody().getUserData();
+				if (!(block instanceof Block)) continue;
+				Block candidate = (Block)block;
+				// The ground is a block too, but not one to grasp.
+				if (!blocks.contains(candidate)) continue;
+				if (candidate.contains(position) && !candidate.isGrasped()) {
+					// For now, don't allow double-grasping.
+					// TODO Support double-grasping.
+					// Make the last drawn have priority for clicking.
 					// That's more intuitive when blocks overlap.
 					// But how often will that be when physics tries to avoid it?
+					long sequence = items.get(candidate).sequence;
+					if (sequence > graspedSequence) {
+						graspedBlock = candidate;
+						graspedSequence = sequence;
+					}
 				}
 			}
 		}
@@ -334,20 +577,22 @@ public class World {
 		// Remove the block.
 		block.removeFromWorld();
 		logger.logRemoval(block);
-		// This isn't efficient to step through one at a time.
-		ITEMS: for (Iterator<ItemInfo> i = items.iterator(); i.hasNext();) {
-			ItemInfo info = i.next();
-			if (info.item == block) {
-				i.remove();
-				break ITEMS;
-			}
-		}
+		items.remove(block);
+		liveItemsStale = true;
 	}
 
 	public boolean isQuitRequested() {
 		return quitRequested;
 	}
 
+	private static org.jbox2d.dynamics.World newDynamicsWorld() {
+		return new org.jbox2d.dynamics.World(
+			new AABB(new Vec2(-200,-100), new Vec2(200,400)),
+			new Vec2(0, -10),
+			true
+		);
+	}
+
 	public void paint(Graphics2D graphics) {
 		// Live items.
 		paintItems(graphics);
@@ -360,7 +605,7 @@ public class World {
 	}
 
 	public void paintItems(Graphics2D graphics) {
-		for (ItemInfo info: items) {
+		for (ItemInfo info: items.values()) {
 			info.item.paint(graphics);
 		}
 	}
@@ -377,6 +622,15 @@ public class World {
 		quitRequested = true;
 	}
 
+	/**
+	 * Seeds the shared tray random for world setup. Each episode then gets its
+	 * own seed derived from this one, starting from the call to startEpisodes.
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+		tray.getRandom().setSeed(seed);
+	}
+
 	public void setLogger(Logger logger) {
 		// Make sure the ground and clearer get added first.
 		// TODO It seems really horrid to tie this init to the logger.
@@ -410,7 +664,71 @@ public class World {
 		this.trayHeight = trayHeight;
 	}
 
+	/**
+	 * If seeded, puts everything random-driven back to where a fresh world
+	 * would have it for the current episode, so the episode plays out the same
+	 * whether or not others ran before it. The random is reseeded in place,
+	 * since agents and options hold on to the same instance. Then the tray
+	 * refills from it, tools go back to rest, and agents forget what they
+	 * were doing.
+	 */
+	private void startEpisode() {
+		if (seed == null) {
+			return;
+		}
+		tray.getRandom().setSeed(episodeSeed(seed, clearCount));
+		// Let go of anything before bodies move between worlds.
+		for (Tool tool: tools.keySet()) {
+			handleRelease(tool);
+		}
+		// The dynamics world keeps history even after its bodies go, and that
+		// nudges later contacts, so start over. The old ground body just goes
+		// with the old world, since removing it would copy back its slightly
+		// rounded position. Any blocks already here, such as scenery from
+		// setup, move over at rest.
+		for (Block block: blocks) {
+			block.removeFromWorld();
+		}
+		world = newDynamicsWorld();
+		ground.addTo(this);
+		for (Block block: blocks) {
+			block.addTo(this);
+		}
+		if (tray.getItemCount() > 0) {
+			tray.flush();
+		}
+		for (Map.Entry<Tool, ToolInfo> t: tools.entrySet()) {
+			Tool tool = t.getKey();
+			tool.setMode(ToolMode.INACTIVE);
+			tool.setPosition(point());
+			t.getValue().old.setMode(ToolMode.INACTIVE);
+		}
+		for (Agent agent: agents) {
+			agent.reset();
+		}
+	}
+
+	/**
+	 * Marks the start of episodes after setup, counting from the given index.
+	 * If seeded, the episode starts from its own seed, so starting at index
+	 * k replays episode k of a run from the same seed.
+	 */
+	public void startEpisodes(int episode) {
+		clearCount = episode;
+		startEpisode();
+	}
+
 	public void update() {
+		updating = true;
+		try {
+			updateNow();
+		} finally {
+			clearPending = false;
+			updating = false;
+		}
+	}
+
+	private void updateNow() {
 		logger.atomic(new Runnable() { @Override public void run() {
 
 			// Let agents choose actions.
@@ -450,30 +768,76 @@ public class World {
 			// Delete lost blocks.
 			for (Iterator<Block> b = blocks.iterator(); b.hasNext();) {
 				Block block = b.next();
-				Shape blockShape = block.transformedShape();
-				Rectangle2D blockBounds = blockShape.getBounds2D();
-				if (blockBounds.getMaxY() < -5) {
+				if (block.getMaxY() < -5) {
 					// It fell off the table. Out of sight, out of mind.
 					b.remove();
 					handleRemoval(block);
 				}
 			}
 
+			// Clear now if asked above, after this step but before logging
+			// anything more of the old episode.
+			if (clearPending) {
+				clearPending = false;
+				clearBlocksNow();
+			}
+
 			// Update accelerations (something the engine doesn't track for us).
-			for (ItemInfo info: items) {
-				double scale = 1 / getStepTime();
+			// Reuse points here, since this runs for every item every step.
+			// Sleeping bodies have no velocity, so skip them once zeroed.
+			double scale = 1 / getStepTime();
+			Point2D linearVelocity = tempVelocity;
+			Point2D linearAcceleration = tempAcceleration;
+			Point2D linearJerk = tempJerk;
+			activeCount = 0;
+			for (ItemInfo info: items.values()) {
+				Item item = info.item;
+				if (item.isSleeping()) {
+					if (!info.sleeping) {
+						info.sleeping = true;
+						linearAcceleration.setLocation(0, 0);
+						item.setLinearAcceleration(linearAcceleration);
+						item.setAngularAcceleration(0);
+						item.setLinearJerk(linearAcceleration);
+						info.oldAngularVelocity = 0;
+						info.oldLinearAccelerationX = 0;
+						info.oldLinearAccelerationY = 0;
+						info.oldLinearVelocityX = 0;
+						info.oldLinearVelocityY = 0;
+					}
+					continue;
+				}
+				info.sleeping = false;
+				if (blocks.contains(item)) {
+					activeCount++;
+				}
+				item.getLinearVelocity(linearVelocity);
+				double linearVelocityX = linearVelocity.getX();
+				double linearVelocityY = linearVelocity.getY();
+				double angularVelocity = item.getAngularVelocity();
 				// Update acceleration.
-				Point2D linearAcceleration = scaled(scale, subtracted(info.item.getLinearVelocity(), info.oldLinearVelocity));
-				info.item.setLinearAcceleration(linearAcceleration);
-				double angularAcceleration = scale * (info.item.getAngularVelocity() - info.oldAngularVelocity);
-				info.item.setAngularAcceleration(angularAcceleration);
+				double linearAccelerationX =
+					scale * (linearVelocityX - info.oldLinearVelocityX);
+				double linearAccelerationY =
+					scale * (linearVelocityY - info.oldLinearVelocityY);
+				linearAcceleration.setLocation(
+					linearAccelerationX, linearAccelerationY
+				);
+				item.setLinearAcceleration(linearAcceleration);
+				double angularAcceleration = scale * (angularVelocity - info.oldAngularVelocity);
+				item.setAngularAcceleration(angularAcceleration);
 				// Now with that, update jerk.
-				Point2D linearJerk = scaled(scale, subtracted(info.item.getLinearAcceleration(), info.oldLinearAcceleration));
-				info.item.setLinearJerk(linearJerk);
+				linearJerk.setLocation(
+					scale * (linearAccelerationX - info.oldLinearAccelerationX),
+					scale * (linearAccelerationY - info.oldLinearAccelerationY)
+				);
+				item.setLinearJerk(linearJerk);
 				// Now update the old values for next time.
-				info.oldAngularVelocity = info.item.getAngularVelocity();
-				info.oldLinearAcceleration.setLocation(info.item.getLinearAcceleration());
-				info.oldLinearVelocity.setLocation(info.item.getLinearVelocity());
+				info.oldAngularVelocity = angularVelocity;
+				info.oldLinearAccelerationX = linearAccelerationX;
+				info.oldLinearAccelerationY = linearAccelerationY;
+				info.oldLinearVelocityX = linearVelocityX;
+				info.oldLinearVelocityY = linearVelocityY;
 				//System.out.println(info.item.getColor() + ": " + info.item.getLinearAcceleration() + " and " + info.item.getLinearJerk());
 			}
 
@@ -1,7 +1,5 @@
 package stackiter.sim;
 
-import java.util.*;
-
 /**
  * A more standalone data representation of the state of the world, not tied to
  * live simulation or whatnot. It's useful for tracking state and for snapshots.
@@ -15,14 +13,14 @@ public class WorldState implements Cloneable {
 	public boolean cleared;
 
 	/**
-	 * LinkedHashMap preserves add order.
+	 * Items in add order, kept in flat arrays so that clones are cheap.
 	 *
 	 * TODO While it's nice to have automatic ids as objects (souls), they don't
 	 * TODO exactly serialize well.
 	 * TODO Having had a unique id generator to begin with might have been
 	 * TODO nicer.
 	 */
-	public Map<Soul, Item> items = new LinkedHashMap<Soul, Item>();
+	public ItemTable items = new ItemTable();
 
 	/**
 	 * The amount of simulation time that has passed in seconds.
@@ -32,16 +30,13 @@ public class WorldState implements Cloneable {
 	public long steps;
 
 	/**
-	 * Customized to deep-clone the items (but not the souls).
+	 * Customized to snapshot the items, which is cheap until one side or the
+	 * other changes them.
 	 */
 	public WorldState clone() {
 		try {
 			WorldState result = (WorldState)super.clone();
-			// Deep clone the items.
-			result.items = new LinkedHashMap<Soul, Item>(items.size());
-			for (Item item: items.values()) {
-				result.items.put(item.getSoul(), item.clone());
-			}
+			result.items = items.snapshot();
 			return result;
 		} catch (CloneNotSupportedException e) {
 			throw new RuntimeException(e);
@@ -74,9 +69,8 @@ public class WorldState implements Cloneable {
 		items.clear();
 		// Blocks don't include the clearer nor the ground/table.
 		Iterable<Block> worldItems = world.getBlocks();
-		items = new LinkedHashMap<Soul, Item>();
 		for (Item item: worldItems) {
-			items.put(item.getSoul(), item.clone());
+			items.put(item);
 		}
 
 		// Time fields.
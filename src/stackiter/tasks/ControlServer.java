@@ -0,0 +1,559 @@
+package stackiter.tasks;
+
+import static java.lang.Boolean.*;
+import static java.lang.Integer.*;
+import static stackiter.sim.Util.*;
+
+import java.awt.geom.*;
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import stackiter.agents.*;
+import stackiter.sim.*;
+
+/**
+ * Serves option control of many worlds over TCP, so external controllers
+ * don't need a JVM per world or a text round trip per option.
+ *
+ * Args are in Batch style: "port" (default 7777), plus "log-dir",
+ * "log-suffix", and "compress-log" if each world should also keep a text
+ * log. Without "log-dir", worlds don't log.
+ *
+ * Each connection can create any number of worlds, each running on its own
+ * thread. Frames in both directions are a big-endian int byte count followed
+ * by that many bytes. Requests are a byte op and an int world id followed by
+ * op args:
+ *
+ * <pre>
+ * NEW      scenario:UTF seed:long   (world id ignored)
+ * CLOSE
+ * CARRY    item:int x:double y:double
+ * CLEAR
+ * DELAY
+ * DONE
+ * DROP     item:int
+ * ISOLATE  item:int
+ * LIFT     item:int
+ * MOVE     item:int x:double
+ * PUT      item:int target:int
+ * ROTATE   item:int
+ * </pre>
+ *
+ * The scenario is "external" or "external-arch", as for Batch. New worlds and
+ * options reply with the state at the next decision, and close replies with
+ * just the world id. State replies have only what changed since the last
+ * reply for that world:
+ *
+ * <pre>
+ * status:byte(0) world:int steps:long simTime:double clears:int
+ * toolX:double toolY:double toolActive:boolean grasped:int
+ * changedCount:int, then for each:
+ *   item:int x:double y:double angle:double vx:double vy:double
+ *   angularVelocity:double extentX:double extentY:double rgb:int alive:boolean
+ * removedCount:int, then for each: item:int
+ * </pre>
+ *
+ * World ids are unique across connections. Item ids are per world, and
+ * grasped is -1 for none. Failed requests reply with status 1 and a UTF
+ * message, and failed options leave the world waiting for another.
+ *
+ * Requests can be pipelined. Replies always come in request order, but
+ * commands to different worlds run concurrently, and commands sent ahead to
+ * the same world apply at its following decisions.
+ */
+public class ControlServer implements Runnable {
+
+	/**
+	 * Reads requests and writes replies for one client.
+	 */
+	private class Connection implements Runnable {
+
+		private DataInputStream in;
+
+		private DataOutputStream out;
+
+		/**
+		 * Pending replies in request order.
+		 */
+		private BlockingQueue<Reply> replies = new LinkedBlockingQueue<Reply>();
+
+		private Socket socket;
+
+		private Map<Integer, Session> sessions = new HashMap<Integer, Session>();
+
+		public Connection(Socket socket) throws IOException {
+			this.socket = socket;
+			// We flush when we run out of ready replies.
+			socket.setTcpNoDelay(true);
+			in = new DataInputStream(
+				new BufferedInputStream(socket.getInputStream())
+			);
+			out = new DataOutputStream(
+				new BufferedOutputStream(socket.getOutputStream())
+			);
+		}
+
+		/**
+		 * Reads requests until the client hangs up, then shuts down its
+		 * worlds.
+		 */
+		private void read() {
+			try {
+				while (true) {
+					int length;
+					try {
+						length = in.readInt();
+					} catch (EOFException e) {
+						break;
+					}
+					byte[] bytes = new byte[length];
+					in.readFully(bytes);
+					Request request = new Request(bytes);
+					replies.put(request.reply);
+					dispatch(request);
+				}
+			} catch (Exception e) {
+				// Most likely the connection dropped.
+				e.printStackTrace();
+			} finally {
+				for (Session session: sessions.values()) {
+					session.requests.add(new Request(CLOSE, new Reply()));
+				}
+				replies.add(Reply.END);
+			}
+		}
+
+		private void dispatch(Request request) throws IOException {
+			if (request.op == NEW) {
+				String scenario = request.in.readUTF();
+				long seed = request.in.readLong();
+				int worldId = nextWorldId.getAndIncrement();
+				Session session;
+				try {
+					session = new Session(worldId, scenario, seed, request.reply);
+				} catch (RuntimeException e) {
+					request.reply.fail(e.getMessage());
+					return;
+				}
+				sessions.put(worldId, session);
+				session.start();
+				return;
+			}
+			Session session = sessions.get(request.worldId);
+			if (session == null) {
+				request.reply.fail("Unknown world: " + request.worldId);
+				return;
+			}
+			if (request.op == CLOSE) {
+				sessions.remove(request.worldId);
+			}
+			session.requests.add(request);
+		}
+
+		@Override
+		public void run() {
+			Thread reader = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					read();
+				}
+			}, "ControlServer-read");
+			reader.start();
+			try {
+				write();
+			} finally {
+				try {
+					socket.close();
+				} catch (IOException e) {
+					// Nothing more to do.
+				}
+			}
+		}
+
+		/**
+		 * Writes replies in order, flushing whenever the next isn't ready.
+		 */
+		private void write() {
+			try {
+				while (true) {
+					Reply reply = replies.take();
+					if (reply == Reply.END) {
+						break;
+					}
+					byte[] bytes = reply.await();
+					out.writeInt(bytes.length);
+					out.write(bytes);
+					Reply next = replies.peek();
+					if (next == null || !next.isReady()) {
+						out.flush();
+					}
+				}
+				out.flush();
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+
+	}
+
+	/**
+	 * A reply to be filled in by whichever thread handles the request.
+	 */
+	private static class Reply {
+
+		public static final Reply END = new Reply();
+
+		private byte[] bytes;
+
+		public synchronized byte[] await() throws InterruptedException {
+			while (bytes == null) {
+				wait();
+			}
+			return bytes;
+		}
+
+		public void fail(String message) {
+			try {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				DataOutputStream out = new DataOutputStream(bytes);
+				out.writeByte(STATUS_ERROR);
+				out.writeUTF(String.valueOf(message));
+				set(bytes.toByteArray());
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		public synchronized boolean isReady() {
+			return bytes != null;
+		}
+
+		public synchronized void set(byte[] bytes) {
+			this.bytes = bytes;
+			notifyAll();
+		}
+
+	}
+
+	private static class Request {
+
+		/**
+		 * For reading the args after the header.
+		 */
+		public DataInputStream in;
+
+		public int op;
+
+		public Reply reply = new Reply();
+
+		public int worldId;
+
+		public Request(byte[] bytes) throws IOException {
+			in = new DataInputStream(new ByteArrayInputStream(bytes));
+			op = in.readByte();
+			worldId = in.readInt();
+		}
+
+		public Request(int op, Reply reply) {
+			this.op = op;
+			this.reply = reply;
+		}
+
+	}
+
+	/**
+	 * An option agent for a controlled world that waits on requests.
+	 */
+	private class Session implements OptionAgent {
+
+		private ControlledWorld controlled;
+
+		/**
+		 * What the last reply told about, for sending only changes.
+		 */
+		private ItemTable last = new ItemTable();
+
+		/**
+		 * The reply waiting on the next decision.
+		 */
+		private Reply reply;
+
+		public BlockingQueue<Request> requests =
+			new LinkedBlockingQueue<Request>();
+
+		private Point2D temp = point();
+
+		private Point2D temp2 = point();
+
+		private int worldId;
+
+		public Session(int worldId, String scenario, long seed, Reply reply) {
+			this.worldId = worldId;
+			this.reply = reply;
+			controlled = new ControlledWorld(
+				"ControlServer-world-" + worldId, scenario, seed, this,
+				newLogger(worldId)
+			) {
+				@Override
+				public void run() {
+					try {
+						super.run();
+					} finally {
+						replyClosed();
+					}
+				}
+			};
+		}
+
+		@Override
+		public Option act(State state) {
+			reply.set(encode(state));
+			reply = null;
+			while (true) {
+				Request request;
+				try {
+					request = requests.take();
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+				if (request.op == CLOSE) {
+					controlled.close();
+					reply = request.reply;
+					// Something to finish out the step.
+					return controlled.getOptions().delay();
+				}
+				try {
+					Option option = parseOption(request, state);
+					reply = request.reply;
+					return option;
+				} catch (Exception e) {
+					request.reply.fail(e.getMessage());
+				}
+			}
+		}
+
+		private byte[] encode(State state) {
+			try {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				DataOutputStream out = new DataOutputStream(bytes);
+				out.writeByte(STATUS_OK);
+				out.writeInt(worldId);
+				out.writeLong(state.steps);
+				out.writeDouble(state.simTime);
+				out.writeInt(controlled.getWorld().getClearCount());
+				Tool tool = controlled.getTool();
+				out.writeDouble(tool.getPosition().getX());
+				out.writeDouble(tool.getPosition().getY());
+				out.writeBoolean(tool.getMode() == ToolMode.GRASP);
+				out.writeInt(
+					state.graspedItem == null ?
+						-1 : controlled.getId(state.graspedItem.getSoul())
+				);
+				ItemTable items = state.items;
+				int changedCount = 0;
+				for (int i = 0; i < items.size(); i++) {
+					if (isChanged(items, i)) changedCount++;
+				}
+				out.writeInt(changedCount);
+				for (int i = 0; i < items.size(); i++) {
+					if (!isChanged(items, i)) continue;
+					out.writeInt(controlled.getId(items.getSoul(i)));
+					items.getPosition(i, temp);
+					out.writeDouble(temp.getX());
+					out.writeDouble(temp.getY());
+					out.writeDouble(items.getAngle(i));
+					items.getLinearVelocity(i, temp);
+					out.writeDouble(temp.getX());
+					out.writeDouble(temp.getY());
+					out.writeDouble(items.getAngularVelocity(i));
+					items.getExtent(i, temp);
+					out.writeDouble(temp.getX());
+					out.writeDouble(temp.getY());
+					out.writeInt(items.getColor(i).getRGB());
+					out.writeBoolean(items.isAlive(i));
+				}
+				int removedCount = 0;
+				for (int j = 0; j < last.size(); j++) {
+					if (!items.containsKey(last.getSoul(j))) removedCount++;
+				}
+				out.writeInt(removedCount);
+				for (int j = 0; j < last.size(); j++) {
+					Soul soul = last.getSoul(j);
+					if (!items.containsKey(soul)) {
+						out.writeInt(controlled.getId(soul));
+						// Gone for good.
+						controlled.forget(soul);
+					}
+				}
+				last = items.snapshot();
+				return bytes.toByteArray();
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		/**
+		 * Whether the item at the index differs from the last reply.
+		 */
+		private boolean isChanged(ItemTable items, int i) {
+			int j = last.getIndex(items.getSoul(i));
+			return j < 0 ||
+				!items.getPosition(i, temp).equals(last.getPosition(j, temp2)) ||
+				items.getAngle(i) != last.getAngle(j) ||
+				!items.getLinearVelocity(i, temp).equals(
+					last.getLinearVelocity(j, temp2)
+				) ||
+				items.getAngularVelocity(i) != last.getAngularVelocity(j) ||
+				!items.getExtent(i, temp).equals(last.getExtent(j, temp2)) ||
+				!items.getColor(i).equals(last.getColor(j)) ||
+				items.isAlive(i) != last.isAlive(j);
+		}
+
+		private Option parseOption(Request request, State state)
+			throws IOException
+		{
+			DataInputStream in = request.in;
+			int item = -1;
+			int target = -1;
+			double x = 0;
+			double y = 0;
+			switch (request.op) {
+			case CARRY:
+				item = in.readInt();
+				x = in.readDouble();
+				y = in.readDouble();
+				break;
+			case DROP:
+			case ISOLATE:
+			case LIFT:
+			case ROTATE:
+				item = in.readInt();
+				break;
+			case MOVE:
+				item = in.readInt();
+				x = in.readDouble();
+				break;
+			case PUT:
+				item = in.readInt();
+				target = in.readInt();
+				break;
+			}
+			return controlled.option(request.op, item, target, x, y, state);
+		}
+
+		/**
+		 * Answers any close request once the world is done.
+		 */
+		private void replyClosed() {
+			if (reply != null) {
+				ByteBuffer bytes = ByteBuffer.allocate(5);
+				bytes.put((byte)STATUS_OK).putInt(worldId);
+				reply.set(bytes.array());
+			}
+		}
+
+		@Override
+		public void reset() {
+			// Plans are up to the client.
+		}
+
+		public void start() {
+			controlled.start();
+		}
+
+	}
+
+	public static final int CARRY = ControlledWorld.CARRY;
+
+	public static final int CLEAR = ControlledWorld.CLEAR;
+
+	public static final int CLOSE = 1;
+
+	public static final int DELAY = ControlledWorld.DELAY;
+
+	public static final int DONE = ControlledWorld.DONE;
+
+	public static final int DROP = ControlledWorld.DROP;
+
+	public static final int ISOLATE = ControlledWorld.ISOLATE;
+
+	public static final int LIFT = ControlledWorld.LIFT;
+
+	public static final int MOVE = ControlledWorld.MOVE;
+
+	public static final int NEW = 0;
+
+	public static final int PUT = ControlledWorld.PUT;
+
+	public static final int ROTATE = ControlledWorld.ROTATE;
+
+	public static final int STATUS_ERROR = 1;
+
+	public static final int STATUS_OK = 0;
+
+	public static void main(String[] args) {
+		// No display ever.
+		System.setProperty("java.awt.headless", "true");
+		new ControlServer(Batch.parseArgs(args)).run();
+	}
+
+	private Map<String, String> args;
+
+	/**
+	 * Unique across connections, so log files stay apart.
+	 */
+	private AtomicInteger nextWorldId = new AtomicInteger();
+
+	/**
+	 * All keys and values must be non-null.
+	 * Otherwise, behavior is undefined.
+	 */
+	public ControlServer(Map<String, String> args) {
+		this.args = args;
+	}
+
+	private String arg(String key, String defaultValue) {
+		String value = args.get(key);
+		if (value == null) {
+			value = defaultValue;
+		}
+		return value;
+	}
+
+	private Logger newLogger(int worldId) {
+		String logDir = args.get("log-dir");
+		if (logDir == null) {
+			return new NullLogger();
+		}
+		// Keep each world in its own file.
+		String logSuffix = arg("log-suffix", "");
+		String worldSuffix = String.format("s%03d", worldId);
+		if (!logSuffix.isEmpty()) {
+			worldSuffix = logSuffix + "-" + worldSuffix;
+		}
+		boolean compressLog = parseBoolean(arg("compress-log", "true"));
+		return new TextLogger(logDir, worldSuffix, compressLog);
+	}
+
+	@Override
+	public void run() {
+		int port = parseInt(arg("port", "7777"));
+		try {
+			ServerSocket server = new ServerSocket(port);
+			System.out.println("Listening on port " + server.getLocalPort());
+			while (true) {
+				Socket socket = server.accept();
+				new Thread(
+					new Connection(socket), "ControlServer-" + socket.getPort()
+				).start();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+}
@@ -0,0 +1,199 @@
+package stackiter.tasks;
+
+import static stackiter.sim.Util.*;
+
+import java.util.*;
+
+import stackiter.agents.*;
+import stackiter.sim.*;
+
+/**
+ * A world on its own thread, driven through a bridge by an option agent that
+ * presumably waits on some outside controller.
+ *
+ * Also gives items small int ids, since souls don't serialize. Ids aren't
+ * thread safe, so use them only from the agent or while it's waiting.
+ */
+public class ControlledWorld implements Runnable {
+
+	public static final int CARRY = 2;
+
+	public static final int CLEAR = 3;
+
+	public static final int DELAY = 4;
+
+	public static final int DONE = 5;
+
+	public static final int DROP = 6;
+
+	public static final int ISOLATE = 7;
+
+	public static final int LIFT = 8;
+
+	public static final int MOVE = 9;
+
+	public static final int PUT = 10;
+
+	public static final int ROTATE = 11;
+
+	private OptionAgent.Bridge bridge;
+
+	private volatile boolean closed;
+
+	private IdRegistry ids = new IdRegistry();
+
+	private Options options;
+
+	private Thread thread;
+
+	private World world;
+
+	/**
+	 * The scenario is "external" or "external-arch", as for Batch, but with
+	 * the given agent in control.
+	 */
+	public ControlledWorld(
+		String name, String scenario, long seed, OptionAgent agent,
+		Logger logger
+	) {
+		world = new World();
+		world.setSeed(seed);
+		options = new Options(world.getTray().getRandom());
+		bridge = new OptionAgent.Bridge(agent);
+		List<Scenario> scenarios = new ArrayList<Scenario>();
+		scenarios.add(new Scenario.WideTable());
+		scenarios.add(new Scenario() {
+			@Override
+			public void buildWorld(World world) {
+				world.addAgent(bridge);
+			}
+		});
+		if (scenario.equals("external")) {
+			scenarios.add(new Scenario.Refill());
+		} else if (scenario.equals("external-arch")) {
+			scenarios.add(new Scenario.ArchRefill());
+		} else {
+			throw new RuntimeException("Unknown scenario: " + scenario);
+		}
+		logger = new EpisodicLogger(logger);
+		logger.waitForEpisodeStart();
+		Scenario.handleWorldSetup(scenarios, world, logger);
+		world.startEpisodes(0);
+		thread = new Thread(this, name);
+		// Don't let stuck controllers hold up exit.
+		thread.setDaemon(true);
+	}
+
+	/**
+	 * Stops after the current step. The agent still has to return from any
+	 * decision it's waiting on.
+	 */
+	public void close() {
+		closed = true;
+	}
+
+	/**
+	 * Frees the id of an item gone for good.
+	 */
+	public void forget(Soul soul) {
+		ids.remove(soul);
+	}
+
+	/**
+	 * The id for the soul, assigning the next if new.
+	 */
+	public int getId(Soul soul) {
+		return ids.getOrAdd(soul);
+	}
+
+	public Options getOptions() {
+		return options;
+	}
+
+	public Soul getSoul(int id) {
+		Soul soul = ids.getSoul(id);
+		if (soul == null) {
+			throw new RuntimeException("Unknown item: " + id);
+		}
+		return soul;
+	}
+
+	/**
+	 * The tool under control, available after the first step.
+	 */
+	public Tool getTool() {
+		return bridge.tool;
+	}
+
+	public World getWorld() {
+		return world;
+	}
+
+	public void join() {
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Builds an option from an op code and whichever args it needs, with
+	 * items by id. The state is the one at the decision.
+	 */
+	public OptionAgent.Option option(
+		int op, int item, int target, double x, double y, OptionAgent.State state
+	) {
+		switch (op) {
+		case CARRY:
+			return options.carry(getSoul(item), point(x, y));
+		case CLEAR:
+			return options.clear();
+		case DELAY:
+			return options.delay();
+		case DONE:
+			return options.done();
+		case DROP:
+			if (
+				state.graspedItem == null ||
+				state.graspedItem.getSoul() != getSoul(item)
+			) {
+				throw new RuntimeException("Item " + item + " not grasped.");
+			}
+			return options.drop(state);
+		case ISOLATE:
+			return options.isolate(getSoul(item));
+		case LIFT:
+			return options.lift(getSoul(item));
+		case MOVE:
+			return options.move(getSoul(item), x);
+		case PUT:
+			return options.put(getSoul(item), getSoul(target));
+		case ROTATE:
+			return options.rotate(getSoul(item));
+		default:
+			throw new RuntimeException("Unknown op: " + op);
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			while (!closed) {
+				try {
+					world.update();
+				} catch (Exception e) {
+					// Same as Batch, keep on going.
+					e.printStackTrace();
+				}
+			}
+		} finally {
+			world.getLogger().close();
+		}
+	}
+
+	public void start() {
+		thread.start();
+	}
+
+}
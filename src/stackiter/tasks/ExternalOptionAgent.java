@@ -12,6 +12,8 @@ import stackiter.sim.*;
 
 /**
  * Allow an external controller to control an agent through standard in and out.
+ *
+ * See ControlServer for controlling many worlds from one process.
  */
 public class ExternalOptionAgent implements OptionAgent {
 
@@ -172,4 +174,9 @@ public class ExternalOptionAgent implements OptionAgent {
 		this.textLogger.addOutput(formatter);
 	}
 
+	@Override
+	public void reset() {
+		// Plans are up to the external process.
+	}
+
 }
@@ -163,6 +163,27 @@ public class Scenario {
 		}
 	}
 
+	/**
+	 * Custom scenarios. Change in place for now. Could parameterize.
+	 */
+	public static Iterable<Scenario> defaults() {
+		return Arrays.asList(new Scenario[] {
+			// First, so the others can respond.
+			new WideTable(),
+			// Others.
+			//new Alternate(),
+			//new ArchRefill(),
+			//new Babble(),
+			//new BalanceScale(),
+			//new Builder(),
+			//new DropOn(),
+			//new Predeployed(),
+			new ExternalControl(),
+			new Refill(),
+			//new SmallSquares(),
+		});
+	}
+
 	/**
 	 * Build the world using the scenarios given, providing the logger after
 	 * setup.
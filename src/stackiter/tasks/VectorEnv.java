@@ -0,0 +1,303 @@
+package stackiter.tasks;
+
+import java.awt.geom.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import stackiter.agents.*;
+import stackiter.agents.OptionAgent.Option;
+import stackiter.sim.*;
+
+/**
+ * Steps many controlled worlds in lockstep for batched rollouts.
+ *
+ * Each step takes one option command per world, runs every world until its
+ * option is done, and packs the resulting observations into flat arrays.
+ * Worlds run on their own threads, so they advance in parallel.
+ *
+ * Not thread safe. Call from one controlling thread.
+ */
+public class VectorEnv {
+
+	/**
+	 * Observations for all worlds, packed flat. Items for world w fill
+	 * [offsets[w], offsets[w + 1]) in the per-item arrays, and point values
+	 * are x, y pairs. Arrays get reused from step to step, so they can be
+	 * longer than needed.
+	 */
+	public static class Observations {
+
+		public double[] angles = new double[0];
+
+		public double[] angularVelocities = new double[0];
+
+		public int[] clears;
+
+		/**
+		 * Pairs.
+		 */
+		public double[] extents = new double[0];
+
+		/**
+		 * Item id, or -1 for none.
+		 */
+		public int[] grasped;
+
+		/**
+		 * Item ids are per world and stay the same across steps.
+		 */
+		public int[] ids = new int[0];
+
+		public int itemCount;
+
+		public int[] offsets;
+
+		/**
+		 * Pairs.
+		 */
+		public double[] positions = new double[0];
+
+		public double[] simTimes;
+
+		public long[] steps;
+
+		public boolean[] toolActives;
+
+		/**
+		 * Pairs.
+		 */
+		public double[] toolPositions;
+
+		/**
+		 * Pairs.
+		 */
+		public double[] velocities = new double[0];
+
+		public Observations(int worldCount) {
+			clears = new int[worldCount];
+			grasped = new int[worldCount];
+			offsets = new int[worldCount + 1];
+			simTimes = new double[worldCount];
+			steps = new long[worldCount];
+			toolActives = new boolean[worldCount];
+			toolPositions = new double[2 * worldCount];
+		}
+
+		private void ensureItemCapacity(int capacity) {
+			if (ids.length >= capacity) {
+				return;
+			}
+			capacity = Math.max(capacity, 2 * ids.length);
+			angles = Arrays.copyOf(angles, capacity);
+			angularVelocities = Arrays.copyOf(angularVelocities, capacity);
+			extents = Arrays.copyOf(extents, 2 * capacity);
+			ids = Arrays.copyOf(ids, capacity);
+			positions = Arrays.copyOf(positions, 2 * capacity);
+			velocities = Arrays.copyOf(velocities, 2 * capacity);
+		}
+
+	}
+
+	/**
+	 * Hands decisions between a world thread and the controlling thread.
+	 */
+	private static class Slot implements OptionAgent {
+
+		public ControlledWorld controlled;
+
+		public BlockingQueue<Option> options =
+			new ArrayBlockingQueue<Option>(1);
+
+		/**
+		 * The state at the latest decision, held while the world waits.
+		 */
+		public State state;
+
+		public BlockingQueue<State> states = new ArrayBlockingQueue<State>(1);
+
+		/**
+		 * Souls of the items seen at the last observation, to find the ones
+		 * gone for good.
+		 */
+		public Set<Soul> souls = new HashSet<Soul>();
+
+		/**
+		 * Reused for the next observation, then swapped in for souls.
+		 */
+		public Set<Soul> nextSouls = new HashSet<Soul>();
+
+		@Override
+		public Option act(State state) {
+			try {
+				states.put(state);
+				return options.take();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		public void await() {
+			try {
+				state = states.take();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public void reset() {
+			// Plans are up to the caller.
+		}
+
+	}
+
+	private boolean closed;
+
+	private Observations observations;
+
+	private Slot[] slots;
+
+	private Point2D temp = new Point2D.Double();
+
+	/**
+	 * One world per seed, each with a NullLogger.
+	 */
+	public VectorEnv(String scenario, long[] seeds) {
+		slots = new Slot[seeds.length];
+		for (int w = 0; w < seeds.length; w++) {
+			Slot slot = new Slot();
+			slot.controlled = new ControlledWorld(
+				"VectorEnv-" + w, scenario, seeds[w], slot, new NullLogger()
+			);
+			slots[w] = slot;
+		}
+		for (Slot slot: slots) {
+			slot.controlled.start();
+		}
+		for (Slot slot: slots) {
+			slot.await();
+		}
+		observations = new Observations(slots.length);
+		observe();
+	}
+
+	/**
+	 * Stops all worlds and waits for them to finish. Does nothing if already
+	 * closed.
+	 */
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		for (Slot slot: slots) {
+			slot.controlled.close();
+			// Just to let the final step finish.
+			slot.options.add(slot.controlled.getOptions().delay());
+		}
+		for (Slot slot: slots) {
+			slot.controlled.join();
+		}
+	}
+
+	/**
+	 * Observations after the latest step, or from the start before any.
+	 */
+	public Observations getObservations() {
+		return observations;
+	}
+
+	public int getWorldCount() {
+		return slots.length;
+	}
+
+	private void observe() {
+		Observations obs = observations;
+		int itemCount = 0;
+		for (Slot slot: slots) {
+			itemCount += slot.state.items.size();
+		}
+		obs.ensureItemCapacity(itemCount);
+		obs.itemCount = itemCount;
+		int i = 0;
+		for (int w = 0; w < slots.length; w++) {
+			Slot slot = slots[w];
+			ControlledWorld controlled = slot.controlled;
+			OptionAgent.State state = slot.state;
+			obs.offsets[w] = i;
+			obs.steps[w] = state.steps;
+			obs.simTimes[w] = state.simTime;
+			obs.clears[w] = controlled.getWorld().getClearCount();
+			Tool tool = controlled.getTool();
+			obs.toolPositions[2 * w] = tool.getPosition().getX();
+			obs.toolPositions[2 * w + 1] = tool.getPosition().getY();
+			obs.toolActives[w] = tool.getMode() == ToolMode.GRASP;
+			obs.grasped[w] = state.graspedItem == null ?
+				-1 : controlled.getId(state.graspedItem.getSoul());
+			ItemTable items = state.items;
+			Set<Soul> souls = slot.nextSouls;
+			for (int j = 0; j < items.size(); j++, i++) {
+				Soul soul = items.getSoul(j);
+				souls.add(soul);
+				obs.ids[i] = controlled.getId(soul);
+				items.getPosition(j, temp);
+				obs.positions[2 * i] = temp.getX();
+				obs.positions[2 * i + 1] = temp.getY();
+				items.getLinearVelocity(j, temp);
+				obs.velocities[2 * i] = temp.getX();
+				obs.velocities[2 * i + 1] = temp.getY();
+				obs.angles[i] = items.getAngle(j);
+				obs.angularVelocities[i] = items.getAngularVelocity(j);
+				items.getExtent(j, temp);
+				obs.extents[2 * i] = temp.getX();
+				obs.extents[2 * i + 1] = temp.getY();
+			}
+			for (Soul soul: slot.souls) {
+				if (!souls.contains(soul)) {
+					// Gone for good.
+					controlled.forget(soul);
+				}
+			}
+			slot.souls.clear();
+			slot.nextSouls = slot.souls;
+			slot.souls = souls;
+		}
+		obs.offsets[slots.length] = i;
+	}
+
+	/**
+	 * Gives each world an option by op code, as in ControlledWorld, with args
+	 * per world where the op needs them. Then runs all worlds until their
+	 * options are done, and returns the new observations.
+	 *
+	 * All commands get checked before any world moves, so a bad one leaves
+	 * everything as it was.
+	 */
+	public Observations step(
+		int[] ops, int[] items, int[] targets, double[] xs, double[] ys
+	) {
+		if (ops.length != slots.length) {
+			throw new IllegalArgumentException(
+				"Expected " + slots.length + " ops but got " + ops.length
+			);
+		}
+		Option[] options = new Option[slots.length];
+		for (int w = 0; w < slots.length; w++) {
+			Slot slot = slots[w];
+			options[w] = slot.controlled.option(
+				ops[w], items == null ? -1 : items[w],
+				targets == null ? -1 : targets[w], xs == null ? 0 : xs[w],
+				ys == null ? 0 : ys[w], slot.state
+			);
+		}
+		for (int w = 0; w < slots.length; w++) {
+			slots[w].options.add(options[w]);
+		}
+		for (Slot slot: slots) {
+			slot.await();
+		}
+		observe();
+		return observations;
+	}
+
+}
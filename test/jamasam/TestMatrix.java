@@ -862,6 +862,217 @@ public class TestMatrix {
 		print("Total warnings reported: " + Integer.toString(warningCount) + "\n");
 	}
 
+	/** Tiled, parallel, and unrolled products all match a plain loop exactly. **/
+	@Test
+	public void timesMatchesPlainLoop() {
+		Random random = new Random(1);
+		int[][] shapes = {
+			{2,2,2}, {3,3,3}, {4,4,4}, {1,7,5}, {5,1,3}, {130,70,150}, {300,200,100},
+		};
+		for (int[] shape: shapes) {
+			Matrix A = Matrix.random(shape[0],shape[1]).minus(new Matrix(shape[0],shape[1],0.5));
+			Matrix B = Matrix.random(shape[1],shape[2]).minus(new Matrix(shape[1],shape[2],0.5));
+			double[][] expected = new double[shape[0]][shape[2]];
+			for (int i = 0; i < shape[0]; i++) {
+				for (int j = 0; j < shape[2]; j++) {
+					double s = 0;
+					for (int k = 0; k < shape[1]; k++) {
+						s += A.get(i,k)*B.get(k,j);
+					}
+					expected[i][j] = s;
+				}
+			}
+			// Junk in the destination shouldn't matter.
+			Matrix C = new Matrix(shape[0],shape[2],random.nextDouble());
+			Assert.assertSame(C,A.timesInto(B,C));
+			for (int i = 0; i < shape[0]; i++) {
+				Assert.assertArrayEquals(expected[i],C.getArray()[i],0);
+			}
+		}
+		Matrix A = Matrix.random(3,3);
+		try {
+			A.timesInto(A,A);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			// Expected.
+		}
+	}
+
+	@Test
+	public void flatViewsShareStorage() {
+		Matrix A = Matrix.random(5,4);
+		FlatMatrix F = new FlatMatrix(A);
+		Assert.assertArrayEquals(A.getColumnPackedCopy(),F.getColumnPackedCopy(),0);
+		// Views of views, still matching copies.
+		FlatMatrix V = F.getMatrix(1,3,1,3).transpose().getMatrix(0,2,1,2);
+		Matrix expected = A.getMatrix(1,3,1,3).transpose().getMatrix(0,2,1,2);
+		Assert.assertArrayEquals(expected.getRowPackedCopy(),V.getRowPackedCopy(),0);
+		// Writes go through.
+		V.set(2,1,7);
+		Assert.assertEquals(7,F.get(3,3),0);
+		// Copying a row into a column, sharing storage.
+		double[] row = F.getRow(4).getRowPackedCopy();
+		F.getMatrix(0,3,0,0).setMatrix(F.getRow(4).transpose());
+		Assert.assertArrayEquals(row,F.getMatrix(0,3,0,0).getColumnPackedCopy(),0);
+		// Products match Matrix exactly, even on strided views.
+		FlatMatrix T = F.transpose();
+		Assert.assertArrayEquals(
+			F.toMatrix().transpose().times(F.toMatrix()).getRowPackedCopy(),
+			T.times(F).getRowPackedCopy(),0
+		);
+		try {
+			F.getRow(0).get(1,0);
+			Assert.fail();
+		} catch (ArrayIndexOutOfBoundsException e) {
+			// Expected.
+		}
+	}
+
+	@Test
+	public void leastSquaresUpdates() {
+		Random random = new Random(1);
+		int m = 40, n = 5;
+		Matrix A = Matrix.random(m,n);
+		Matrix Y = Matrix.random(m,2);
+		double ridge = 0.5;
+		RecursiveLeastSquares rls = new RecursiveLeastSquares(n,2,ridge);
+		for (int i = 0; i < m; i++) {
+			rls.add(A.getArray()[i],Y.getArray()[i]);
+		}
+		// Remove the first few again.
+		int removed = 7;
+		for (int i = 0; i < removed; i++) {
+			rls.remove(A.getArray()[i],Y.getArray()[i]);
+		}
+		Assert.assertEquals(m-removed,rls.getCount());
+		Matrix Ak = A.getMatrix(removed,m-1,0,n-1);
+		Matrix Yk = Y.getMatrix(removed,m-1,0,1);
+		Matrix normal = Ak.transpose().times(Ak).plus(Matrix.identity(n,n).times(ridge));
+		Matrix expected = normal.solve(Ak.transpose().times(Yk));
+		Assert.assertEquals(0,rls.solve().minus(expected).normInf(),1e-10);
+		double[] x = {1,2,3,4,5};
+		Assert.assertEquals(
+			new Matrix(x,1).times(expected).get(0,1),rls.predict(x)[1],1e-10
+		);
+		// Starting from a batch QR gives the plain least squares fit.
+		RecursiveLeastSquares batch = new RecursiveLeastSquares(Ak,Yk);
+		Assert.assertEquals(0,batch.solve().minus(Ak.solve(Yk)).normInf(),1e-10);
+		batch.add(A.getArray()[0],Y.getArray()[0]);
+		Matrix A0 = A.getMatrix(removed-1,m-1,0,n-1);
+		A0.setMatrix(0,0,0,n-1,A.getMatrix(0,0,0,n-1));
+		Matrix Y0 = Y.getMatrix(removed-1,m-1,0,1);
+		Y0.setMatrix(0,0,0,1,Y.getMatrix(0,0,0,1));
+		Assert.assertEquals(0,batch.solve().minus(A0.solve(Y0)).normInf(),1e-10);
+		// And Cholesky updates match refactoring.
+		CholeskyDecomposition chol = normal.chol();
+		double[] v = {random.nextGaussian(),0.5,-1,0.25,2};
+		Matrix vv = new Matrix(v,n).times(new Matrix(v,n).transpose());
+		chol.update(v);
+		Assert.assertEquals(0,chol.getL().minus(normal.plus(vv).chol().getL()).normInf(),1e-10);
+		chol.downdate(v);
+		Assert.assertEquals(0,chol.getL().minus(normal.chol().getL()).normInf(),1e-10);
+		try {
+			chol.downdate(new double[] {100,0,0,0,0});
+			Assert.fail();
+		} catch (RuntimeException e) {
+			// Expected, and unchanged.
+			Assert.assertEquals(0,chol.getL().minus(normal.chol().getL()).normInf(),1e-10);
+		}
+	}
+
+	@Test
+	public void randomizedSvdFindsTopComponents() {
+		Random random = new Random(1);
+		int m = 600, n = 30, rank = 4;
+		// Low rank plus a little noise, offset so centering matters.
+		Matrix A = Matrix.random(m,rank).times(Matrix.random(rank,n)).times(10);
+		for (int i = 0; i < m; i++) {
+			for (int j = 0; j < n; j++) {
+				A.set(i,j,A.get(i,j) + 1e-3*random.nextGaussian() + j);
+			}
+		}
+		double[] means = new double[n];
+		for (int j = 0; j < n; j++) {
+			for (int i = 0; i < m; i++) {
+				means[j] += A.get(i,j)/m;
+			}
+		}
+		Matrix centered = A.minus(new Matrix(m,1,1).times(new Matrix(means,1)));
+		double[] expected = centered.svd().getSingularValues();
+		RandomizedSVD svd = new RandomizedSVD(
+			RandomizedSVD.blocks(A,77),n,rank,5,1,true,new Random(2)
+		);
+		Assert.assertEquals(m,svd.getM());
+		double[] actual = svd.getSingularValues();
+		for (int j = 0; j < rank; j++) {
+			Assert.assertEquals(expected[j],actual[j],1e-6*expected[0]);
+		}
+		// Scores reconstruct the centered matrix, up to the noise.
+		Matrix U = svd.getU(A);
+		Matrix approx = U.times(svd.getS()).times(svd.getV().transpose());
+		Assert.assertEquals(0,approx.minus(centered).normInf()/centered.normInf(),1e-3);
+		Assert.assertEquals(0,U.transpose().times(U).minus(Matrix.identity(rank,rank)).normInf(),1e-6);
+	}
+
+	@Test
+	public void sparseDropsZeros() {
+		// Duplicates that cancel, and a given zero.
+		SparseMatrix S = SparseMatrix.fromTriplets(
+			2,2,new int[] {0,0,1,1},new int[] {1,1,0,1},new double[] {2,-2,1,0},4
+		);
+		Assert.assertEquals(1,S.getNonZeroCount());
+		Assert.assertEquals(1,S.get(1,0),0);
+		// Products whose terms cancel.
+		SparseMatrix A = new SparseMatrix(new Matrix(new double[][] {{1,1}}));
+		SparseMatrix B = new SparseMatrix(new Matrix(new double[][] {{1},{-1}}));
+		Assert.assertEquals(0,A.times(B).getNonZeroCount());
+	}
+
+	@Test
+	public void sparseMatchesDense() {
+		Random random = new Random(1);
+		int m = 13, n = 9, count = 40;
+		int[] rows = new int[count];
+		int[] columns = new int[count];
+		double[] vals = new double[count];
+		Matrix A = new Matrix(m,n);
+		for (int t = 0; t < count; t++) {
+			// Small ranges, so there are duplicates to sum.
+			rows[t] = random.nextInt(m);
+			columns[t] = random.nextInt(n);
+			vals[t] = random.nextGaussian();
+			A.set(rows[t],columns[t],A.get(rows[t],columns[t]) + vals[t]);
+		}
+		SparseMatrix S = SparseMatrix.fromTriplets(m,n,rows,columns,vals,count);
+		Assert.assertArrayEquals(A.getRowPackedCopy(),S.toMatrix().getRowPackedCopy(),0);
+		Assert.assertEquals(A.get(3,4),S.get(3,4),0);
+		Assert.assertEquals(A.get(3,4),S.transpose().get(4,3),0);
+		SparseMatrix C = S.transpose().toCompressedRows();
+		Assert.assertArrayEquals(
+			A.transpose().getRowPackedCopy(),C.toMatrix().getRowPackedCopy(),0
+		);
+		// Products, both ways around and both forms.
+		Matrix B = Matrix.random(n,4);
+		Assert.assertEquals(0,S.times(B).minus(A.times(B)).normInf(),1e-12);
+		Assert.assertEquals(0,S.toCompressedColumns().times(B).minus(A.times(B)).normInf(),1e-12);
+		Matrix AtA = A.transpose().times(A);
+		Assert.assertEquals(0,S.transpose().times(S).toMatrix().minus(AtA).normInf(),1e-12);
+		Assert.assertEquals(0,new SparseMatrix(A).times(C).toMatrix().minus(A.times(A.transpose())).normInf(),1e-12);
+		// Rows, as cursors and as libsvm nodes.
+		libsvm.svm_node[][] nodes = S.toSvmNodes();
+		for (int i = 0; i < m; i++) {
+			SparseMatrix.Cursor cursor = C.transpose().row(i);
+			int k = 0;
+			while (cursor.next()) {
+				Assert.assertEquals(cursor.getIndex()+1,nodes[i][k].index);
+				Assert.assertEquals(A.get(i,cursor.getIndex()),cursor.getValue(),0);
+				Assert.assertEquals(cursor.getValue(),nodes[i][k].value,0);
+				k++;
+			}
+			Assert.assertEquals(nodes[i].length,k);
+		}
+	}
+
 	/** private utility routines **/
 
 	/** Check magnitude of difference of scalars. **/
@@ -0,0 +1,225 @@
+package stackiter.learn;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.*;
+
+import stackiter.sim.*;
+
+public class TestEpisodeIndex {
+
+	/**
+	 * As older EpisodicLogger output had it, with each clear written twice
+	 * in the same step.
+	 */
+	private static final String DOUBLED_CLEAR_LOG =
+		"time sim 500 5.000\n" +
+		"item 4\n" +
+		"type 4 box\n" +
+		"extent 4 35.000 1.500\n" +
+		"alive 4 true\n" +
+		"pos 4 0.000 -1.500\n" +
+		"item 5\n" +
+		"type 5 box\n" +
+		"extent 5 1.000 1.000\n" +
+		"alive 5 true\n" +
+		"pos 5 0.000 1.000\n" +
+		"time sim 501 5.010\n" +
+		"clear\n" +
+		"destroy 5\n" +
+		"meta clear\n" +
+		"clear\n" +
+		"meta clear\n" +
+		"time sim 699 6.990\n" +
+		"item 6\n" +
+		"type 6 box\n" +
+		"extent 6 1.000 1.000\n" +
+		"alive 6 true\n" +
+		"pos 6 2.000 1.000\n" +
+		"time sim 700 7.000\n";
+
+	private File dir;
+
+	@After
+	public void deleteDir() {
+		if (dir != null) {
+			for (File file: dir.listFiles()) {
+				file.delete();
+			}
+			dir.delete();
+		}
+	}
+
+	/**
+	 * Checks each indexed episode and episode start time against reading
+	 * the whole log straight through.
+	 */
+	private void assertMatchesScan(File log) throws Exception {
+		InputStream in = new FileInputStream(log);
+		if (log.getName().endsWith(".gz")) {
+			in = new MemberInputStream(in, 0, 0);
+		}
+		List<State> scan = new ArrayList<State>();
+		StateReader reader = new StateReader(in);
+		try {
+			while (reader.hasNext()) {
+				scan.add(reader.next());
+			}
+		} finally {
+			reader.close();
+		}
+		IndexedLog indexed = new IndexedLog(log);
+		try {
+			EpisodeIndex index = indexed.getIndex();
+			assertEquals(3, index.getEpisodeCount());
+			for (int e = 0; e < index.getEpisodeCount(); e++) {
+				double start = index.getEpisodeStartTime(e);
+				double end = e + 1 < index.getEpisodeCount() ?
+					index.getEpisodeStartTime(e + 1) : Double.POSITIVE_INFINITY;
+				List<String> expected = new ArrayList<String>();
+				for (State state: scan) {
+					if (state.time >= start && state.time < end) {
+						expected.add(describe(state));
+					}
+				}
+				// The reader ends at the next clear line, after that step's time.
+				List<String> actual = new ArrayList<String>();
+				reader = indexed.openEpisode(e);
+				try {
+					while (reader.hasNext()) {
+						State state = reader.next();
+						if (state.time < end) {
+							actual.add(describe(state));
+						}
+					}
+				} finally {
+					reader.close();
+				}
+				assertFalse(expected.isEmpty());
+				assertEquals(expected, actual);
+				reader = indexed.openTime(start);
+				try {
+					assertEquals(expected.get(0), describe(reader.next()));
+				} finally {
+					reader.close();
+				}
+			}
+		} finally {
+			indexed.close();
+		}
+	}
+
+	@Test
+	public void blockGzipEpisodesMatchScan() throws Exception {
+		File log = runBatch(false, 1);
+		File blocks = new File(dir, "blocks.log.gz");
+		EpisodeIndex.rewriteBlocks(log, blocks);
+		assertMatchesScan(log);
+		assertMatchesScan(blocks);
+	}
+
+	private String describe(State state) {
+		return
+			state.steps + " " + state.cleared + " " +
+			Arrays.toString(state.ids) + " " +
+			Arrays.toString(state.values.getRowPackedCopy());
+	}
+
+	@Test
+	public void doubledClearStartsOneEpisode() throws Exception {
+		makeDir();
+		File log = new File(dir, "doubled.log");
+		Writer writer = new OutputStreamWriter(new FileOutputStream(log), "UTF-8");
+		try {
+			writer.write(DOUBLED_CLEAR_LOG);
+		} finally {
+			writer.close();
+		}
+		EpisodeIndex index = new EpisodeIndex(EpisodeIndex.build(log));
+		try {
+			assertEquals(2, index.getEpisodeCount());
+			assertEquals(5.01, index.getEpisodeStartTime(1), 1e-9);
+		} finally {
+			index.close();
+		}
+	}
+
+	@Test
+	public void episodesMatchBatchRun() throws Exception {
+		File log = runBatch(false, 1);
+		EpisodeIndex index = new EpisodeIndex(EpisodeIndex.build(log));
+		try {
+			// The start of the log, then one per clear but the one at close.
+			assertEquals(3, index.getEpisodeCount());
+			for (int e = 1; e < index.getEpisodeCount(); e++) {
+				assertTrue(
+					index.getEpisodeStartTime(e) >
+					index.getEpisodeStartTime(e - 1)
+				);
+			}
+		} finally {
+			index.close();
+		}
+	}
+
+	private void makeDir() throws IOException {
+		dir = File.createTempFile("episodes", "");
+		dir.delete();
+		assertTrue(dir.mkdir());
+	}
+
+	@Test
+	public void parallelGzipEpisodesMatchScan() throws Exception {
+		File log = runBatch(true, 2);
+		File members =
+			new File(log.getPath() + ParallelGzipOutputStream.INDEX_EXTENSION);
+		assertTrue(members.exists());
+		assertMatchesScan(log);
+		// Members from the side file should match those found by inflating.
+		File scanned = new File(dir, "scanned.idx");
+		File sided = new File(dir, "sided.idx");
+		EpisodeIndex.build(log, sided, EpisodeIndex.DEFAULT_CHECKPOINT_STEPS);
+		assertTrue(members.delete());
+		EpisodeIndex.build(log, scanned, EpisodeIndex.DEFAULT_CHECKPOINT_STEPS);
+		EpisodeIndex expected = new EpisodeIndex(scanned);
+		EpisodeIndex actual = new EpisodeIndex(sided);
+		try {
+			assertTrue(expected.getMemberCount() > 0);
+			assertEquals(expected.getMemberCount(), actual.getMemberCount());
+			for (int m = 0; m < expected.getMemberCount(); m++) {
+				assertEquals(expected.getMemberInput(m), actual.getMemberInput(m));
+				assertEquals(expected.getMemberOutput(m), actual.getMemberOutput(m));
+			}
+		} finally {
+			expected.close();
+			actual.close();
+		}
+	}
+
+	/**
+	 * Runs three seeded builder episodes and returns the log.
+	 */
+	private File runBatch(boolean compress, int compressThreads) throws Exception {
+		makeDir();
+		Batch batch = new Batch(Batch.parseArgs(new String[] {
+			"scenario", "builder",
+			"seed", "7",
+			"episode-limit", "3",
+			"compress-log", String.valueOf(compress),
+			"compress-threads", String.valueOf(compressThreads),
+			"log-dir", dir.getPath(),
+		}));
+		batch.setQuiet(true);
+		batch.run();
+		for (File file: dir.listFiles()) {
+			if (file.getName().endsWith(compress ? ".log.gz" : ".log")) {
+				return file;
+			}
+		}
+		throw new FileNotFoundException("No log in " + dir);
+	}
+
+}
@@ -0,0 +1,77 @@
+package stackiter.learn;
+
+import static org.junit.Assert.*;
+
+import jamasam.*;
+
+import java.io.*;
+
+import org.junit.*;
+
+public class TestLoader {
+
+	private static final String LOG =
+		"time sim 10 0.100\n" +
+		"item 3\n" +
+		"type 3 tray\n" +
+		"item 4\n" +
+		"type 4 tool\n" +
+		"pos 4 18.500 -1.500\n" +
+		"item 6\n" +
+		"type 6 box\n" +
+		"extent 6 20.000 1.500\n" +
+		"color 6 0.502 0.502 0.502 1.000\n" +
+		"alive 6 true\n" +
+		"pos 6 0.000 -1.500\n" +
+		"item 7\n" +
+		"type 7 box\n" +
+		"rel 7 3\n" +
+		"pos 7 0.834 1.074\n" +
+		"time sim 11 0.110\n" +
+		"alive 7 true\n" +
+		"pos 7 -2.5e1 3\n" +
+		"posvel 7 0.000 -9.800\n" +
+		"rot 7 0.250\n" +
+		"time sim 12 0.120\n" +
+		"clear\n" +
+		"destroy 7\n";
+
+	private Sequence load() throws Exception {
+		return new Loader().load("test.log", new ByteArrayInputStream(
+			LOG.getBytes("UTF-8")
+		));
+	}
+
+	@Test
+	public void states() throws Exception {
+		Sequence sequence = load();
+		assertEquals(3, sequence.states.size());
+		// Only the tool and the live box at first.
+		State state = sequence.states.get(0);
+		assertEquals(10, state.steps);
+		assertEquals(0.1, state.time, 0);
+		assertArrayEquals(new int[] {4, 6}, state.ids);
+		assertEquals(20, state.extents.get(0, 1), 0);
+		assertEquals(-1.5, state.locations.get(1, 1), 0);
+		// Then the dropped box shows up.
+		state = sequence.states.get(1);
+		assertArrayEquals(new int[] {4, 6, 7}, state.ids);
+		assertEquals(Type.BLOCK, state.types.get(2));
+		assertEquals(-25, state.locations.get(0, 2), 0);
+		assertEquals(3, state.locations.get(1, 2), 0);
+		assertEquals(-9.8, state.velocities.get(1, 2), 0);
+		assertEquals(0.25, state.angles.get(0, 2), 0);
+		FlatMatrix item = state.getItem(2);
+		assertEquals(0.25, item.get(State.ANGLE_ROW, 0), 0);
+		assertEquals(3, item.get(State.LOCATION_ROW + 1, 0), 0);
+		assertEquals(-9.8, item.get(State.VELOCITY_ROW + 1, 0), 0);
+		// Attributes are views into the same values.
+		assertSame(state.values.getData(), state.locations.getData());
+		assertFalse(state.cleared);
+		// And goes away again.
+		state = sequence.states.get(2);
+		assertTrue(state.cleared);
+		assertArrayEquals(new int[] {4, 6}, state.ids);
+	}
+
+}
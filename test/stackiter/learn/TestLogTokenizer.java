@@ -0,0 +1,49 @@
+package stackiter.learn;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.junit.*;
+
+public class TestLogTokenizer {
+
+	private LogTokenizer tokenize(String line) throws Exception {
+		LogTokenizer tokenizer = new LogTokenizer(
+			new ByteArrayInputStream((line + "\n").getBytes("UTF-8"))
+		);
+		assertTrue(tokenizer.nextLine());
+		return tokenizer;
+	}
+
+	@Test
+	public void doublesMatchTheLibrary() throws Exception {
+		String[] numbers = {
+			"0.100", "-1.500", "+2.25", "7", "123456789012345",
+			"0.123456789012345", "1234567890.123456", "0.1234567890123456789",
+			"9007199254740993", "3359118907.08011662", "7340721540841.7784",
+			"-2.5e1", "1e-300",
+		};
+		for (String number: numbers) {
+			LogTokenizer tokenizer = tokenize(number);
+			assertEquals(
+				number,
+				Double.parseDouble(number), tokenizer.nextDouble(), 0
+			);
+		}
+	}
+
+	@Test
+	public void longsCheckLength() throws Exception {
+		assertEquals(
+			-123456789012345678L, tokenize("-123456789012345678").nextLong()
+		);
+		try {
+			tokenize("9999999999999999999").nextLong();
+			fail();
+		} catch (NumberFormatException e) {
+			// Good.
+		}
+	}
+
+}
@@ -0,0 +1,125 @@
+package stackiter.sim;
+
+import static org.junit.Assert.*;
+import static stackiter.sim.Util.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.*;
+
+public class TestAsyncLogger {
+
+	/**
+	 * Writes down what it gets, optionally holding up the first sim time
+	 * until let go, to fill the ring on purpose.
+	 */
+	private static class RecordingLogger extends NullLogger {
+
+		final CountDownLatch hold;
+
+		final List<String> records =
+			Collections.synchronizedList(new ArrayList<String>());
+
+		RecordingLogger(CountDownLatch hold) {
+			this.hold = hold;
+		}
+
+		@Override
+		protected void beginStep() {
+			records.add("begin");
+		}
+
+		@Override
+		public void close() {
+			records.add("close");
+		}
+
+		@Override
+		protected void endStep() {
+			records.add("end");
+		}
+
+		@Override
+		public void logItem(Item item) {
+			records.add("item " + item.getPosition().getX());
+		}
+
+		@Override
+		public void logSimTime(long steps, double seconds) {
+			if (hold != null) {
+				try {
+					hold.await();
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+			records.add("time " + steps);
+		}
+
+	}
+
+	@Test
+	public void blockKeepsOrder() {
+		RecordingLogger recorder = new RecordingLogger(null);
+		final AsyncLogger logger =
+			new AsyncLogger(recorder, 4, AsyncLogger.Backpressure.BLOCK);
+		final BasicItem item = new BasicItem();
+		List<String> expected = new ArrayList<String>();
+		for (int s = 0; s < 1000; s++) {
+			final int steps = s;
+			logger.atomic(new Runnable() { @Override public void run() {
+				logger.logSimTime(steps, 0.01 * steps);
+				item.setPosition(point(steps, 0));
+				logger.logItem(item);
+			}});
+			expected.addAll(Arrays.asList(
+				"begin", "time " + s, "item " + (double)s, "end"
+			));
+		}
+		logger.close();
+		expected.add("close");
+		assertEquals(expected, recorder.records);
+		assertEquals(0, logger.getDropCount());
+	}
+
+	@Test
+	public void closeDrainsEverything() {
+		RecordingLogger recorder = new RecordingLogger(null);
+		AsyncLogger logger =
+			new AsyncLogger(recorder, 1 << 12, AsyncLogger.Backpressure.BLOCK);
+		BasicItem item = new BasicItem();
+		for (int s = 0; s < 3000; s++) {
+			logger.logSimTime(s, 0.01 * s);
+			item.setPosition(point(s, 0));
+			logger.logItem(item);
+		}
+		logger.close();
+		assertEquals(6001, recorder.records.size());
+		assertEquals("item 2999.0", recorder.records.get(5999));
+		assertEquals("close", recorder.records.get(6000));
+	}
+
+	@Test
+	public void dropCountsDroppedUpdates() {
+		CountDownLatch hold = new CountDownLatch(1);
+		RecordingLogger recorder = new RecordingLogger(hold);
+		AsyncLogger logger =
+			new AsyncLogger(recorder, 2, AsyncLogger.Backpressure.DROP);
+		BasicItem item = new BasicItem();
+		// The writer holds on the sim time, and the first item update can't
+		// be dropped, so that fills the ring.
+		logger.logSimTime(0, 0);
+		for (int i = 0; i < 6; i++) {
+			item.setPosition(point(i, 0));
+			logger.logItem(item);
+		}
+		assertEquals(5, logger.getDropCount());
+		hold.countDown();
+		logger.close();
+		assertEquals(
+			Arrays.asList("time 0", "item 0.0", "close"), recorder.records
+		);
+	}
+
+}
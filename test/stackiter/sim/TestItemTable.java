@@ -0,0 +1,37 @@
+package stackiter.sim;
+
+import static org.junit.Assert.*;
+import static stackiter.sim.Util.*;
+
+import org.junit.*;
+
+public class TestItemTable {
+
+	@Test
+	public void snapshots() {
+		Block a = new Block();
+		a.setPosition(1, 2);
+		Block b = new Block();
+		b.setExtent(3, 4);
+		ItemTable table = new ItemTable(1);
+		table.put(a);
+		table.put(b);
+		ItemTable snapshot = table.snapshot();
+		// Changes on either side stay there.
+		a.setPosition(5, 6);
+		table.put(a);
+		snapshot.remove(b.getSoul());
+		assertEquals(2, table.size());
+		assertEquals(1, snapshot.size());
+		assertEquals(point(5, 6), table.get(a.getSoul()).getPosition());
+		assertEquals(point(1, 2), snapshot.get(a.getSoul()).getPosition());
+		assertEquals(point(3, 4), table.get(b.getSoul()).getExtent());
+		assertNull(snapshot.get(b.getSoul()));
+		// Values come out like clones.
+		Item item = table.getItem(1);
+		assertSame(b.getSoul(), item.getSoul());
+		assertSame(item, table.get(b.getSoul()));
+		assertEquals(b.clone().getAngle(), item.getAngle(), 0);
+	}
+
+}
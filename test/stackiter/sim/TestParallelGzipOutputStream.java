@@ -0,0 +1,76 @@
+package stackiter.sim;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+import org.junit.*;
+
+public class TestParallelGzipOutputStream {
+
+	@Test
+	public void membersReadTogetherAndAlone() throws IOException {
+		Random random = new Random(1);
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		for (int i = 0; i < 20000; i++) {
+			expected.write(
+				("pos " + random.nextInt(100) + " " + random.nextDouble() + "\n")
+				.getBytes("UTF-8")
+			);
+		}
+		byte[] raw = expected.toByteArray();
+		File indexFile = File.createTempFile("members", null);
+		indexFile.deleteOnExit();
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		ParallelGzipOutputStream out =
+			new ParallelGzipOutputStream(compressed, 3, 1 << 14, indexFile);
+		// Odd write sizes and a flush, to cross block edges unevenly.
+		int offset = 0;
+		while (offset < raw.length) {
+			int length = Math.min(random.nextInt(5000), raw.length - offset);
+			out.write(raw, offset, length);
+			offset += length;
+			if (offset > raw.length / 2 && offset - length <= raw.length / 2) {
+				out.flush();
+			}
+		}
+		out.close();
+		byte[] bytes = compressed.toByteArray();
+		// All at once, as any gzip reader sees it.
+		assertArrayEquals(raw, inflate(bytes, 0, bytes.length));
+		// Each member alone, from the index.
+		long[] offsets = ParallelGzipOutputStream.readIndex(indexFile);
+		assertEquals(2 * out.getMemberCount(), offsets.length);
+		assertTrue(offsets.length / 2 > raw.length >> 14);
+		for (int m = 0; 2 * m < offsets.length; m++) {
+			int begin = (int)offsets[2 * m];
+			int end =
+				2 * m + 2 < offsets.length ? (int)offsets[2 * m + 2] : bytes.length;
+			int rawBegin = (int)offsets[2 * m + 1];
+			int rawEnd = 2 * m + 3 < offsets.length ?
+				(int)offsets[2 * m + 3] : raw.length;
+			assertArrayEquals(
+				Arrays.copyOfRange(raw, rawBegin, rawEnd),
+				inflate(bytes, begin, end - begin)
+			);
+		}
+	}
+
+	private byte[] inflate(byte[] bytes, int offset, int length)
+		throws IOException
+	{
+		InputStream in = new GZIPInputStream(
+			new ByteArrayInputStream(bytes, offset, length)
+		);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1 << 12];
+		int count;
+		while ((count = in.read(buffer)) >= 0) {
+			out.write(buffer, 0, count);
+		}
+		return out.toByteArray();
+	}
+
+}
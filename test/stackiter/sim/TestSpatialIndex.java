@@ -0,0 +1,54 @@
+package stackiter.sim;
+
+import static org.junit.Assert.*;
+import static stackiter.sim.Util.*;
+
+import java.awt.geom.*;
+import java.util.*;
+
+import org.junit.*;
+
+public class TestSpatialIndex {
+
+	@Test
+	public void matchesBruteForce() {
+		Random random = new Random(1);
+		ItemTable table = new ItemTable();
+		for (int b = 0; b < 50; b++) {
+			Block block = new Block();
+			block.setExtent(
+				randInRange(random, 0.5, 4), randInRange(random, 0.5, 4)
+			);
+			block.setPosition(
+				randInRange(random, -30, 30), randInRange(random, 0, 20)
+			);
+			block.setAngle(randInRange(random, -1, 1));
+			table.put(block);
+		}
+		SpatialIndex index = new SpatialIndex(table);
+		for (Item item: table.values()) {
+			Rectangle2D bounds = applied(item.getTransform(), item.getBounds());
+			// Exactly the same, not just close.
+			assertEquals(bounds, index.getBounds(item.getSoul()));
+			double minX = bounds.getMinX();
+			double maxX = bounds.getMaxX();
+			List<Item> expected = new ArrayList<Item>();
+			for (Item other: table.values()) {
+				if (other == item) continue;
+				Rectangle2D otherBounds =
+					applied(other.getTransform(), other.getBounds());
+				if (
+					between(otherBounds.getMinX(), minX, maxX) ||
+					between(otherBounds.getCenterX(), minX, maxX) ||
+					between(otherBounds.getMaxX(), minX, maxX)
+				) {
+					expected.add(other);
+				}
+			}
+			assertEquals(
+				expected, index.listXOverlappers(minX, maxX, item.getSoul())
+			);
+		}
+	}
+
+}
@@ -0,0 +1,190 @@
+package stackiter.sim;
+
+import static org.junit.Assert.*;
+import static stackiter.sim.Util.*;
+
+import java.awt.geom.*;
+import java.util.*;
+
+import org.junit.*;
+
+import stackiter.tasks.*;
+
+public class TestWorld {
+
+	/**
+	 * Checks the view against the items expected, worked out separately, and
+	 * against getItems.
+	 */
+	private void assertViewMatches(World world, List<Item> expected) {
+		World.ItemView view = world.getItemView();
+		List<Item> items = new ArrayList<Item>();
+		for (Item item: world.getItems()) {
+			items.add(item);
+		}
+		assertEquals(expected.size(), view.size());
+		assertEquals(expected.size(), items.size());
+		Point2D position = point();
+		AffineTransform transform = new AffineTransform();
+		int index = 0;
+		for (Item item: view) {
+			assertSame(item, view.get(index));
+			Item want = expected.get(index);
+			assertSame(want.getSoul(), view.getSoul(index));
+			assertSame(want.getSoul(), items.get(index).getSoul());
+			assertEquals(index, view.indexOf(want.getSoul()));
+			assertEquals(want.getPosition(), view.getPosition(index, position));
+			assertEquals(want.getPosition(), items.get(index).getPosition());
+			assertEquals(
+				want.getTransform(), view.getTransform(index, transform)
+			);
+			assertEquals(want.getTransform(), items.get(index).getTransform());
+			index++;
+		}
+		assertEquals(expected.size(), index);
+	}
+
+	private World newWorld() {
+		World world = new World();
+		world.setSeed(1);
+		world.setLogger(new NullLogger());
+		return world;
+	}
+
+	@Test
+	public void activeCountLeavesOutFixedItems() {
+		World world = newWorld();
+		world.startEpisodes(0);
+		world.update();
+		assertEquals(0, world.getActiveCount());
+		Block block = new Block();
+		block.setExtent(1, 1);
+		block.setPosition(0, 10);
+		world.addBlock(block);
+		world.update();
+		assertEquals(1, world.getActiveCount());
+	}
+
+	@Test
+	public void blocksFromSetupKeepSimulating() {
+		World world = newWorld();
+		Block block = new Block();
+		block.setExtent(1, 1);
+		block.setPosition(0, 10);
+		world.addBlock(block);
+		world.startEpisodes(0);
+		for (int s = 0; s < 200; s++) {
+			world.update();
+		}
+		assertEquals(1, block.getPosition().getY(), 0.1);
+	}
+
+	@Test
+	public void itemViewMatchesItems() {
+		World world = newWorld();
+		Tray tray = world.getTray();
+		assertTrue(tray.getItemCount() > 0);
+		List<Block> blocks = new ArrayList<Block>();
+		for (int b = 0; b < 3; b++) {
+			Block block = new Block();
+			block.setExtent(1, 1);
+			block.setPosition(-5 + 5 * b, 1);
+			world.addBlock(block);
+			blocks.add(block);
+		}
+		world.update();
+		// Tray blocks in the world frame, then live items in order added.
+		List<Item> expected = new ArrayList<Item>();
+		for (Block block: tray.getItems()) {
+			Block copied = block.clone();
+			copied.setPosition(added(block.getPosition(), tray.getAnchor()));
+			expected.add(copied);
+		}
+		expected.add(world.getGround());
+		expected.add(world.getClearer());
+		expected.addAll(blocks);
+		assertViewMatches(world, expected);
+		// Removal from the middle.
+		world.removeBlock(blocks.get(1));
+		expected.remove(blocks.get(1));
+		assertViewMatches(world, expected);
+		assertFalse(world.getItemView().contains(blocks.get(1).getSoul()));
+		// And adding after removal.
+		Block block = new Block();
+		block.setExtent(1, 1);
+		block.setPosition(0, 5);
+		world.addBlock(block);
+		expected.add(block);
+		assertViewMatches(world, expected);
+	}
+
+	/**
+	 * Block and tool states after each update of the given episode of a seeded
+	 * builder run started at the given first episode.
+	 */
+	private List<String> playEpisode(int first, int episode) {
+		World world = new World();
+		world.setSeed(42);
+		Scenario.handleWorldSetup(
+			Arrays.asList(
+				new Scenario.WideTable(),
+				new Scenario.Builder(),
+				new Scenario.Refill()
+			),
+			world,
+			new NullLogger()
+		);
+		world.startEpisodes(first);
+		while (world.getClearCount() < episode) {
+			world.update();
+		}
+		List<String> states = new ArrayList<String>();
+		while (world.getClearCount() == episode) {
+			world.update();
+			StringBuilder state = new StringBuilder();
+			for (Tool tool: world.getTools()) {
+				state.append(tool.getPosition()).append(tool.getMode());
+				state.append(world.getGraspedItem(tool) != null).append('\n');
+			}
+			for (Block block: world.getBlocks()) {
+				state.append(block.getExtent()).append(block.getPosition());
+				state.append(block.getAngle()).append('\n');
+			}
+			states.add(state.toString());
+		}
+		return states;
+	}
+
+	@Test
+	public void pressingTheTableGraspsNothing() {
+		World world = newWorld();
+		Block block = new Block();
+		block.setExtent(1, 1);
+		block.setPosition(5, 1);
+		world.addBlock(block);
+		Tool tool = world.addTool();
+		tool.setPosition(point(0, -1));
+		tool.setMode(ToolMode.GRASP);
+		world.update();
+		assertNull(world.getGraspedItem(tool));
+		// But blocks still grasp.
+		tool.setMode(ToolMode.INACTIVE);
+		world.update();
+		tool.setPosition(block.getPosition());
+		tool.setMode(ToolMode.GRASP);
+		world.update();
+		assertSame(block, world.getGraspedItem(tool));
+	}
+
+	@Test
+	public void replayedEpisodeMatchesFullRun() {
+		List<String> full = playEpisode(0, 1);
+		List<String> replayed = playEpisode(1, 1);
+		assertTrue(full.size() > 1);
+		assertEquals(full.size(), replayed.size());
+		for (int s = 0; s < full.size(); s++) {
+			assertEquals("Step " + s, full.get(s), replayed.get(s));
+		}
+	}
+
+}
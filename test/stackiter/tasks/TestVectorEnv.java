@@ -0,0 +1,48 @@
+package stackiter.tasks;
+
+import static org.junit.Assert.*;
+import static stackiter.tasks.ControlledWorld.*;
+
+import org.junit.*;
+
+public class TestVectorEnv {
+
+	@Test
+	public void closeTwice() {
+		VectorEnv env = new VectorEnv("external", new long[] {1});
+		env.close();
+		env.close();
+	}
+
+	@Test
+	public void steps() {
+		VectorEnv env = new VectorEnv("external", new long[] {1, 2});
+		try {
+			VectorEnv.Observations obs = env.getObservations();
+			assertEquals(0, obs.offsets[0]);
+			assertEquals(obs.itemCount, obs.offsets[2]);
+			long[] steps = obs.steps.clone();
+			obs = env.step(new int[] {DELAY, DELAY}, null, null, null, null);
+			assertTrue(obs.steps[0] > steps[0]);
+			assertTrue(obs.steps[1] > steps[1]);
+			// The refill agent should have dropped some blocks by now.
+			assertTrue(obs.itemCount > 0);
+			assertEquals(obs.itemCount, obs.offsets[2]);
+			// Bad commands leave everything in place.
+			steps = obs.steps.clone();
+			try {
+				env.step(new int[] {DELAY, LIFT}, new int[] {0, -5}, null, null, null);
+				fail();
+			} catch (RuntimeException e) {
+				// Expected.
+			}
+			obs = env.step(
+				new int[] {LIFT, DELAY}, new int[] {obs.ids[0], 0}, null, null, null
+			);
+			assertTrue(obs.steps[0] > steps[0]);
+		} finally {
+			env.close();
+		}
+	}
+
+}